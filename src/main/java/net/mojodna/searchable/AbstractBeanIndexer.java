@@ -15,21 +15,11 @@
  */
 package net.mojodna.searchable;
 
-import java.beans.PropertyDescriptor;
 import java.io.Serializable;
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Method;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.Stack;
 
-import net.mojodna.searchable.Searchable.Indexed;
-import net.mojodna.searchable.Searchable.Sortable;
-import net.mojodna.searchable.Searchable.Stored;
-import net.mojodna.searchable.util.AnnotationUtils;
-import net.mojodna.searchable.util.SearchableUtils;
-
-import org.apache.commons.beanutils.PropertyUtils;
 import org.apache.log4j.Logger;
 import org.apache.lucene.document.DateTools;
 import org.apache.lucene.document.Document;
@@ -49,44 +39,47 @@ public abstract class AbstractBeanIndexer extends AbstractIndexer {
 	 * 
 	 * @param doc Document to add fields to.
 	 * @param bean Bean to process.
-	 * @param descriptor Property descriptor.
+	 * @param property Planned property.
 	 * @param stack Stack containing parent field names.
 	 * @param inheritedBoost Inherited boost factor.
 	 * @return Document with additional fields.
 	 * @throws IndexingException
 	 */
 	private Document addBeanFields(final Document doc, final Searchable bean,
-			final PropertyDescriptor descriptor, final Stack<String> stack,
+			final IndexPlan.Property property, final Stack<String> stack,
 			final float inheritedBoost) throws IndexingException {
-		final Method readMethod = descriptor.getReadMethod();
-		for (final Class<? extends Annotation> annotationClass : Searchable.INDEXING_ANNOTATIONS) {
-			if (null != readMethod
-					&& AnnotationUtils.isAnnotationPresent(readMethod,
-							annotationClass)) {
-
-				// don't index elements marked as nested=false in a nested context
-				if (!stack.isEmpty() && !isNested(descriptor)) {
-					continue;
-				}
-
-				for (final String fieldname : SearchableUtils.getFieldnames(descriptor)) {
-					log.debug("Indexing " + descriptor.getName() + " as "
-							+ getFieldname(fieldname, stack));
-
-					try {
-						final Object prop = PropertyUtils.getProperty(bean,
-								descriptor.getName());
-						if (null == prop)
-							continue;
-
-						addFields(doc, fieldname, prop, descriptor, stack,
-								inheritedBoost);
-					} catch (final IndexingException e) {
-						throw e;
-					} catch (final Exception e) {
-						throw new IndexingException("Unable to index bean.", e);
-					}
-				}
+		// don't index elements marked as nested=false in a nested context
+		if (!stack.isEmpty() && !property.isNested()) {
+			return doc;
+		}
+
+		final Object prop = property.getValue(bean);
+		if (null == prop)
+			return doc;
+
+		for (final String fieldname : property.getFieldnames()) {
+			log.debug("Indexing " + property.getName() + " as "
+					+ getFieldname(fieldname, stack));
+
+			try {
+				addFields(doc, fieldname, prop, property, stack, inheritedBoost);
+			} catch (final IndexingException e) {
+				throw e;
+			} catch (final Exception e) {
+				throw new IndexingException("Unable to index bean.", e);
+			}
+		}
+
+		// range terms are only written under the primary field name, as they
+		// are many and range filters only look there
+		if (property.isRangeIndexed()) {
+			try {
+				addRangeFields(doc, property.getFieldname(), prop, property,
+						stack);
+			} catch (final IndexingException e) {
+				throw e;
+			} catch (final Exception e) {
+				throw new IndexingException("Unable to index bean.", e);
 			}
 		}
 
@@ -99,20 +92,20 @@ public abstract class AbstractBeanIndexer extends AbstractIndexer {
 	 * @param doc Document to add fields to.
 	 * @param fieldname Field name to use.
 	 * @param prop Property value.
-	 * @param descriptor Property descriptor.
+	 * @param property Planned property.
 	 * @param stack Stack containing parent field names.
 	 * @param inheritedBoost Inherited boost factor.
 	 * @return Document with additional fields.
 	 * @throws IndexingException
 	 */
 	protected Document addFields(final Document doc, final String fieldname,
-			final Object prop, final PropertyDescriptor descriptor,
+			final Object prop, final IndexPlan.Property property,
 			final Stack<String> stack, final float inheritedBoost)
 			throws IndexingException {
+		final float boost = property.getBoost();
+
 		if (prop instanceof Date) {
 			// handle Dates specially
-			float boost = SearchableUtils.getBoost(descriptor);
-
 			// TODO allow resolution to be specified in annotation
 			// TODO serialize as canonical date (for Solr)
 			final Field field = new Field(getFieldname(fieldname, stack),
@@ -123,35 +116,29 @@ public abstract class AbstractBeanIndexer extends AbstractIndexer {
 			doc.add(field);
 		} else if (prop instanceof Iterable) {
 			// create multiple fields for things that can be iterated over
-			float boost = SearchableUtils.getBoost(descriptor);
-
 			for (final Object o : (Iterable) prop) {
-				addFields(doc, fieldname, o, descriptor, stack, inheritedBoost
+				addFields(doc, fieldname, o, property, stack, inheritedBoost
 						* boost);
 			}
 		} else if (prop instanceof Object[]) {
 			// create multiple fields for arrays of things
-			float boost = SearchableUtils.getBoost(descriptor);
-
 			for (final Object o : (Object[]) prop) {
-				addFields(doc, fieldname, o, descriptor, stack, inheritedBoost
+				addFields(doc, fieldname, o, property, stack, inheritedBoost
 						* boost);
 			}
 		} else if (prop instanceof Searchable) {
 			// nested Searchables
 			stack.push(fieldname);
 
-			processBean(doc, (Searchable) prop, stack, inheritedBoost
-					* SearchableUtils.getBoost(descriptor));
+			processBean(doc, (Searchable) prop, stack, inheritedBoost * boost);
 
 			stack.pop();
 		} else {
 			final String value = prop.toString();
-			float boost = SearchableUtils.getBoost(descriptor);
 
 			final Field field = new Field(getFieldname(fieldname, stack),
-					value, SearchableUtils.isStored(descriptor), SearchableUtils.getIndexStyle(descriptor),
-					isVectorized(descriptor));
+					value, property.getStore(), property.getIndex(), property
+							.getTermVector());
 			field.setBoost(inheritedBoost * boost);
 			doc.add(field);
 		}
@@ -159,62 +146,104 @@ public abstract class AbstractBeanIndexer extends AbstractIndexer {
 		return doc;
 	}
 
+	/**
+	 * Add multi-precision fields for range filtering.  Each value is written
+	 * once per precision so that NumericRangeFilter can cover a range with
+	 * O(log range) terms.
+	 * 
+	 * @param doc Document to add fields to.
+	 * @param fieldname Field name to use.
+	 * @param prop Property value.
+	 * @param property Planned property.
+	 * @param stack Stack containing parent field names.
+	 * @return Document with additional fields.
+	 * @throws IndexingException
+	 */
+	protected Document addRangeFields(final Document doc,
+			final String fieldname, final Object prop,
+			final IndexPlan.Property property, final Stack<String> stack)
+			throws IndexingException {
+		final String rangeFieldname = RANGE_PREFIX
+				+ getFieldname(fieldname, stack);
+		for (final String term : NumericRangeFilter.getTerms(property
+				.getSortableType(), prop, property.getPrecisionStep())) {
+			doc.add(new Field(rangeFieldname, term, Field.Store.NO,
+					Field.Index.NO_NORMS));
+		}
+
+		return doc;
+	}
+
 	/**
 	 * Add sortable fields.
 	 * 
 	 * @param doc Document to add fields to.
 	 * @param bean Bean to process.
-	 * @param descriptor Property descriptor.
+	 * @param property Planned property.
 	 * @param stack Stack containing parent field names.
 	 * @return Document with additional fields.
 	 * @throws IndexingException
 	 */
 	protected Document addSortableFields(final Document doc,
-			final Searchable bean, final PropertyDescriptor descriptor,
+			final Searchable bean, final IndexPlan.Property property,
 			final Stack<String> stack) throws IndexingException {
-		final Method readMethod = descriptor.getReadMethod();
-		if (null != readMethod
-				&& AnnotationUtils.isAnnotationPresent(readMethod,
-						Sortable.class)) {
-
-			// don't index elements marked as nested=false in a nested context
-			if (!stack.isEmpty() && !isNestedSortable(descriptor)) {
-				return doc;
-			}
+		// don't index elements marked as nested=false in a nested context
+		if (!stack.isEmpty() && !property.isNestedSortable()) {
+			return doc;
+		}
 
-			for (final String fieldname : SearchableUtils.getFieldnames(descriptor)) {
-				log.debug("Indexing " + descriptor.getName() + " as sortable ("
-						+ getFieldname(fieldname, stack) + ").");
-
-				try {
-					final Object prop = PropertyUtils.getProperty(bean,
-							descriptor.getName());
-					if (null == prop)
-						return doc;
-
-					if (prop instanceof Date) {
-						// handle Dates specially
-						// TODO specify resolution
-						doc.add(new Field(SORTABLE_PREFIX
-								+ getFieldname(fieldname, stack), DateTools
-								.dateToString((Date) prop,
-										DateTools.Resolution.SECOND),
-								Field.Store.YES, Field.Index.UN_TOKENIZED));
-					} else if (!(prop instanceof Searchable)) {
-						final String value = prop.toString();
-						doc.add(new Field(SORTABLE_PREFIX
-								+ getFieldname(fieldname, stack), value,
-								Field.Store.YES, Field.Index.UN_TOKENIZED));
-					}
-				} catch (final Exception e) {
-					throw new IndexingException("Unable to index bean.", e);
-				}
+		final Object prop = property.getValue(bean);
+		if (null == prop)
+			return doc;
+
+		for (final String fieldname : property.getFieldnames()) {
+			log.debug("Indexing " + property.getName() + " as sortable ("
+					+ getFieldname(fieldname, stack) + ").");
+
+			final SortableType type = property.getSortableType();
+			if (null != type) {
+				// numbers and dates are encoded so that they sort naturally
+				final String sortableFieldname = SORTABLE_PREFIX
+						+ getFieldname(fieldname, stack);
+				doc.add(new Field(sortableFieldname, type.encode(prop),
+						Field.Store.YES, Field.Index.UN_TOKENIZED));
+				doc.add(new Field(SORTABLE_TYPE_FIELD_NAME, type
+						.getMarker(sortableFieldname), Field.Store.NO,
+						Field.Index.NO_NORMS));
+			} else if (prop instanceof Date) {
+				// handle Dates specially
+				// TODO specify resolution
+				doc.add(new Field(SORTABLE_PREFIX
+						+ getFieldname(fieldname, stack), DateTools
+						.dateToString((Date) prop, DateTools.Resolution.SECOND),
+						Field.Store.YES, Field.Index.UN_TOKENIZED));
+			} else if (!(prop instanceof Searchable)) {
+				final String value = prop.toString();
+				doc.add(new Field(SORTABLE_PREFIX
+						+ getFieldname(fieldname, stack), value,
+						Field.Store.YES, Field.Index.UN_TOKENIZED));
 			}
 		}
 
 		return doc;
 	}
 
+	/**
+	 * Converts a searchable bean into a fully populated Document.  Override
+	 * this to add fields that are not specified by annotations.
+	 * 
+	 * This must be safe to call from multiple threads, as ParallelIndexer
+	 * converts beans concurrently.
+	 * 
+	 * @param bean Bean to convert.
+	 * @return Document representing this bean.
+	 * @throws IndexingException
+	 */
+	protected Document createDocument(final Searchable bean)
+			throws IndexingException {
+		return processBean(doCreate(bean), bean);
+	}
+
 	/**
 	 * Add a searchable bean to the index.
 	 * 
@@ -224,15 +253,32 @@ public abstract class AbstractBeanIndexer extends AbstractIndexer {
 	 */
 	protected Document doAdd(final Searchable bean) throws IndexException {
 		// process a Searchable
-		final Document doc = createDocument(getType(bean), getId(bean));
-
-		processBean(doc, bean);
+		final Document doc = createDocument(bean);
 
 		save(doc);
 
 		return doc;
 	}
 
+	/**
+	 * Add a collection of searchable beans to the index in a single bulk
+	 * operation.
+	 * 
+	 * @param beans Beans to index.
+	 * @throws IndexException
+	 */
+	protected void doAddAll(final Iterable<? extends Searchable> beans)
+			throws IndexException {
+		beginBulk();
+		try {
+			for (final Searchable bean : beans) {
+				save(createDocument(bean));
+			}
+		} finally {
+			endBulk();
+		}
+	}
+
 	/**
 	 * Convenience method for creating Documents.
 	 * 
@@ -254,6 +300,25 @@ public abstract class AbstractBeanIndexer extends AbstractIndexer {
 		delete(getType(bean), getId(bean));
 	}
 
+	/**
+	 * Delete a collection of objects from the index in a single bulk
+	 * operation.
+	 * 
+	 * @param beans Objects to delete.
+	 * @throws IndexException
+	 */
+	protected void doDeleteAll(final Iterable<? extends Searchable> beans)
+			throws IndexException {
+		beginBulk();
+		try {
+			for (final Searchable bean : beans) {
+				doDelete(bean);
+			}
+		} finally {
+			endBulk();
+		}
+	}
+
 	/**
 	 * Convert a Stack to a fully-qualified field name.
 	 * 
@@ -308,22 +373,31 @@ public abstract class AbstractBeanIndexer extends AbstractIndexer {
 	 */
 	protected Serializable getId(final Searchable bean)
 			throws IndexingException {
-		try {
-			final Object id = PropertyUtils.getProperty(bean,
-					SearchableBeanUtils.getIdPropertyName(bean.getClass()));
-			if (id instanceof Serializable) {
-				return (Serializable) id;
-			} else {
-				log.error("The id property for " + bean.getClass()
-						+ " must be Serializable.");
-				throw new IndexingException(
-						"Id properties must be Serializable.");
-			}
-		} catch (final Exception e) {
-			throw new IndexingException("Unable to determine value for id.", e);
+		final IndexPlan.Property idProperty = getIndexPlan(bean)
+				.getIdProperty();
+		if (null == idProperty)
+			throw new IndexingException("Unable to determine value for id.");
+
+		final Object id = idProperty.getValue(bean);
+		if (id instanceof Serializable) {
+			return (Serializable) id;
+		} else {
+			log.error("The id property for " + bean.getClass()
+					+ " must be Serializable.");
+			throw new IndexingException("Id properties must be Serializable.");
 		}
 	}
 
+	/**
+	 * Gets the precompiled indexing plan for a bean's class.
+	 * 
+	 * @param bean Bean being indexed.
+	 * @return Indexing plan.
+	 */
+	protected IndexPlan getIndexPlan(final Searchable bean) {
+		return IndexPlan.getPlan(bean.getClass());
+	}
+
 	/**
 	 * Gets the type of the object being indexed.  If a class has been enhanced
 	 * by CGLIB, the base class name is returned.
@@ -340,60 +414,6 @@ public abstract class AbstractBeanIndexer extends AbstractIndexer {
 		}
 	}
 
-	/**
-	 * Should this property be treated as nested?
-	 * 
-	 * @param descriptor Property descriptor.
-	 * @return Whether this property should be treated as nested.
-	 */
-	private boolean isNested(final PropertyDescriptor descriptor) {
-		for (final Class<? extends Annotation> annotationClass : Searchable.INDEXING_ANNOTATIONS) {
-			final Annotation annotation = AnnotationUtils.getAnnotation(
-					descriptor.getReadMethod(), annotationClass);
-			if (annotation instanceof Indexed) {
-				final Indexed i = (Indexed) annotation;
-				return i.nested();
-			} else if (annotation instanceof Stored) {
-				final Stored s = (Stored) annotation;
-				return s.nested();
-			}
-		}
-
-		return false;
-	}
-
-	/**
-	 * Should this property be treated as a nested Sortable?
-	 * 
-	 * @param descriptor Property descriptor.
-	 * @return Whether this property should be treated as a nested Sortable.
-	 */
-	private boolean isNestedSortable(final PropertyDescriptor descriptor) {
-		final Searchable.Sortable annotation = (Searchable.Sortable) AnnotationUtils
-				.getAnnotation(descriptor.getReadMethod(),
-						Searchable.Sortable.class);
-		if (null != annotation)
-			return annotation.nested();
-
-		return false;
-	}
-
-	/**
-	 * Should the specified property have its term vectors stored in the index?
-	 * 
-	 * @param descriptor Property descriptor.
-	 * @return Whether the specified property should have its term vectors stored.
-	 */
-	private Field.TermVector isVectorized(final PropertyDescriptor descriptor) {
-		final Annotation annotation = AnnotationUtils.getAnnotation(descriptor
-				.getReadMethod(), Searchable.Indexed.class);
-		if (null != annotation) {
-			if (((Searchable.Indexed) annotation).storeTermVector())
-				return Field.TermVector.YES;
-		}
-		return Field.TermVector.NO;
-	}
-
 	/**
 	 * Process a bean.
 	 * 
@@ -434,14 +454,14 @@ public abstract class AbstractBeanIndexer extends AbstractIndexer {
 	private Document processBean(final Document doc, final Searchable bean,
 			final Stack<String> stack, final float boost)
 			throws IndexingException {
-		// iterate through fields
-		for (final PropertyDescriptor d : PropertyUtils
-				.getPropertyDescriptors(bean)) {
-			if (SearchableUtils.containsIndexAnnotations(d))
-				addBeanFields(doc, bean, d, stack, boost);
-
-			if (SearchableUtils.containsSortableAnnotations(d))
-				addSortableFields(doc, bean, d, stack);
+		// iterate through planned properties
+		for (final IndexPlan.Property property : getIndexPlan(bean)
+				.getProperties()) {
+			if (property.isIndexed())
+				addBeanFields(doc, bean, property, stack, boost);
+
+			if (property.isSortable())
+				addSortableFields(doc, bean, property, stack);
 		}
 		return doc;
 	}
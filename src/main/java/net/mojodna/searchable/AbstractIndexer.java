@@ -17,18 +17,17 @@ package net.mojodna.searchable;
 
 import java.io.IOException;
 import java.io.Serializable;
-import java.util.Collection;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.index.IndexModifier;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.search.Hit;
-import org.apache.lucene.search.Hits;
-import org.apache.lucene.search.TermQuery;
 
 /**
  * Core methods for adding objects to an index.  This is intended to be
@@ -38,10 +37,193 @@ import org.apache.lucene.search.TermQuery;
  * @author Seth Fitzsimmons
  */
 public abstract class AbstractIndexer extends IndexSupport {
+	/** Default maximum estimated size of buffered documents (16MB) */
+	public static final long DEFAULT_MAX_BUFFERED_BYTES = 16 * 1024 * 1024;
+
+	/** Default maximum number of buffered documents */
+	public static final int DEFAULT_MAX_BUFFERED_DOCS = 1000;
+
 	private static final Logger log = Logger.getLogger(AbstractIndexer.class);
 
-	/** Pending documents to delete. */
-	private Collection<Integer> pendingDeletes = new LinkedList<Integer>();
+	/** Depth of bulk operations in progress on the current thread. */
+	private final ThreadLocal<Integer> bulkDepth = new ThreadLocal<Integer>() {
+		@Override
+		protected Integer initialValue() {
+			return 0;
+		}
+	};
+
+	/** Buffered documents to add, keyed on compound id. */
+	private final Map<Object, Document> bufferedAdds = new LinkedHashMap<Object, Document>();
+
+	/** Estimated size of buffered documents. */
+	private long bufferedBytes;
+
+	/** Buffered compound ids to delete. */
+	private final Set<String> bufferedDeletes = new LinkedHashSet<String>();
+
+	/** Maximum estimated size of buffered documents. */
+	private long maxBufferedBytes = DEFAULT_MAX_BUFFERED_BYTES;
+
+	/** Maximum number of buffered documents. */
+	private int maxBufferedDocs = DEFAULT_MAX_BUFFERED_DOCS;
+
+	/** Write mode in use. */
+	private WriteMode writeMode = WriteMode.IMMEDIATE;
+
+	/**
+	 * Applies buffered saves and deletes to the index.  Deletes are applied
+	 * first so that buffered documents replace any previously committed
+	 * versions.  Changes are not guaranteed to be durable until the
+	 * IndexModifier is flushed.
+	 * 
+	 * @throws IndexException
+	 */
+	protected void applyBufferedChanges() throws IndexException {
+		try {
+			applyBufferedChanges(getIndexModifier());
+		} catch (final IOException e) {
+			log.error("Could not apply buffered changes: " + e.getMessage(), e);
+			throw new IndexingException("Unable to apply buffered changes.", e);
+		}
+	}
+
+	/**
+	 * Applies buffered saves and deletes to the index.
+	 * 
+	 * @param modifier IndexModifier to apply changes with.
+	 * @throws IOException
+	 */
+	private synchronized void applyBufferedChanges(final IndexModifier modifier)
+			throws IOException {
+		if (bufferedAdds.isEmpty() && bufferedDeletes.isEmpty())
+			return;
+
+		final long begin = System.currentTimeMillis();
+
+		for (final String key : bufferedDeletes) {
+			modifier.deleteDocuments(new Term(COMPOUND_ID_FIELD_NAME, key));
+		}
+
+		for (final Document document : bufferedAdds.values()) {
+			modifier.addDocument(document);
+		}
+
+		log.debug("Applied " + bufferedDeletes.size() + " delete(s) and "
+				+ bufferedAdds.size() + " document(s) in "
+				+ (System.currentTimeMillis() - begin) + "ms");
+
+		bufferedDeletes.clear();
+		bufferedAdds.clear();
+		bufferedBytes = 0;
+	}
+
+	/**
+	 * Applies buffered changes if either buffer threshold has been reached.
+	 * 
+	 * @throws IndexException
+	 */
+	private void applyBufferedChangesIfFull() throws IndexException {
+		if (Math.max(bufferedAdds.size(), bufferedDeletes.size()) >= maxBufferedDocs
+				|| bufferedBytes >= maxBufferedBytes) {
+			applyBufferedChanges();
+		}
+	}
+
+	/**
+	 * Makes changes saved during a bulk operation durable, according to the
+	 * write mode in use.  In IMMEDIATE mode, buffered changes are committed
+	 * with a single flush; in BUFFERED mode they remain buffered until
+	 * commit() is called.
+	 * 
+	 * @throws IndexException
+	 */
+	protected void applyBulk() throws IndexException {
+		if (WriteMode.IMMEDIATE == writeMode && !isBatchMode())
+			commit();
+	}
+
+	/**
+	 * Begins a bulk operation.  Until endBulk() is called, saves and deletes
+	 * made by the current thread are buffered regardless of the write mode in
+	 * use; other threads are unaffected.  Bulk operations may be nested.
+	 */
+	protected void beginBulk() {
+		bulkDepth.set(bulkDepth.get() + 1);
+	}
+
+	/**
+	 * Buffers a document to be added, replacing any buffered change to the
+	 * same compound id.
+	 * 
+	 * @param document Document to buffer.
+	 * @throws IndexException
+	 */
+	private synchronized void bufferAdd(final Document document)
+			throws IndexException {
+		final String key = getCompoundId(document);
+		if (null != key) {
+			// replace any committed versions of this document
+			bufferedDeletes.add(key);
+			final Document previous = bufferedAdds.put(key, document);
+			if (null != previous)
+				bufferedBytes -= estimateSize(previous);
+		} else {
+			bufferedAdds.put(new Object(), document);
+		}
+		bufferedBytes += estimateSize(document);
+
+		applyBufferedChangesIfFull();
+	}
+
+	/**
+	 * Buffers a delete, discarding any buffered add for the same compound id.
+	 * 
+	 * @param key Compound id of the document to delete.
+	 * @throws IndexException
+	 */
+	private synchronized void bufferDelete(final String key)
+			throws IndexException {
+		final Document previous = bufferedAdds.remove(key);
+		if (null != previous)
+			bufferedBytes -= estimateSize(previous);
+		bufferedDeletes.add(key);
+
+		applyBufferedChangesIfFull();
+	}
+
+	/**
+	 * Applies any buffered changes before closing the index.
+	 * 
+	 * @throws IndexException
+	 */
+	@Override
+	public void close() throws IndexException {
+		applyBufferedChanges();
+		super.close();
+	}
+
+	/**
+	 * Applies any buffered changes and flushes them to the index, making them
+	 * durable and visible to newly opened readers and the shared searcher.
+	 * 
+	 * @throws IndexException
+	 */
+	public void commit() throws IndexException {
+		try {
+			final IndexModifier modifier = getIndexModifier();
+			synchronized (this) {
+				applyBufferedChanges(modifier);
+				modifier.flush();
+			}
+		} catch (final IOException e) {
+			log.error("Could not commit changes: " + e.getMessage(), e);
+			throw new IndexingException("Unable to commit changes.", e);
+		}
+
+		// make committed changes visible to searchers in this JVM right away
+		refreshIndexSearcher();
+	}
 
 	/**
 	 * Creates a document with searchable-specific properties initialized.
@@ -77,18 +259,13 @@ public abstract class AbstractIndexer extends IndexSupport {
 	 * @throws IndexException
 	 */
 	protected void delete(final Serializable key) throws IndexException {
+		if (isBuffering()) {
+			bufferDelete(key.toString());
+			return;
+		}
+
 		try {
-			if (isBatchMode()) {
-				final Hits hits = getIndexSearcher().search(
-						new TermQuery(new Term(COMPOUND_ID_FIELD_NAME, key
-								.toString())));
-				for (final Iterator i = hits.iterator(); i.hasNext();) {
-					Hit hit = (Hit) i.next();
-					pendingDeletes.add(hit.getId());
-				}
-			} else {
-				delete(key, getIndexModifier());
-			}
+			delete(key, getIndexModifier());
 		} catch (final IOException e) {
 			log.error("Could not open index: " + e.getMessage(), e);
 			throw new IndexingException("Unable to delete document.", e);
@@ -105,6 +282,9 @@ public abstract class AbstractIndexer extends IndexSupport {
 	 */
 	private synchronized void delete(final Serializable key,
 			final IndexModifier modifier) throws IOException {
+		// changes buffered in batch mode must be applied first
+		applyBufferedChanges(modifier);
+
 		log.debug("Deleting document " + key + ".");
 		modifier.deleteDocuments(new Term(COMPOUND_ID_FIELD_NAME, key
 				.toString()));
@@ -125,7 +305,46 @@ public abstract class AbstractIndexer extends IndexSupport {
 	}
 
 	/**
-	 * Flushes pending deletes.
+	 * Ends a bulk operation and applies the changes made during it once the
+	 * outermost bulk operation on the current thread has ended.
+	 * 
+	 * @throws IndexException
+	 */
+	protected void endBulk() throws IndexException {
+		final int depth = bulkDepth.get() - 1;
+		if (depth > 0) {
+			bulkDepth.set(depth);
+			return;
+		}
+
+		bulkDepth.remove();
+		applyBulk();
+	}
+
+	/**
+	 * Estimates the amount of memory used by a buffered document.
+	 * 
+	 * @param document Document to estimate the size of.
+	 * @return Estimated size in bytes.
+	 */
+	private long estimateSize(final Document document) {
+		long size = 0;
+		final Enumeration fields = document.fields();
+		while (fields.hasMoreElements()) {
+			final Field field = (Field) fields.nextElement();
+			// rough per-field overhead plus 2 bytes per character
+			size += 64 + 2 * field.name().length();
+			if (null != field.stringValue())
+				size += 2 * field.stringValue().length();
+			else if (null != field.binaryValue())
+				size += field.binaryValue().length;
+		}
+		return size;
+	}
+
+	/**
+	 * Flushes pending deletes (and the documents that replace them) to the
+	 * index.
 	 * 
 	 * @throws IndexException
 	 */
@@ -138,20 +357,98 @@ public abstract class AbstractIndexer extends IndexSupport {
 	}
 
 	/**
-	 * Flushes pending deletes.
+	 * Flushes pending deletes (and the documents that replace them) to the
+	 * index.  Deletes are buffered as compound id terms and applied in a
+	 * single pass.
 	 * 
 	 * @param modifier IndexModifier to use for deletes.
 	 * @throws IOException
 	 */
 	protected void flushDeletes(final IndexModifier modifier)
 			throws IOException {
-		for (final Iterator<Integer> i = pendingDeletes.iterator(); i.hasNext();) {
-			final Integer docId = i.next();
-			modifier.deleteDocument(docId);
-			i.remove();
+		synchronized (this) {
+			applyBufferedChanges(modifier);
+			modifier.flush();
 		}
 	}
 
+	/**
+	 * Gets the compound id of a document.
+	 * 
+	 * @param document Document.
+	 * @return Compound id; null if the document has no type or id.
+	 */
+	private String getCompoundId(final Document document) {
+		final String key = document.get(COMPOUND_ID_FIELD_NAME);
+		if (null != key)
+			return key;
+
+		if (null != document.get(TYPE_FIELD_NAME)
+				&& null != document.get(ID_FIELD_NAME))
+			return document.get(TYPE_FIELD_NAME) + "-"
+					+ document.get(ID_FIELD_NAME);
+
+		return null;
+	}
+
+	/**
+	 * Gets the maximum estimated size of buffered documents.
+	 * 
+	 * @return Maximum size in bytes.
+	 */
+	public long getMaxBufferedBytes() {
+		return maxBufferedBytes;
+	}
+
+	/**
+	 * Gets the maximum number of buffered documents.
+	 * 
+	 * @return Maximum number of buffered documents.
+	 */
+	public int getMaxBufferedDocs() {
+		return maxBufferedDocs;
+	}
+
+	/**
+	 * Gets the write mode in use.
+	 * 
+	 * @return Write mode.
+	 */
+	public WriteMode getWriteMode() {
+		return writeMode;
+	}
+
+	/**
+	 * Should saves and deletes be buffered rather than applied immediately?
+	 * This is the case in BUFFERED mode, in batch mode, and during bulk
+	 * operations on the current thread.
+	 * 
+	 * @return Whether changes are being buffered.
+	 */
+	private boolean isBuffering() {
+		return WriteMode.BUFFERED == writeMode || isBulk() || isBatchMode();
+	}
+
+	/**
+	 * Is a bulk operation in progress on the current thread?
+	 * 
+	 * @return Whether a bulk operation is in progress.
+	 */
+	protected boolean isBulk() {
+		return bulkDepth.get() > 0;
+	}
+
+	/**
+	 * Applies any buffered changes before optimizing the index.
+	 * 
+	 * @throws IndexException
+	 */
+	@Override
+	public void optimize() throws IndexException {
+		applyBufferedChanges();
+		super.optimize();
+	}
+
 	/**
 	 * Saves a document to the underlying index.
 	 * 
@@ -159,6 +456,11 @@ public abstract class AbstractIndexer extends IndexSupport {
 	 * @throws IndexException
 	 */
 	protected void save(final Document document) throws IndexException {
+		if (isBuffering()) {
+			bufferAdd(document);
+			return;
+		}
+
 		try {
 			save(document, getIndexModifier());
 		} catch (final IOException e) {
@@ -179,6 +481,9 @@ public abstract class AbstractIndexer extends IndexSupport {
 	private synchronized void save(final Document document,
 			final IndexModifier modifier) throws IndexException, IOException {
 		long begin = System.currentTimeMillis();
+		// changes buffered in batch mode must be applied first
+		applyBufferedChanges(modifier);
+
 		// delete document if necessary
 		if (null != document.get(TYPE_FIELD_NAME)
 				&& null != document.get(ID_FIELD_NAME))
@@ -192,4 +497,39 @@ public abstract class AbstractIndexer extends IndexSupport {
 
 		log.debug("Save took " + (afterWrite - begin) + "ms");
 	}
+
+	/**
+	 * Sets the maximum estimated size of buffered documents.  Buffered changes
+	 * are applied when this is exceeded.
+	 * 
+	 * @param maxBufferedBytes Maximum size in bytes.
+	 */
+	public void setMaxBufferedBytes(final long maxBufferedBytes) {
+		this.maxBufferedBytes = maxBufferedBytes;
+	}
+
+	/**
+	 * Sets the maximum number of buffered documents.  Buffered changes are
+	 * applied when this is reached.
+	 * 
+	 * @param maxBufferedDocs Maximum number of buffered documents.
+	 */
+	public void setMaxBufferedDocs(final int maxBufferedDocs) {
+		this.maxBufferedDocs = maxBufferedDocs;
+	}
+
+	/**
+	 * Sets the write mode.  Any changes buffered under the previous mode are
+	 * committed first.
+	 * 
+	 * @param writeMode Write mode to use.
+	 * @throws IndexException
+	 */
+	public void setWriteMode(final WriteMode writeMode) throws IndexException {
+		if (WriteMode.BUFFERED == this.writeMode
+				&& WriteMode.BUFFERED != writeMode)
+			commit();
+
+		this.writeMode = writeMode;
+	}
 }
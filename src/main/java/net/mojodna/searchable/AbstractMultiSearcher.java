@@ -16,35 +16,188 @@
 package net.mojodna.searchable;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import net.mojodna.searchable.Searchable.DefaultFields;
 import net.mojodna.searchable.util.AnnotationUtils;
 import net.mojodna.searchable.util.SearchableUtils;
 
-import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.MultiReader;
+import org.apache.log4j.Logger;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.HitCollector;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MultiSearcher;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.search.Searchable;
+import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.Weight;
 
 /**
  * Base class for Searchers that search across multiple indexes.
  * 
+ * Indexes are searched one after another unless an executor is provided
+ * (see setParallelism() and setExecutor()), in which case they are searched
+ * concurrently and the top results of each are merged, so latency
+ * approaches that of the slowest index rather than the sum of all of them.
+ * Parallel searches may be given a timeout, after which results from the
+ * indexes that have finished are returned and flagged as partial.
+ * 
  * @author Seth Fitzsimmons
  */
 public abstract class AbstractMultiSearcher extends AbstractSearcher {
+	/**
+	 * Searches a single index on behalf of a parallel search.  The task holds
+	 * its own reference to its searcher, which is released exactly once:
+	 * by the task when it runs, or by the caller if it is cancelled first.
+	 */
+	private static class SearchTask implements Callable<TopDocs> {
+		private final Filter filter;
+
+		/** Number of hits to collect; null for all matches */
+		private final Integer numHits;
+
+		/** Whether the task has yet to start or be abandoned */
+		private final AtomicBoolean pending = new AtomicBoolean(true);
+
+		/** Whether a reference to a managed searcher is held */
+		private final boolean retained;
+
+		private final IndexSearcher searcher;
+
+		private final Sort sort;
+
+		private final Weight weight;
+
+		public SearchTask(final IndexSearcher searcher, final Weight weight,
+				final Filter filter, final Integer numHits, final Sort sort) {
+			this.searcher = searcher;
+			this.weight = weight;
+			this.filter = filter;
+			this.numHits = numHits;
+			this.sort = sort;
+			this.retained = SearcherManager.retainSearcher(searcher);
+		}
+
+		public TopDocs call() throws Exception {
+			// the caller may have given up on this task and released the
+			// searcher already
+			if (!pending.compareAndSet(true, false))
+				throw new IllegalStateException("Search was abandoned.");
+
+			try {
+				// size the queue from the number of matches in this index
+				// when all results are requested
+				final int n = null == numHits ? Math.max(1, countMatches())
+						: numHits;
+
+				if (null != sort)
+					return searcher.search(weight, filter, n, sort);
+
+				return searcher.search(weight, filter, n);
+			} finally {
+				release();
+			}
+		}
+
+		/**
+		 * Releases the searcher if this task has not started.  Used when the
+		 * task has been rejected or cancelled.
+		 */
+		public void abandon() {
+			if (pending.compareAndSet(true, false))
+				release();
+		}
+
+		/**
+		 * Counts the documents in this task's index that match, as
+		 * AbstractSearcher.countMatches() does.
+		 * 
+		 * @return Number of matching documents.
+		 * @throws IOException
+		 */
+		private int countMatches() throws IOException {
+			final int[] matches = new int[1];
+			searcher.search(weight, filter, new HitCollector() {
+				@Override
+				public void collect(final int doc, final float score) {
+					if (score > 0.0f)
+						matches[0]++;
+				}
+			});
+			return matches[0];
+		}
+
+		/**
+		 * Releases this task's reference to the searcher, logging rather than
+		 * throwing failures, as there is no caller to report them to.
+		 */
+		private void release() {
+			if (!retained)
+				return;
+
+			try {
+				SearcherManager.releaseSearcher(searcher);
+			} catch (final IndexException e) {
+				log.warn("Could not release searcher.", e);
+			}
+		}
+	}
+
+	private static final Logger log = Logger
+			.getLogger(AbstractMultiSearcher.class);
+
+	/**
+	 * Creates a bounded executor suitable for searching indexes in parallel.
+	 * Its threads are daemons, so it need not be shut down.
+	 * 
+	 * @param threads Number of threads.
+	 * @return Executor.
+	 */
+	public static ExecutorService newSearchExecutor(final int threads) {
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private int count;
+
+			public synchronized Thread newThread(final Runnable r) {
+				final Thread t = new Thread(r, "searchable-search-"
+						+ ++count);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
 	private Class[] classes;
 
+	/** Executor used for parallel searches; null to search in turn */
+	private ExecutorService executor;
+
 	private String[] indexPaths;
 
+	/** Whether the executor was created by this searcher */
+	private boolean ownExecutor;
+
+	/** Default timeout for parallel searches, in milliseconds; 0 for none */
+	private long timeout;
+
 	/**
 	 * Constructor.  Use this when you want to search indexes that contain
 	 * arbitrary content.  By default, this will search across all fields in
@@ -76,6 +229,159 @@ public abstract class AbstractMultiSearcher extends AbstractSearcher {
 		this.classes = classes;
 	}
 
+	/**
+	 * Creates a comparator that orders merged results in the same way as
+	 * MultiSearcher: by sort values (or score), then by index and document.
+	 * 
+	 * @param sort Sort used; null for relevance.
+	 * @return Comparator.
+	 */
+	private static Comparator<ScoreDoc> createComparator(final Sort sort) {
+		final SortField[] fields = null == sort || Sort.RELEVANCE == sort ? null
+				: sort.getSort();
+
+		return new Comparator<ScoreDoc>() {
+			@SuppressWarnings("unchecked")
+			public int compare(final ScoreDoc a, final ScoreDoc b) {
+				if (null == fields) {
+					// higher scores sort first
+					if (a.score != b.score)
+						return a.score > b.score ? -1 : 1;
+				} else {
+					final Comparable[] av = ((FieldDoc) a).fields;
+					final Comparable[] bv = ((FieldDoc) b).fields;
+					for (int i = 0; i < fields.length; i++) {
+						int c;
+						if (SortField.DOC == fields[i].getType())
+							// document numbers are only comparable once offset
+							c = a.doc < b.doc ? -1 : a.doc > b.doc ? 1 : 0;
+						else if (null == av[i])
+							c = null == bv[i] ? 0 : -1;
+						else if (null == bv[i])
+							c = 1;
+						else
+							c = av[i].compareTo(bv[i]);
+
+						// higher scores sort first
+						if (SortField.SCORE == fields[i].getType())
+							c = -c;
+						if (fields[i].getReverse())
+							c = -c;
+						if (0 != c)
+							return c;
+					}
+				}
+
+				return a.doc < b.doc ? -1 : a.doc > b.doc ? 1 : 0;
+			}
+		};
+	}
+
+	/**
+	 * Searches each index concurrently and merges the top results.  Each task
+	 * holds its own reference to its searcher, so searches that time out can
+	 * finish safely after this has returned.
+	 * 
+	 * @param query Prepared query.
+	 * @param filter Filter to use.
+	 * @param searchers Acquired searchers, one per index.
+	 * @param multiSearcher MultiSearcher over the searchers.
+	 * @param offset Offset to begin result set at.
+	 * @param count Number of results to return; null for all results.
+	 * @param sort Sort to use.
+	 * @param timeout Time allowed in milliseconds; 0 for no limit.
+	 * @return ResultSet containing results.
+	 * @throws SearchException
+	 * @throws IOException
+	 */
+	private ResultSet doParallelSearch(final Query query, final Filter filter,
+			final IndexSearcher[] searchers, final MultiSearcher multiSearcher,
+			final Integer offset, final Integer count, final Sort sort,
+			final long timeout) throws SearchException, IOException {
+		final long deadline = System.currentTimeMillis() + timeout;
+		final boolean sorted = null != sort && Sort.RELEVANCE != sort;
+		final Integer numHits = null == count ? null : Math.max(1, offset
+				+ count);
+
+		log.debug("Searching " + searchers.length
+				+ " indexes in parallel with query: " + query.toString());
+
+		// weight against every index so that scores are comparable
+		final Weight weight = query.weight(multiSearcher);
+
+		// offset document numbers in the same way as MultiSearcher
+		final int[] starts = new int[searchers.length];
+		for (int i = 1; i < searchers.length; i++) {
+			starts[i] = starts[i - 1] + searchers[i - 1].maxDoc();
+		}
+
+		final SearchTask[] tasks = new SearchTask[searchers.length];
+		final List<Future<TopDocs>> futures = new ArrayList<Future<TopDocs>>();
+		for (int i = 0; i < searchers.length; i++) {
+			tasks[i] = new SearchTask(searchers[i], weight, filter, numHits,
+					sorted ? sort : null);
+			try {
+				futures.add(executor.submit(tasks[i]));
+			} catch (final RejectedExecutionException e) {
+				tasks[i].abandon();
+				throw new SearchException("Could not schedule search.", e);
+			}
+		}
+
+		boolean partial = false;
+		int totalHits = 0;
+		final List<ScoreDoc> merged = new ArrayList<ScoreDoc>();
+		for (int i = 0; i < futures.size(); i++) {
+			final Future<TopDocs> future = futures.get(i);
+			final TopDocs topDocs;
+			try {
+				if (timeout > 0)
+					topDocs = future.get(Math.max(0, deadline
+							- System.currentTimeMillis()),
+							TimeUnit.MILLISECONDS);
+				else
+					topDocs = future.get();
+			} catch (final TimeoutException e) {
+				// don't interrupt searches in progress, as interrupting NIO
+				// reads closes files that are shared with other searches
+				future.cancel(false);
+				// release the searcher if the task has yet to start, as it
+				// will not run now
+				tasks[i].abandon();
+				log.warn("Search of " + indexPaths[i] + " timed out after "
+						+ timeout + "ms.");
+				partial = true;
+				continue;
+			} catch (final ExecutionException e) {
+				throw new SearchException("Could not search " + indexPaths[i]
+						+ ".", e.getCause());
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SearchException("Interrupted while searching.", e);
+			}
+
+			totalHits += topDocs.totalHits;
+			for (final ScoreDoc scoreDoc : topDocs.scoreDocs) {
+				if (scoreDoc instanceof FieldDoc)
+					merged.add(new FieldDoc(starts[i] + scoreDoc.doc,
+							scoreDoc.score, ((FieldDoc) scoreDoc).fields));
+				else
+					merged.add(new ScoreDoc(starts[i] + scoreDoc.doc,
+							scoreDoc.score));
+			}
+		}
+
+		Collections.sort(merged, createComparator(sort));
+		final List<ScoreDoc> top = null == numHits ? merged : merged.subList(
+				0, Math.min(numHits, merged.size()));
+
+		final ResultSetImpl rs = createResultSet(query, filter, multiSearcher,
+				top.toArray(new ScoreDoc[top.size()]), totalHits, offset,
+				count, getExcerpter());
+		rs.setPartial(partial);
+		return rs;
+	}
+
 	/**
 	 * Search the index with the specified query.  Overrides AbstractSearcher's
 	 * default behavior.
@@ -92,65 +398,81 @@ public abstract class AbstractMultiSearcher extends AbstractSearcher {
 	public ResultSet doSearch(final String query, final Filter filter,
 			final Integer offset, final Integer count, final Sort sort)
 			throws SearchException {
-		MultiReader mr = null;
-		MultiSearcher ms = null;
+		return doSearch(query, filter, offset, count, sort, timeout);
+	}
+
+	/**
+	 * Search the index with the specified query, allowing parallel searches
+	 * the specified amount of time.  If the time runs out, results from the
+	 * indexes that have been searched are returned and
+	 * ResultSet.isPartial() is true.  The timeout has no effect unless
+	 * indexes are searched in parallel.
+	 * 
+	 * @param query Query to use.
+	 * @param filter Filter to use.
+	 * @param offset Offset to begin result set at.
+	 * @param count Number of results to return.
+	 * @param sort Sort to use.
+	 * @param timeout Time allowed in milliseconds; 0 for no limit.
+	 * @return ResultSet containing results.
+	 * @throws SearchException
+	 */
+	public ResultSet doSearch(final String query, final Filter filter,
+			final Integer offset, final Integer count, final Sort sort,
+			final long timeout) throws SearchException {
+		// acquire shared searchers (and their cached field names) rather than
+		// opening new readers for every query
+		final IndexSearcher[] searchers = new IndexSearcher[indexPaths.length];
 
 		try {
-			// load readers and searchers
-			final Map<Class, IndexReader> readerMap = new HashMap<Class, IndexReader>();
-			final IndexReader[] readers = new IndexReader[indexPaths.length];
-			final Searchable[] searchers = new Searchable[indexPaths.length];
-			int i = 0;
-			for (final String path : indexPaths) {
-				readers[i] = IndexReader.open(path);
-				searchers[i] = new IndexSearcher(readers[i]);
-				readerMap.put(classes[i], readers[i]);
-				i++;
+			for (int i = 0; i < indexPaths.length; i++) {
+				searchers[i] = getSearcherManager(indexPaths[i]).acquire();
 			}
 
-			mr = new MultiReader(readers);
-			ms = new MultiSearcher(searchers);
+			final Collection<String> fields = new HashSet<String>();
 
-			final String[] defaultFields;
-
-			if (null != classes) {
-				final Collection<Object> fields = new HashSet<Object>();
-
-				for (final Class clazz : classes) {
-					if (AnnotationUtils.isAnnotationPresent(clazz,
-							DefaultFields.class)) {
-						// load fields specified in @DefaultFields annotation
-						fields.addAll(Arrays.asList(SearchableBeanUtils
-								.getDefaultFieldNames(clazz)));
-					} else {
-						// load fields present in the index corresponding to this class
-						fields.addAll(Arrays.asList(getFieldsPresent(readerMap
-								.get(clazz))));
-					}
+			for (int i = 0; i < indexPaths.length; i++) {
+				if (null != classes
+						&& AnnotationUtils.isAnnotationPresent(classes[i],
+								DefaultFields.class)) {
+					// load fields specified in @DefaultFields annotation
+					fields.addAll(Arrays.asList(SearchableBeanUtils
+							.getDefaultFieldNames(classes[i])));
+				} else {
+					// load fields present in the index corresponding to this class
+					// (or all indexes if no classes were specified)
+					fields.addAll(Arrays.asList(getFieldsPresent(searchers[i])));
 				}
-
-				defaultFields = SearchableUtils.toStringArray(fields);
-			} else {
-				// load all fields available from all indexes
-				defaultFields = getFieldsPresent(mr);
 			}
 
+			final String[] defaultFields = SearchableUtils
+					.toStringArray(fields);
+
 			// prepare the query using available default fields
 			final Query q = prepareQuery(query, defaultFields);
 
-			// use the overloaded doSearch method with the MultiSearcher
-			// constructed previously
-			return doSearch(q, filter, ms, offset, count, sort);
+			// a MultiSearcher over the shared searchers (not closed, as that
+			// would close them too) is used to load documents either way
+			final MultiSearcher multiSearcher = new MultiSearcher(searchers);
+			if (null != executor)
+				return doParallelSearch(q, filter, searchers, multiSearcher,
+						offset, count, sort, timeout);
+
+			return doSearch(q, filter, multiSearcher, offset, count, sort);
+		} catch (final SearchException e) {
+			throw e;
+		} catch (final IndexException e) {
+			throw new SearchException(e);
 		} catch (final IOException e) {
 			throw new SearchException(e);
 		} finally {
 			try {
-				// attempt to close readers and searchers
-				if (null != mr)
-					mr.close();
-				if (null != ms)
-					ms.close();
-			} catch (final IOException e) {
+				// release searchers so that retired generations can be closed
+				for (final IndexSearcher searcher : searchers) {
+					if (null != searcher)
+						releaseIndexSearcher(searcher);
+				}
+			} catch (final IndexException e) {
 				throw new SearchException(e);
 			}
 		}
@@ -172,4 +494,57 @@ public abstract class AbstractMultiSearcher extends AbstractSearcher {
 			final Integer count, final Sort sort) throws SearchException {
 		return doSearch(query, (Filter) null, offset, count, sort);
 	}
+
+	/**
+	 * Gets the executor used to search indexes in parallel.
+	 * 
+	 * @return Executor; null if indexes are searched in turn.
+	 */
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Gets the default time allowed for parallel searches.
+	 * 
+	 * @return Timeout in milliseconds; 0 for no limit.
+	 */
+	public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Sets the executor used to search indexes in parallel.  Executors may be
+	 * shared between searchers; their size bounds the number of indexes
+	 * searched at once.
+	 * 
+	 * @param executor Executor; null to search indexes in turn.
+	 */
+	public synchronized void setExecutor(final ExecutorService executor) {
+		if (ownExecutor)
+			this.executor.shutdown();
+
+		this.executor = executor;
+		this.ownExecutor = false;
+	}
+
+	/**
+	 * Searches indexes in parallel using an executor of the specified size,
+	 * created for this searcher.
+	 * 
+	 * @param threads Number of threads; 0 to search indexes in turn.
+	 */
+	public synchronized void setParallelism(final int threads) {
+		setExecutor(threads > 0 ? newSearchExecutor(threads) : null);
+		this.ownExecutor = threads > 0;
+	}
+
+	/**
+	 * Sets the default time allowed for parallel searches.
+	 * 
+	 * @param timeout Timeout in milliseconds; 0 for no limit.
+	 */
+	public void setTimeout(final long timeout) {
+		this.timeout = timeout;
+	}
 }
@@ -17,32 +17,37 @@ package net.mojodna.searchable;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
+import net.mojodna.searchable.accessor.PropertyAccessException;
+import net.mojodna.searchable.accessor.PropertyAccessor;
+import net.mojodna.searchable.accessor.PropertyAccessorFactory;
 import net.mojodna.searchable.converter.UUIDConverter;
 import net.mojodna.searchable.util.SearchableUtils;
 
 import org.apache.commons.beanutils.ConvertUtils;
-import org.apache.commons.beanutils.PropertyUtils;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.document.Field;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.queryParser.MultiFieldQueryParser;
 import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.queryParser.QueryParser;
 import org.apache.lucene.search.Filter;
-import org.apache.lucene.search.Hits;
+import org.apache.lucene.search.HitCollector;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Searcher;
 import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopDocs;
 
 /**
  * Core methods for searching an index.  This is intended to be subclassed by
@@ -66,8 +71,32 @@ public abstract class AbstractSearcher extends IndexSupport {
 	/** Default max number of fragments required for highlighting */
 	public static final int DEFAULT_HIGHLIGHTER_MAX_NUM_FRAGMENTS_REQUIRED = 4;
 
+	/** Sort key that orders results by relevance rather than by a field */
+	public static final String SCORE_SORT_KEY = "score";
+
 	private static final Logger log = Logger.getLogger(AbstractSearcher.class);
 
+	/** Query cache shared by searchers that have not been assigned their own */
+	private static final ParsedQueryCache sharedQueryCache = new ParsedQueryCache();
+
+	/** Excerpter used to create search extracts; null for none */
+	private Excerpter excerpter;
+
+	/** Counter used to facet results; null for none */
+	private FacetCounter facetCounter;
+
+	/** Stored fields to load into results; null to defer to the result type */
+	private String[] loadedFields;
+
+	/** Cache of parsed queries; null to parse every query */
+	private ParsedQueryCache queryCache = sharedQueryCache;
+
+	/** Should results from shared searchers be cached? */
+	private boolean resultCacheEnabled = true;
+
+	/** Hydrator used to load complete results; null to return placeholders */
+	private ResultHydrator resultHydrator;
+
 	/**
 	 * Static initialization.
 	 */
@@ -79,6 +108,281 @@ public abstract class AbstractSearcher extends IndexSupport {
 		}
 	}
 
+	/**
+	 * Counts the documents that match a query without collecting them.  As
+	 * with Lucene's own top-n searches, only documents with a positive score
+	 * are counted.
+	 * 
+	 * @param query Query to use.
+	 * @param filter Filter to use.
+	 * @param searcher Lucene Searcher to perform the search with.
+	 * @return Number of matching documents.
+	 * @throws IOException
+	 */
+	protected int countMatches(final Query query, final Filter filter,
+			final Searcher searcher) throws IOException {
+		final int[] matches = new int[1];
+		searcher.search(query, filter, new HitCollector() {
+			@Override
+			public void collect(final int doc, final float score) {
+				if (score > 0.0f)
+					matches[0]++;
+			}
+		});
+		return matches[0];
+	}
+
+	/**
+	 * Creates a filter restricting results to values of a numeric or date
+	 * property within a range.  The property must be annotated with
+	 * @Indexed(precisionStep=...).
+	 *
+	 * @param clazz Class declaring the property.
+	 * @param property Property name.
+	 * @param lower Lower bound; null for no lower bound.
+	 * @param upper Upper bound; null for no upper bound.
+	 * @param includeLower Whether to include the lower bound.
+	 * @param includeUpper Whether to include the upper bound.
+	 * @return Range filter.
+	 * @throws SearchException if the property is not indexed for range
+	 *         filtering.
+	 */
+	protected NumericRangeFilter createRangeFilter(
+			final Class<? extends Searchable> clazz, final String property,
+			final Object lower, final Object upper,
+			final boolean includeLower, final boolean includeUpper)
+			throws SearchException {
+		final IndexPlan.Property planned = getRangeProperty(clazz, property);
+		return new NumericRangeFilter(planned.getFieldname(), planned
+				.getPrecisionStep(), planned.getSortableType(), lower, upper,
+				includeLower, includeUpper);
+	}
+
+	/**
+	 * Creates a filter restricting results to dates within a period ending
+	 * now (e.g. "the last 7 days").  Filters created within the same
+	 * granularity are equal, so their bits are cached and shared.
+	 *
+	 * @param clazz Class declaring the property.
+	 * @param property Date property name.
+	 * @param duration Length of the period, in milliseconds.
+	 * @param granularity Granularity of the start of the period, in
+	 *        milliseconds.
+	 * @return Range filter.
+	 * @throws SearchException if the property is not a date indexed for range
+	 *         filtering.
+	 */
+	protected NumericRangeFilter createRecentRangeFilter(
+			final Class<? extends Searchable> clazz, final String property,
+			final long duration, final long granularity)
+			throws SearchException {
+		final IndexPlan.Property planned = getRangeProperty(clazz, property);
+		if (SortableType.DATE != planned.getSortableType())
+			throw new SearchException(property + " is not a date.");
+
+		return NumericRangeFilter.newRecentRange(planned.getFieldname(),
+				planned.getPrecisionStep(), duration, granularity);
+	}
+
+	/**
+	 * Creates a Result from a stored document.  The document's type is
+	 * instantiated if possible (falling back to a GenericResult), its id is
+	 * set, and its stored fields are attached.  Only the fields specified by
+	 * setLoadedFields() or the result's @LoadedFields annotation are exposed.
+	 * 
+	 * @param doc Stored document.
+	 * @return Result corresponding to the document.
+	 * @throws SearchException
+	 */
+	protected Result createResult(final Document doc) throws SearchException {
+		// load the class name
+		final String className = doc.get(TYPE_FIELD_NAME);
+		final HydrationPlan plan = null == className ? null : HydrationPlan
+				.getPlan(className);
+
+		Result result = null;
+		try {
+			// attempt to instantiate an instance of the specified class
+			if (null != plan)
+				result = plan.newInstance();
+
+			// fall back to a GenericResult as a container
+			if (null == result)
+				result = new GenericResult();
+
+			if (result instanceof Searchable) {
+				// special handling for searchables
+				final String idField = plan.getIdPropertyName();
+
+				// attempt to load the id and set the id property on the Searchable appropriately
+				final String id = doc.get(ID_FIELD_NAME);
+				final String idType = doc.get(ID_TYPE_FIELD_NAME);
+				if (null != id) {
+					if (log.isDebugEnabled())
+						log.debug("Setting id to '" + id + "' of type "
+								+ idType);
+					final Object idValue = HydrationPlan.convertId(id, idType);
+					if (null != idValue)
+						getIdAccessor(result.getClass(), idField).set(result,
+								idValue);
+				} else {
+					log.warn("Id value was null.");
+				}
+			} else {
+				final GenericResult gr = new GenericResult();
+				gr.setId(doc.get(ID_FIELD_NAME));
+				gr.setType(doc.get(TYPE_FIELD_NAME));
+				result = gr;
+			}
+
+			// expose stored fields lazily; they are only copied if iterated over
+			result.setStoredFields(new StoredFieldMap(doc, getLoadedFields(
+					result.getClass(), plan)));
+		} catch (final Exception e) {
+			throw new SearchException(
+					"Could not reconstitute resultant object.", e);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Creates a ResultSet from the top documents matching a query.
+	 * 
+	 * @param query Query used.
+	 * @param filter Filter used.
+	 * @param searcher Lucene Searcher the documents were found with.
+	 * @param scoreDocs Top documents in ranking order, including those
+	 *        before the offset.
+	 * @param totalHits Total number of matches.
+	 * @param offset Offset to begin result set at.
+	 * @param count Number of results to return; null for all results.
+	 * @param excerpter Excerpter to create search extracts with; null for
+	 *        none.
+	 * @return ResultSet containing results.
+	 * @throws SearchException
+	 * @throws IOException
+	 */
+	protected ResultSetImpl createResultSet(final Query query,
+			final Filter filter, final Searcher searcher,
+			final ScoreDoc[] scoreDocs, final int totalHits,
+			final Integer offset, final Integer count,
+			final Excerpter excerpter) throws SearchException, IOException {
+		// create a container for results
+		final List<Result> results = new ArrayList<Result>();
+
+		// instantiate and initialize the ResultSet
+		final ResultSetImpl rs = new ResultSetImpl(totalHits);
+		rs.setQuery(query);
+
+		final int numResults;
+		if (null != count)
+			numResults = Math.min(offset + count, scoreDocs.length);
+		else
+			numResults = scoreDocs.length;
+
+		rs.setOffset(offset);
+
+		// documents are retained for excerpting
+		final int[] docs = new int[Math.max(0, numResults - offset)];
+		final Document[] documents = new Document[docs.length];
+
+		// loop through results starting at offset and stopping after numResults
+		for (int i = offset; i < numResults; i++) {
+			docs[i - offset] = scoreDocs[i].doc;
+			documents[i - offset] = searcher.doc(scoreDocs[i].doc);
+			final Result result = createResult(documents[i - offset]);
+			result.setRanking(i);
+			result.setScore(scoreDocs[i].score);
+
+			results.add(result);
+		}
+
+		rs.setResults(results);
+
+		// facets require a single index's reader
+		if (null != facetCounter && searcher instanceof IndexSearcher)
+			rs.setFacets(facetCounter.count(query, filter,
+					(IndexSearcher) searcher));
+
+		if (null != resultHydrator)
+			rs.hydrate(resultHydrator);
+
+		// excerpt after hydration, as unstored text may only be available
+		// from hydrated results
+		if (null != excerpter)
+			excerpter.excerpt(query, searcher, getAnalyzer(), docs, documents,
+					rs.getResults());
+
+		return rs;
+	}
+
+	/**
+	 * Creates a Sort from a list of sort keys.  Each key is the name of a
+	 * Sortable property, optionally followed by "asc" or "desc" (e.g.
+	 * "date desc"); the special key "score" sorts by relevance.  Keys are
+	 * applied in order, so later keys only break ties left by earlier ones.
+	 * 
+	 * Values for each key are read from Lucene's per-reader FieldCache, which
+	 * is populated once per field when a searcher generation is first sorted
+	 * and reused by every subsequent search against it.
+	 * 
+	 * @param sortFields Sort keys.
+	 * @return Sort corresponding to the specified keys; relevance if none
+	 *         were specified.
+	 * @throws SearchException
+	 */
+	protected Sort createSort(final String[] sortFields) throws SearchException {
+		final List<SortField> keys = new ArrayList<SortField>();
+		if (null != sortFields) {
+			for (final String sortField : sortFields) {
+				if (StringUtils.isBlank(sortField))
+					continue;
+
+				final String[] parts = StringUtils.split(sortField.trim());
+				if (parts.length > 2)
+					throw new SearchException("Invalid sort key: '" + sortField
+							+ "'.");
+
+				final boolean explicit = parts.length == 2;
+				if (explicit && !"asc".equalsIgnoreCase(parts[1])
+						&& !"desc".equalsIgnoreCase(parts[1]))
+					throw new SearchException("Invalid sort direction: '"
+							+ parts[1] + "'.");
+				final boolean descending = explicit
+						&& "desc".equalsIgnoreCase(parts[1]);
+
+				if (SCORE_SORT_KEY.equals(parts[0])) {
+					// relevance is naturally descending
+					keys.add(new SortField(null, SortField.SCORE, explicit
+							&& !descending));
+				} else {
+					keys.add(createSortField(parts[0], descending));
+				}
+			}
+		}
+
+		if (keys.isEmpty())
+			return Sort.RELEVANCE;
+
+		return new Sort(keys.toArray(new SortField[keys.size()]));
+	}
+
+	/**
+	 * Creates a SortField for a Sortable property.  Numeric and date
+	 * properties are sorted using primitive arrays rather than strings.
+	 * 
+	 * @param property Property name.
+	 * @param reverse Whether to reverse the natural order.
+	 * @return SortField for the property's sortable field.
+	 * @see SortableComparatorSource
+	 */
+	protected SortField createSortField(final String property,
+			final boolean reverse) {
+		return new SortField(SORTABLE_PREFIX + property,
+				SortableComparatorSource.INSTANCE, reverse);
+	}
+
 	/**
 	 * Search the index with the specified query.
 	 * 
@@ -132,11 +436,33 @@ public abstract class AbstractSearcher extends IndexSupport {
 	protected ResultSet doSearch(final Query query, final Filter filter,
 			final Integer offset, final Integer count, final Sort sort)
 			throws IndexException {
+		return doSearch(query, filter, offset, count, sort, excerpter);
+	}
+
+	/**
+	 * Search the index with the specified query.
+	 * 
+	 * @param query Query to use.
+	 * @param filter Filter to use.
+	 * @param offset Offset to begin result set at.
+	 * @param count Number of results to return.
+	 * @param sort Sort to use.
+	 * @param excerpter Excerpter to create search extracts with; null for
+	 *        none.
+	 * @return ResultSet containing results.
+	 * @throws IndexException
+	 */
+	protected ResultSet doSearch(final Query query, final Filter filter,
+			final Integer offset, final Integer count, final Sort sort,
+			final Excerpter excerpter) throws IndexException {
+		final IndexSearcher searcher = acquireIndexSearcher();
 		try {
-			return doSearch(query, filter, getIndexSearcher(), offset, count,
-					sort);
+			return doSearch(query, filter, searcher, offset, count, sort,
+					excerpter);
 		} catch (final IOException e) {
 			throw new SearchException(e);
+		} finally {
+			releaseIndexSearcher(searcher);
 		}
 	}
 
@@ -151,13 +477,12 @@ public abstract class AbstractSearcher extends IndexSupport {
 	 * @return ResultSet containing results.
 	 * @throws IndexException
 	 */
-	// TODO add support for String[] sortFields
 	protected ResultSet doSearch(final Query query, final Filter filter,
 			final Integer offset, final Integer count, final String sortField)
 			throws IndexException {
 		Sort sort = Sort.RELEVANCE;
 		if (StringUtils.isNotBlank(sortField))
-			sort = new Sort(IndexSupport.SORTABLE_PREFIX + sortField);
+			sort = new Sort(createSortField(sortField, false));
 		return doSearch(query, filter, offset, count, sort);
 	}
 
@@ -178,13 +503,32 @@ public abstract class AbstractSearcher extends IndexSupport {
 			final boolean reverse) throws IndexException {
 		Sort sort = Sort.RELEVANCE;
 		if (StringUtils.isNotBlank(sortField))
-			sort = new Sort(IndexSupport.SORTABLE_PREFIX + sortField, reverse);
+			sort = new Sort(createSortField(sortField, reverse));
 
 		return doSearch(query, filter, offset, count, sort);
 	}
 
 	/**
-	 * Search the index with the specified query.
+	 * Search the index with the specified query, sorting by multiple keys.
+	 * 
+	 * @param query Query to use.
+	 * @param filter Filter to use.
+	 * @param offset Offset to begin result set at.
+	 * @param count Number of results to return.
+	 * @param sortFields Keys to sort by, e.g. { "date desc", "name", "score" }.
+	 * @return ResultSet containing results.
+	 * @throws IndexException
+	 * @see #createSort(String[])
+	 */
+	protected ResultSet doSearch(final Query query, final Filter filter,
+			final Integer offset, final Integer count, final String[] sortFields)
+			throws IndexException {
+		return doSearch(query, filter, offset, count, createSort(sortFields));
+	}
+
+	/**
+	 * Search the index with the specified query.  The searcher is left open;
+	 * callers are responsible for closing or releasing it.
 	 * 
 	 * @param query Query to use.
 	 * @param filter Filter to use.
@@ -199,107 +543,37 @@ public abstract class AbstractSearcher extends IndexSupport {
 	protected ResultSet doSearch(final Query query, final Filter filter,
 			final Searcher searcher, final Integer offset, final Integer count,
 			final Sort sort) throws SearchException, IOException {
+		return doSearch(query, filter, searcher, offset, count, sort,
+				excerpter);
+	}
+
+	/**
+	 * Search the index with the specified query.  The searcher is left open;
+	 * callers are responsible for closing or releasing it.
+	 * 
+	 * @param query Query to use.
+	 * @param filter Filter to use.
+	 * @param searcher Lucene Searcher to perform the search with.
+	 * @param offset Offset to begin result set at.
+	 * @param count Number of results to return.
+	 * @param sort Sort to use.
+	 * @param excerpter Excerpter to create search extracts with; null for
+	 *        none.
+	 * @return ResultSet containing results.
+	 * @throws SearchException 
+	 * @throws IOException 
+	 */
+	protected ResultSet doSearch(final Query query, final Filter filter,
+			final Searcher searcher, final Integer offset, final Integer count,
+			final Sort sort, final Excerpter excerpter)
+			throws SearchException, IOException {
 		// execute the search
 		log.debug("Searching with query: " + query.toString());
-		final Hits hits = searcher.search(query, filter, sort);
-
-		// create a container for results
-		final List<Result> results = new LinkedList<Result>();
-
-		// instantiate and initialize the ResultSet
-		final ResultSetImpl rs = new ResultSetImpl(hits.length());
-		rs.setQuery(query);
-
-		final int numResults;
-		if (null != count)
-			numResults = Math.min(offset + count, hits.length());
-		else
-			numResults = hits.length();
+		final TopDocs topDocs = search(query, filter, searcher, offset, count,
+				sort);
 
-		rs.setOffset(offset);
-
-		// loop through results starting at offset and stopping after numResults
-		for (int i = offset; i < numResults; i++) {
-			final Document doc = hits.doc(i);
-			Result result = null;
-
-			// load the class name
-			final String className = doc.get(TYPE_FIELD_NAME);
-			try {
-				// attempt to instantiate an instance of the specified class
-				try {
-					if (null != className) {
-						final Object o = Class.forName(className).newInstance();
-						if (o instanceof Result) {
-							log.debug("Created new instance of: " + className);
-							result = (Result) o;
-						}
-					}
-				} catch (final ClassNotFoundException e) {
-					// class was invalid, or something
-				}
-
-				// fall back to a GenericResult as a container
-				if (null == result)
-					result = new GenericResult();
-
-				if (result instanceof Searchable) {
-					// special handling for searchables
-					final String idField = SearchableBeanUtils
-							.getIdPropertyName(((Searchable) result).getClass());
-
-					// attempt to load the id and set the id property on the Searchable appropriately
-					final String id = doc.get(ID_FIELD_NAME);
-					final Field idClass = doc.getField(ID_TYPE_FIELD_NAME);
-					if (null != id) {
-						log.debug("Setting id to '" + id + "' of type "
-								+ idClass.stringValue());
-						try {
-							final Object idValue = ConvertUtils.convert(id,
-									Class.forName(idClass.stringValue()));
-							PropertyUtils.setSimpleProperty(result, idField,
-									idValue);
-						} catch (final ClassNotFoundException e) {
-							log
-									.warn("Id type was not a class that could be found: "
-											+ idClass.stringValue());
-						}
-					} else {
-						log.warn("Id value was null.");
-					}
-				} else {
-					final GenericResult gr = new GenericResult();
-					gr.setId(doc.get(ID_FIELD_NAME));
-					gr.setType(doc.get(TYPE_FIELD_NAME));
-					result = gr;
-				}
-
-				// load stored fields and put them in the Result
-				final Map<String, String> storedFields = new HashMap<String, String>();
-				final Enumeration fields = doc.fields();
-				while (fields.hasMoreElements()) {
-					final Field f = (Field) fields.nextElement();
-					// exclude private fields
-					if (!PRIVATE_FIELD_NAMES.contains(f.name())
-							&& !f.name().startsWith(
-									IndexSupport.SORTABLE_PREFIX))
-						storedFields.put(f.name(), f.stringValue());
-				}
-				result.setStoredFields(storedFields);
-			} catch (final Exception e) {
-				throw new SearchException(
-						"Could not reconstitute resultant object.", e);
-			}
-
-			result.setRanking(i);
-			result.setScore(hits.score(i));
-
-			results.add(result);
-		}
-
-		rs.setResults(results);
-		searcher.close();
-		return rs;
+		return createResultSet(query, filter, searcher, topDocs.scoreDocs,
+				topDocs.totalHits, offset, count, excerpter);
 	}
 
 	/**
@@ -341,12 +615,11 @@ public abstract class AbstractSearcher extends IndexSupport {
 	 * @return ResultSet containing results.
 	 * @throws IndexException
 	 */
-	// TODO add support for String[] sortFields
 	protected ResultSet doSearch(final Query query, final Integer offset,
 			final Integer count, final String sortField) throws IndexException {
 		Sort sort = Sort.RELEVANCE;
 		if (StringUtils.isNotBlank(sortField))
-			sort = new Sort(IndexSupport.SORTABLE_PREFIX + sortField);
+			sort = new Sort(createSortField(sortField, false));
 		return doSearch(query, offset, count, sort);
 	}
 
@@ -368,11 +641,28 @@ public abstract class AbstractSearcher extends IndexSupport {
 			throws IndexException {
 		Sort sort = Sort.RELEVANCE;
 		if (StringUtils.isNotBlank(sortField))
-			sort = new Sort(IndexSupport.SORTABLE_PREFIX + sortField, reverse);
+			sort = new Sort(createSortField(sortField, reverse));
 
 		return doSearch(query, offset, count, sort);
 	}
 
+	/**
+	 * Search the index with the specified query, sorting by multiple keys.
+	 * 
+	 * @param query Query to use.
+	 * @param offset Offset to begin result set at.
+	 * @param count Number of results to return.
+	 * @param sortFields Keys to sort by, e.g. { "date desc", "name", "score" }.
+	 * @return ResultSet containing results.
+	 * @throws IndexException
+	 * @see #createSort(String[])
+	 */
+	protected ResultSet doSearch(final Query query, final Integer offset,
+			final Integer count, final String[] sortFields)
+			throws IndexException {
+		return doSearch(query, offset, count, createSort(sortFields));
+	}
+
 	/**
 	 * Search the index with the specified query.
 	 * 
@@ -565,7 +855,8 @@ public abstract class AbstractSearcher extends IndexSupport {
 		log.debug("Fields being searched: " + Arrays.asList(fields));
 
 		final Query query = prepareQuery(_query, fields);
-		final ResultSet results = doSearch(query, filter, offset, count, sort);
+		final ResultSet results = doSearch(query, restrictToType(filter,
+				clazz), offset, count, sort);
 
 		log.debug("Found " + results.size()
 				+ " document(s) that matched query '" + _query + "':");
@@ -784,6 +1075,24 @@ public abstract class AbstractSearcher extends IndexSupport {
 		return doSearch(query, offset, count, sortField, false);
 	}
 
+	/**
+	 * Search the index with the specified query, sorting by multiple keys.
+	 * 
+	 * @param query Query to use.
+	 * @param offset Offset to begin result set at.
+	 * @param count Number of results to return.
+	 * @param sortFields Keys to sort by, e.g. { "date desc", "name", "score" }.
+	 * @return ResultSet containing results.
+	 * @throws IndexException
+	 * @see #createSort(String[])
+	 */
+	protected ResultSet doSearch(final String query, final Integer offset,
+			final Integer count, final String[] sortFields)
+			throws IndexException {
+		return doSearch(query, (Filter) null, offset, count,
+				createSort(sortFields));
+	}
+
 	/**
 	 * Search the index with the specified query.
 	 * 
@@ -827,6 +1136,215 @@ public abstract class AbstractSearcher extends IndexSupport {
 		return doSearch(query, 0, null, sortField);
 	}
 
+	/**
+	 * Search the index with the specified query, resuming after a cursor.
+	 * Each page costs the same regardless of how deep into the results it
+	 * is; ResultSet.getCursor() provides the cursor for the next page.
+	 * 
+	 * Cursors are only supported on the index managed by this searcher.
+	 * 
+	 * @param query Query to use.
+	 * @param filter Filter to use.
+	 * @param cursor Cursor returned with the previous page; null for the
+	 *        first page.
+	 * @param count Number of results to return; null for all remaining
+	 *        results.
+	 * @param sort Sort to use.
+	 * @return ResultSet containing results.
+	 * @throws IndexException
+	 */
+	protected ResultSet doSearchAfter(final Query query, final Filter filter,
+			final String cursor, final Integer count, final Sort sort)
+			throws IndexException {
+		final SearchCursor after = null == cursor ? null : SearchCursor
+				.parse(cursor);
+		final int offset = null == after ? 0 : after.getOffset();
+
+		final IndexSearcher searcher = acquireIndexSearcher();
+		try {
+			log.debug("Searching with query: " + query.toString()
+					+ " after cursor: " + cursor);
+			// size the queue from the number of matches when all remaining
+			// results are requested
+			final SearchAfterCollector collector = new SearchAfterCollector(
+					searcher.getIndexReader(), sort, after,
+					null == count ? countMatches(query, filter, searcher)
+							: count);
+			searcher.search(query, filter, collector);
+			final ScoreDoc[] scoreDocs = collector.getTopDocs();
+
+			final List<Result> results = new ArrayList<Result>();
+			for (int i = 0; i < scoreDocs.length; i++) {
+				final Result result = createResult(searcher
+						.doc(scoreDocs[i].doc));
+				result.setRanking(offset + i);
+				result.setScore(scoreDocs[i].score);
+				results.add(result);
+			}
+
+			final ResultSetImpl rs = new ResultSetImpl(collector
+					.getTotalHits());
+			rs.setQuery(query);
+			rs.setOffset(offset);
+			rs.setResults(results);
+			if (null != resultHydrator)
+				rs.hydrate(resultHydrator);
+
+			// only hand out a cursor if there are more results to be had
+			if (collector.getMatches() > scoreDocs.length
+					&& scoreDocs.length > 0) {
+				rs.setCursor(collector.getCursor(
+						scoreDocs[scoreDocs.length - 1],
+						offset + scoreDocs.length).toString());
+			}
+
+			return rs;
+		} catch (final IOException e) {
+			throw new SearchException(e);
+		} finally {
+			releaseIndexSearcher(searcher);
+		}
+	}
+
+	/**
+	 * Search the index with the specified query, resuming after a cursor.
+	 * 
+	 * @param query Query to use.
+	 * @param filter Filter to use.
+	 * @param cursor Cursor returned with the previous page; null for the
+	 *        first page.
+	 * @param count Number of results to return.
+	 * @param sortField Field to sort by.
+	 * @param reverse Whether to reverse the resultset.
+	 * @return ResultSet containing results.
+	 * @throws IndexException
+	 */
+	protected ResultSet doSearchAfter(final Query query, final Filter filter,
+			final String cursor, final Integer count, final String sortField,
+			final boolean reverse) throws IndexException {
+		Sort sort = Sort.RELEVANCE;
+		if (StringUtils.isNotBlank(sortField))
+			sort = new Sort(createSortField(sortField, reverse));
+
+		return doSearchAfter(query, filter, cursor, count, sort);
+	}
+
+	/**
+	 * Search the index with the specified query, resuming after a cursor.
+	 * 
+	 * @param _query Query to use.
+	 * @param filter Filter to use.
+	 * @param clazz Type of object being searched for.
+	 * @param cursor Cursor returned with the previous page; null for the
+	 *        first page.
+	 * @param count Number of results to return.
+	 * @param sort Sort to use.
+	 * @return ResultSet containing results.
+	 * @throws IndexException
+	 */
+	protected ResultSet doSearchAfter(final String _query, final Filter filter,
+			final Class<? extends Searchable> clazz, final String cursor,
+			final Integer count, final Sort sort) throws IndexException {
+		String[] fields = new String[0];
+		if (null != clazz)
+			fields = SearchableBeanUtils.getDefaultFieldNames(clazz);
+		if (null == fields || fields.length == 0)
+			fields = getFieldsPresent();
+
+		return doSearchAfter(prepareQuery(_query, fields), restrictToType(
+				filter, clazz), cursor, count, sort);
+	}
+
+	/**
+	 * Search the index with the specified query, resuming after a cursor.
+	 * 
+	 * @param query Query to use.
+	 * @param cursor Cursor returned with the previous page; null for the
+	 *        first page.
+	 * @param count Number of results to return.
+	 * @return ResultSet containing results.
+	 * @throws IndexException
+	 */
+	protected ResultSet doSearchAfter(final String query, final String cursor,
+			final Integer count) throws IndexException {
+		return doSearchAfter(query, null, null, cursor, count, Sort.RELEVANCE);
+	}
+
+	/**
+	 * Streams every result of the specified query in index order.  The query
+	 * is executed once; results are loaded (and hydrated) blockSize at a
+	 * time as the iterator advances.  Results are not scored.
+	 * 
+	 * The iterator holds a searcher until it is exhausted or closed.
+	 * 
+	 * @param query Query to use.
+	 * @param filter Filter to use.
+	 * @param blockSize Number of results to load at a time.
+	 * @return Iterator over all results.
+	 * @throws IndexException
+	 */
+	protected ResultIterator doStream(final Query query, final Filter filter,
+			final int blockSize) throws IndexException {
+		final IndexSearcher searcher = acquireIndexSearcher();
+		boolean streaming = false;
+		try {
+			log.debug("Streaming results for query: " + query.toString());
+			final BitSet matches = new BitSet(searcher.maxDoc());
+			searcher.search(query, filter, new HitCollector() {
+				@Override
+				public void collect(final int doc, final float score) {
+					if (score > 0.0f)
+						matches.set(doc);
+				}
+			});
+
+			final ResultIterator results = new DocOrderResultIterator(this,
+					searcher, matches, blockSize);
+			streaming = true;
+			return results;
+		} catch (final IOException e) {
+			throw new SearchException(e);
+		} finally {
+			if (!streaming)
+				releaseIndexSearcher(searcher);
+		}
+	}
+
+	/**
+	 * Streams every result of the specified query in index order.
+	 * 
+	 * @param _query Query to use.
+	 * @param filter Filter to use.
+	 * @param clazz Type of object being searched for.
+	 * @param blockSize Number of results to load at a time.
+	 * @return Iterator over all results.
+	 * @throws IndexException
+	 */
+	protected ResultIterator doStream(final String _query, final Filter filter,
+			final Class<? extends Searchable> clazz, final int blockSize)
+			throws IndexException {
+		String[] fields = new String[0];
+		if (null != clazz)
+			fields = SearchableBeanUtils.getDefaultFieldNames(clazz);
+		if (null == fields || fields.length == 0)
+			fields = getFieldsPresent();
+
+		return doStream(prepareQuery(_query, fields), restrictToType(filter,
+				clazz), blockSize);
+	}
+
+	/**
+	 * Streams every result of the specified query in index order.
+	 * 
+	 * @param query Query to use.
+	 * @return Iterator over all results.
+	 * @throws IndexException
+	 */
+	protected ResultIterator doStream(final String query)
+			throws IndexException {
+		return doStream(query, null, null, ResultIterator.DEFAULT_BLOCK_SIZE);
+	}
+
 	/**
 	 * Loads a document from the index.
 	 * 
@@ -835,13 +1353,34 @@ public abstract class AbstractSearcher extends IndexSupport {
 	 * @throws IndexException
 	 */
 	protected Document getDocument(final int id) throws IndexException {
+		final IndexSearcher searcher = acquireIndexSearcher();
 		try {
-			return getIndexReader().document(id);
+			return searcher.getIndexReader().document(id);
 		} catch (final IOException e) {
 			throw new SearchException(e);
+		} finally {
+			releaseIndexSearcher(searcher);
 		}
 	}
 
+	/**
+	 * Gets the excerpter used to create search extracts.
+	 * 
+	 * @return Excerpter; null if extracts are not created.
+	 */
+	public Excerpter getExcerpter() {
+		return excerpter;
+	}
+
+	/**
+	 * Gets the counter used to facet results.
+	 * 
+	 * @return Facet counter; null if results are not faceted.
+	 */
+	public FacetCounter getFacetCounter() {
+		return facetCounter;
+	}
+
 	/**
 	 * Gets a Collection of all fields present in the index.
 	 * 
@@ -849,7 +1388,27 @@ public abstract class AbstractSearcher extends IndexSupport {
 	 * @throws IndexException
 	 */
 	protected String[] getFieldsPresent() throws IndexException {
-		return getFieldsPresent(getIndexReader());
+		final IndexSearcher searcher = acquireIndexSearcher();
+		try {
+			return getFieldsPresent(searcher);
+		} finally {
+			releaseIndexSearcher(searcher);
+		}
+	}
+
+	/**
+	 * Gets a list of all fields present in the index.  Fields present in
+	 * shared searchers are only determined once per reopen.
+	 * 
+	 * @param searcher IndexSearcher to use to obtain fields.
+	 * @return Array of field names.
+	 */
+	protected String[] getFieldsPresent(final IndexSearcher searcher) {
+		final String[] fields = SearcherManager.getFieldsPresent(searcher);
+		if (null != fields)
+			return fields;
+
+		return getFieldsPresent(searcher.getIndexReader());
 	}
 
 	/**
@@ -881,19 +1440,122 @@ public abstract class AbstractSearcher extends IndexSupport {
 	 * @throws SearchException
 	 */
 	protected Serializable getId(final Searchable bean) throws SearchException {
+		final IndexPlan.Property idProperty = IndexPlan.getPlan(
+				bean.getClass()).getIdProperty();
+		if (null == idProperty)
+			throw new SearchException("Unable to determine value for id.");
+
+		final Object id;
 		try {
-			final Object id = PropertyUtils.getProperty(bean,
-					SearchableBeanUtils.getIdPropertyName(bean.getClass()));
-			if (id instanceof Serializable) {
-				return (Serializable) id;
-			} else {
-				log.error("The id property for " + bean.getClass()
-						+ " must be Serializable.");
-				throw new SearchException("Id properties must be Serializable.");
-			}
-		} catch (final Exception e) {
+			id = idProperty.getAccessor().get(bean);
+		} catch (final PropertyAccessException e) {
 			throw new SearchException("Unable to determine value for id.", e);
 		}
+
+		if (id instanceof Serializable) {
+			return (Serializable) id;
+		} else {
+			log.error("The id property for " + bean.getClass()
+					+ " must be Serializable.");
+			throw new SearchException("Id properties must be Serializable.");
+		}
+	}
+
+	/**
+	 * Gets the accessor used to set ids on hydrated results.
+	 * 
+	 * @param clazz Class of the result being hydrated.
+	 * @param idField Name of the id property.
+	 * @return Accessor for the id property.
+	 * @throws SearchException
+	 */
+	protected PropertyAccessor getIdAccessor(final Class<?> clazz,
+			final String idField) throws SearchException {
+		final PropertyAccessor accessor = PropertyAccessorFactory.getDefault()
+				.getAccessor(clazz, idField);
+		if (null == accessor)
+			throw new SearchException("Unknown id property '" + idField
+					+ "' on " + clazz.getName() + ".");
+		return accessor;
+	}
+
+	/**
+	 * Gets the stored fields to load into results, if set.
+	 * 
+	 * @return Names of stored fields to load; null if not set.
+	 */
+	public String[] getLoadedFields() {
+		return loadedFields;
+	}
+
+	/**
+	 * Gets the stored fields to load into results of the specified type.
+	 * Fields set with setLoadedFields() take precedence over those specified
+	 * with a @LoadedFields annotation.
+	 * 
+	 * @param clazz Type of result being hydrated.
+	 * @return Names of stored fields to load; null for all fields.
+	 */
+	protected String[] getLoadedFields(final Class<? extends Result> clazz) {
+		return getLoadedFields(clazz, HydrationPlan.getPlan(clazz.getName()));
+	}
+
+	/**
+	 * Gets the stored fields to load into results of the specified type.
+	 * 
+	 * @param clazz Type of result being hydrated.
+	 * @param plan Hydration plan for the document's type, if any.
+	 * @return Names of stored fields to load; null for all fields.
+	 */
+	private String[] getLoadedFields(final Class<? extends Result> clazz,
+			final HydrationPlan plan) {
+		if (null != loadedFields)
+			return loadedFields;
+
+		if (null != plan && clazz == plan.getType())
+			return plan.getLoadedFields();
+
+		return HydrationPlan.getPlan(clazz.getName()).getLoadedFields();
+	}
+
+	/**
+	 * Gets a property that has been indexed for range filtering.
+	 *
+	 * @param clazz Class declaring the property.
+	 * @param property Property name.
+	 * @return Planned property.
+	 * @throws SearchException if the property is not indexed for range
+	 *         filtering.
+	 */
+	private IndexPlan.Property getRangeProperty(
+			final Class<? extends Searchable> clazz, final String property)
+			throws SearchException {
+		final IndexPlan.Property planned = IndexPlan.getPlan(clazz)
+				.getProperty(property);
+		if (null == planned || !planned.isRangeIndexed())
+			throw new SearchException(property
+					+ " is not indexed for range filtering.");
+
+		return planned;
+	}
+
+	/**
+	 * Gets the cache used to parse queries.  Unless otherwise set, this is
+	 * shared by all searchers.
+	 * 
+	 * @return Parsed query cache; null if queries are not cached.
+	 */
+	public ParsedQueryCache getQueryCache() {
+		return queryCache;
+	}
+
+	/**
+	 * Gets the hydrator used to load complete results.
+	 * 
+	 * @return Result hydrator; null if not set.
+	 */
+	public ResultHydrator getResultHydrator() {
+		return resultHydrator;
 	}
 
 	/**
@@ -904,7 +1566,17 @@ public abstract class AbstractSearcher extends IndexSupport {
 	 * @throws IndexException
 	 */
 	protected boolean isFieldPresent(final String field) throws IndexException {
-		return isFieldPresent(field, getIndexReader());
+		final IndexSearcher searcher = acquireIndexSearcher();
+		try {
+			final Set<String> fieldNames = SearcherManager
+					.getFieldNames(searcher);
+			if (null != fieldNames)
+				return fieldNames.contains(field);
+
+			return isFieldPresent(field, searcher.getIndexReader());
+		} finally {
+			releaseIndexSearcher(searcher);
+		}
 	}
 
 	/**
@@ -920,6 +1592,15 @@ public abstract class AbstractSearcher extends IndexSupport {
 				.contains(field);
 	}
 
+	/**
+	 * Are results cached until the index is reopened?
+	 * 
+	 * @return Whether results are cached.
+	 */
+	public boolean isResultCacheEnabled() {
+		return resultCacheEnabled;
+	}
+
 	/**
 	 * Prepare a query against a set of default fields.
 	 * 
@@ -930,13 +1611,154 @@ public abstract class AbstractSearcher extends IndexSupport {
 	 */
 	protected Query prepareQuery(final String query,
 			final String[] defaultFields) throws SearchException {
-		final MultiFieldQueryParser mfp = new MultiFieldQueryParser(
-				defaultFields, getAnalyzer());
-		mfp.setDefaultOperator(MultiFieldQueryParser.AND_OPERATOR);
 		try {
+			if (null != queryCache)
+				return queryCache.parse(query, defaultFields, getAnalyzer(),
+						QueryParser.AND_OPERATOR);
+
+			final MultiFieldQueryParser mfp = new MultiFieldQueryParser(
+					defaultFields, getAnalyzer());
+			mfp.setDefaultOperator(QueryParser.AND_OPERATOR);
 			return mfp.parse(query);
 		} catch (final ParseException e) {
 			throw new SearchException("Unable to prepare query.", e);
 		}
 	}
+
+	/**
+	 * Restricts a filter to documents of the specified type (or its
+	 * subtypes).  Class-scoped searches use this rather than adding a _type
+	 * clause to the query, as cached filter bits are cheaper to evaluate and
+	 * do not affect scoring.
+	 * 
+	 * @param filter Filter to restrict; may be null.
+	 * @param clazz Type of object being searched for; may be null.
+	 * @return Restricted filter.
+	 */
+	protected Filter restrictToType(final Filter filter,
+			final Class<? extends Searchable> clazz) {
+		if (null == clazz)
+			return filter;
+
+		return new TypeFilter(clazz, filter);
+	}
+
+	/**
+	 * Collects the top offset + count results in a single pass using a
+	 * bounded priority queue, rather than paging through Hits (which
+	 * re-executes the query as deeper results are requested).
+	 * 
+	 * @param query Query to use.
+	 * @param filter Filter to use.
+	 * @param searcher Lucene Searcher to perform the search with.
+	 * @param offset Offset to begin result set at.
+	 * @param count Number of results to return; null for all results.
+	 * @param sort Sort to use; null or Sort.RELEVANCE to sort by score.
+	 * @return Top documents, including the total number of matches.
+	 * @throws IOException
+	 */
+	protected TopDocs search(final Query query, final Filter filter,
+			final Searcher searcher, final Integer offset, final Integer count,
+			final Sort sort) throws IOException {
+		// results from shared searchers are cached until the index is reopened
+		ResultCache cache = null;
+		long generation = 0;
+		if (resultCacheEnabled && searcher instanceof IndexSearcher) {
+			cache = SearcherManager.getResultCache((IndexSearcher) searcher);
+			generation = SearcherManager
+					.getGeneration((IndexSearcher) searcher);
+		}
+
+		// requests for all results are cached under Integer.MAX_VALUE
+		final int limit = null == count ? Integer.MAX_VALUE : offset + count;
+		if (null != cache) {
+			final TopDocs cached = cache.get(generation, query, filter, sort,
+					limit);
+			if (null != cached)
+				return cached;
+		}
+
+		// Lucene allocates the priority queue up front, so when all results
+		// are requested it is sized from the number of matches rather than
+		// from the size of the index (it needs room for at least one entry)
+		final int numHits;
+		if (null != count)
+			numHits = Math.max(1, limit);
+		else
+			numHits = Math.max(1, countMatches(query, filter, searcher));
+
+		final TopDocs topDocs;
+		if (null == sort || Sort.RELEVANCE == sort)
+			topDocs = searcher.search(query, filter, numHits);
+		else
+			topDocs = searcher.search(query, filter, numHits, sort);
+
+		if (null != cache)
+			cache.put(generation, (Query) query.clone(), filter, sort,
+					limit, topDocs);
+
+		return topDocs;
+	}
+
+	/**
+	 * Sets the excerpter used to create search extracts for results with an
+	 * @Excerptable property.
+	 * 
+	 * @param excerpter Excerpter; null to not create extracts.
+	 */
+	public void setExcerpter(final Excerpter excerpter) {
+		this.excerpter = excerpter;
+	}
+
+	/**
+	 * Sets the counter used to facet results.  Facet counts are available
+	 * from ResultSet.getFacets().
+	 * 
+	 * @param facetCounter Facet counter; null to not facet results.
+	 */
+	public void setFacetCounter(final FacetCounter facetCounter) {
+		this.facetCounter = facetCounter;
+	}
+
+	/**
+	 * Sets the stored fields to load into results, regardless of their type.
+	 * Other stored fields are left out of results' stored field maps.
+	 * 
+	 * @param loadedFields Names of stored fields to load; null to load the
+	 *        fields specified by each result's @LoadedFields annotation (or
+	 *        all fields).
+	 */
+	public void setLoadedFields(final String[] loadedFields) {
+		this.loadedFields = loadedFields;
+	}
+
+	/**
+	 * Sets the cache used to parse queries.
+	 * 
+	 * @param queryCache Parsed query cache; null to parse every query.
+	 */
+	public void setQueryCache(final ParsedQueryCache queryCache) {
+		this.queryCache = queryCache;
+	}
+
+	/**
+	 * Sets whether results (document numbers and scores) are cached until the
+	 * index is reopened.  The cache is shared by all searchers of an index and
+	 * is available from getSearcherManager().getResultCache().
+	 * 
+	 * @param resultCacheEnabled Whether results should be cached.
+	 */
+	public void setResultCacheEnabled(final boolean resultCacheEnabled) {
+		this.resultCacheEnabled = resultCacheEnabled;
+	}
+
+	/**
+	 * Sets the hydrator used to load complete results.  It is called once
+	 * per type for each page of results.
+	 * 
+	 * @param resultHydrator Result hydrator; null to return placeholders.
+	 */
+	public void setResultHydrator(final ResultHydrator resultHydrator) {
+		this.resultHydrator = resultHydrator;
+	}
 }
@@ -42,6 +42,18 @@ public class BeanIndexer extends AbstractBeanIndexer implements
 		return doAdd(bean);
 	}
 
+	/**
+	 * Add a collection of searchable beans to the index.  Documents are
+	 * buffered and written with a single flush.
+	 * 
+	 * @param beans Beans to index.
+	 * @throws IndexException
+	 */
+	public void addAll(final Iterable<? extends Searchable> beans)
+			throws IndexException {
+		doAddAll(beans);
+	}
+
 	/**
 	 * Delete an object from the index.
 	 * 
@@ -50,4 +62,16 @@ public class BeanIndexer extends AbstractBeanIndexer implements
 	public void delete(final Searchable bean) throws IndexException {
 		doDelete(bean);
 	}
+
+	/**
+	 * Delete a collection of objects from the index.  Deletes are buffered
+	 * and applied with a single flush.
+	 * 
+	 * @param beans Objects to delete.
+	 * @throws IndexException
+	 */
+	public void deleteAll(final Iterable<? extends Searchable> beans)
+			throws IndexException {
+		doDeleteAll(beans);
+	}
 }
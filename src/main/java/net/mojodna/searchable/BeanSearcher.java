@@ -110,6 +110,25 @@ public class BeanSearcher extends AbstractSearcher implements
 		return doSearch(query, filter, offset, count, sortField, reverse);
 	}
 
+	/**
+	 * Search the index with the specified query, creating search extracts
+	 * for results with an @Excerptable property.
+	 * 
+	 * @param query Query to use.
+	 * @param filter Filter to use.
+	 * @param offset Offset to begin result set at.
+	 * @param count Number of results to return.
+	 * @param sort Sort to use.
+	 * @param excerpter Excerpter to create search extracts with.
+	 * @return ResultSet containing results.
+	 * @throws IndexException
+	 */
+	public ResultSet<? extends Searchable> search(final Query query,
+			final Filter filter, final Integer offset, final Integer count,
+			final Sort sort, final Excerpter excerpter) throws IndexException {
+		return doSearch(query, filter, offset, count, sort, excerpter);
+	}
+
 	/**
 	 * Search the index with the specified query.
 	 * 
@@ -325,6 +344,22 @@ public class BeanSearcher extends AbstractSearcher implements
 		return doSearch(query, offset, count, sortField);
 	}
 
+	/**
+	 * Search the index with the specified query, sorting by multiple keys.
+	 * 
+	 * @param query Query to use.
+	 * @param offset Offset to begin result set at.
+	 * @param count Number of results to return.
+	 * @param sortFields Keys to sort by, e.g. { "date desc", "name", "score" }.
+	 * @return ResultSet containing results.
+	 * @throws IndexException
+	 */
+	public ResultSet<Searchable> search(final String query,
+			final Integer offset, final Integer count, final String[] sortFields)
+			throws IndexException {
+		return doSearch(query, offset, count, sortFields);
+	}
+
 	/**
 	 * Search the index with the specified query.
 	 * 
@@ -367,4 +402,80 @@ public class BeanSearcher extends AbstractSearcher implements
 			final String sortField) throws IndexException {
 		return doSearch(query, sortField);
 	}
+
+	/**
+	 * Search the index with the specified query, resuming after a cursor.
+	 * 
+	 * @param query Query to use.
+	 * @param cursor Cursor returned by ResultSet.getCursor(); null for the
+	 *        first page.
+	 * @param count Number of results to return.
+	 * @return ResultSet containing results.
+	 * @throws IndexException
+	 */
+	public ResultSet<? extends Searchable> searchAfter(final Query query,
+			final String cursor, final Integer count) throws IndexException {
+		return doSearchAfter(query, null, cursor, count, Sort.RELEVANCE);
+	}
+
+	/**
+	 * Search the index with the specified query, resuming after a cursor.
+	 * 
+	 * @param query Query to use.
+	 * @param filter Filter to use.
+	 * @param cursor Cursor returned by ResultSet.getCursor(); null for the
+	 *        first page.
+	 * @param count Number of results to return.
+	 * @param sortField Field to sort by.
+	 * @param reverse Whether to reverse the resultset.
+	 * @return ResultSet containing results.
+	 * @throws IndexException
+	 */
+	public ResultSet<? extends Searchable> searchAfter(final Query query,
+			final Filter filter, final String cursor, final Integer count,
+			final String sortField, final boolean reverse)
+			throws IndexException {
+		return doSearchAfter(query, filter, cursor, count, sortField, reverse);
+	}
+
+	/**
+	 * Search the index with the specified query, resuming after a cursor.
+	 * 
+	 * @param query Query to use.
+	 * @param cursor Cursor returned by ResultSet.getCursor(); null for the
+	 *        first page.
+	 * @param count Number of results to return.
+	 * @return ResultSet containing results.
+	 * @throws IndexException
+	 */
+	public ResultSet<Searchable> searchAfter(final String query,
+			final String cursor, final Integer count) throws IndexException {
+		return doSearchAfter(query, cursor, count);
+	}
+
+	/**
+	 * Streams every result of the specified query in index order.
+	 * 
+	 * @param query Query to use.
+	 * @param filter Filter to use.
+	 * @param blockSize Number of results to load at a time.
+	 * @return Iterator over all results.
+	 * @throws IndexException
+	 */
+	public ResultIterator<? extends Searchable> stream(final Query query,
+			final Filter filter, final int blockSize) throws IndexException {
+		return doStream(query, filter, blockSize);
+	}
+
+	/**
+	 * Streams every result of the specified query in index order.
+	 * 
+	 * @param query Query to use.
+	 * @return Iterator over all results.
+	 * @throws IndexException
+	 */
+	public ResultIterator<Searchable> stream(final String query)
+			throws IndexException {
+		return doStream(query);
+	}
 }
@@ -0,0 +1,120 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.io.File;
+import java.io.IOException;
+
+import net.mojodna.searchable.store.MMapDirectory;
+import net.mojodna.searchable.store.NIOFSDirectory;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.Lock;
+import org.apache.lucene.store.RAMDirectory;
+
+/**
+ * How the files of an index are read.  Every strategy writes the same files
+ * to disk, so the strategy for an index path can be changed without
+ * rebuilding the index.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public enum DirectoryStrategy {
+	/**
+	 * Reads through FSDirectory, which synchronizes on each file to seek and
+	 * read, so concurrent searches of the same file are serialized.  This is
+	 * the default.
+	 */
+	FS {
+		@Override
+		public Directory open(final File path) throws IOException {
+			return FSDirectory.getDirectory(path, false);
+		}
+	},
+
+	/**
+	 * Reads through memory-mapped buffers.  Suited to 64-bit VMs and indexes
+	 * that fit in the operating system's page cache.
+	 */
+	MMAP {
+		@Override
+		public Directory open(final File path) throws IOException {
+			return new MMapDirectory(path);
+		}
+	},
+
+	/**
+	 * Reads with positional FileChannel reads, which do not block one
+	 * another.
+	 */
+	NIO {
+		@Override
+		public Directory open(final File path) throws IOException {
+			return new NIOFSDirectory(path);
+		}
+	},
+
+	/**
+	 * Copies the index into memory each time a reader is opened.  Writes
+	 * still go to disk.  Each open generation holds a full copy of the index,
+	 * so this is only suited to small indexes that change infrequently.
+	 */
+	RAM {
+		@Override
+		public Directory open(final File path) throws IOException {
+			return FSDirectory.getDirectory(path, false);
+		}
+
+		@Override
+		public Directory openForReading(final Directory directory)
+				throws IOException {
+			// hold the commit lock so that the copy is not taken mid-commit
+			final Lock lock = directory.makeLock(IndexWriter.COMMIT_LOCK_NAME);
+			return (Directory) new Lock.With(lock,
+					IndexWriter.COMMIT_LOCK_TIMEOUT) {
+				@Override
+				protected Object doBody() throws IOException {
+					return new RAMDirectory(directory);
+				}
+			}.run();
+		}
+	};
+
+	/**
+	 * Opens the directory holding the index at the specified path.  This is
+	 * used for writing and shared by every reader of the index.
+	 * 
+	 * @param path Index path.
+	 * @return Directory.
+	 * @throws IOException
+	 */
+	public abstract Directory open(File path) throws IOException;
+
+	/**
+	 * Gets the directory to open a reader on.
+	 * 
+	 * @param directory Directory returned by open().
+	 * @return Directory to read from; the specified directory unless it is
+	 *         copied.
+	 * @throws IOException
+	 */
+	public Directory openForReading(final Directory directory)
+			throws IOException {
+		return directory;
+	}
+}
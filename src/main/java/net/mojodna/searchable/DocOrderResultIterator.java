@@ -0,0 +1,112 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.apache.lucene.search.IndexSearcher;
+
+/**
+ * Iterates over the documents matching a search in index (document id)
+ * order.  Matches are recorded in a BitSet up front, so the query is only
+ * executed once; stored documents are loaded and hydrated a block at a time.
+ * 
+ * The IndexSearcher is held until the iterator is closed, so document ids
+ * remain stable for its lifetime.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public class DocOrderResultIterator extends ResultIterator<Result> {
+	private final int blockSize;
+
+	/** Id of the last document returned */
+	private int lastDoc = -1;
+
+	private final BitSet matches;
+
+	/** Number of results returned so far */
+	private int ranking;
+
+	private final IndexSearcher searcher;
+
+	private final AbstractSearcher source;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param source Searcher that acquired the IndexSearcher; used to create
+	 *        and hydrate results and to release the IndexSearcher.
+	 * @param searcher IndexSearcher the matches were collected with.
+	 * @param matches Ids of matching documents.
+	 * @param blockSize Number of results to fetch at a time.
+	 */
+	public DocOrderResultIterator(final AbstractSearcher source,
+			final IndexSearcher searcher, final BitSet matches,
+			final int blockSize) {
+		this.source = source;
+		this.searcher = searcher;
+		this.matches = matches;
+		this.blockSize = Math.max(1, blockSize);
+	}
+
+	/**
+	 * Releases the IndexSearcher.
+	 */
+	@Override
+	public void close() throws IndexException {
+		if (!isClosed()) {
+			super.close();
+			source.releaseIndexSearcher(searcher);
+		}
+	}
+
+	@Override
+	protected List<Result> fetchBlock() throws SearchException {
+		final List<Result> block = new ArrayList<Result>(blockSize);
+		try {
+			for (int doc = matches.nextSetBit(lastDoc + 1); doc >= 0
+					&& block.size() < blockSize; doc = matches
+					.nextSetBit(doc + 1)) {
+				final Result result = source.createResult(searcher.doc(doc));
+				result.setRanking(ranking++);
+				block.add(result);
+				lastDoc = doc;
+			}
+		} catch (final IOException e) {
+			throw new SearchException(e);
+		}
+
+		if (null != source.getResultHydrator() && !block.isEmpty()) {
+			final ResultSetImpl rs = new ResultSetImpl(block.size());
+			rs.setResults(block);
+			rs.hydrate(source.getResultHydrator());
+		}
+
+		return block;
+	}
+
+	/**
+	 * Gets the total number of matching documents.
+	 * 
+	 * @return Number of matches.
+	 */
+	public int size() {
+		return matches.cardinality();
+	}
+}
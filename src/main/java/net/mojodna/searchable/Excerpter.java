@@ -0,0 +1,493 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.Token;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermFreqVector;
+import org.apache.lucene.index.TermPositionVector;
+import org.apache.lucene.index.TermVectorOffsetInfo;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Searcher;
+
+/**
+ * Creates search extracts for results from their @Excerptable property,
+ * highlighting terms that matched the query.
+ * 
+ * Matches are located using stored term vectors when they include offsets
+ * (properties annotated with @Indexed(storeTermVector=true)); otherwise the
+ * text is re-analyzed.  The text itself comes from the stored field or, if
+ * it is not stored, from the (hydrated) result.
+ * 
+ * Extracts are HTML: text is escaped and matches are wrapped in the open and
+ * close tags.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public class Excerpter {
+	/**
+	 * Orders fragments by number of matches (descending) and then position.
+	 */
+	private static final Comparator<int[]> FRAGMENT_SCORE = new Comparator<int[]>() {
+		public int compare(final int[] f1, final int[] f2) {
+			if (f1[2] != f2[2])
+				return f2[2] - f1[2];
+
+			return f1[0] - f2[0];
+		}
+	};
+
+	/** Default time budget for excerpting a page of results (100ms) */
+	public static final long DEFAULT_TIME_BUDGET = 100;
+
+	private static final Logger log = Logger.getLogger(Excerpter.class);
+
+	/**
+	 * Orders matches and fragments by position.
+	 */
+	private static final Comparator<int[]> START_ORDER = new Comparator<int[]>() {
+		public int compare(final int[] r1, final int[] r2) {
+			return r1[0] - r2[0];
+		}
+	};
+
+	private String close = AbstractSearcher.DEFAULT_HIGHLIGHT_CLOSE;
+
+	private String fragmentSeparator = AbstractSearcher.DEFAULT_HIGHLIGHT_FRAGMENT_SEPARATOR;
+
+	private int fragmentSize = AbstractSearcher.DEFAULT_HIGHLIGHT_FRAGMENT_SIZE_IN_BYTES;
+
+	private int maxFragments = AbstractSearcher.DEFAULT_HIGHLIGHTER_MAX_NUM_FRAGMENTS_REQUIRED;
+
+	private String open = AbstractSearcher.DEFAULT_HIGHLIGHT_OPEN;
+
+	private long timeBudget = DEFAULT_TIME_BUDGET;
+
+	/**
+	 * Locates matches by re-analyzing text.
+	 * 
+	 * @param analyzer Analyzer to use.
+	 * @param field Field the text belongs to.
+	 * @param text Text to analyze.
+	 * @param terms Terms to match.
+	 * @return Offsets of matches.
+	 * @throws IOException
+	 */
+	private List<int[]> analyze(final Analyzer analyzer, final String field,
+			final String text, final Set<String> terms) throws IOException {
+		final List<int[]> matches = new ArrayList<int[]>();
+		final TokenStream tokens = analyzer.tokenStream(field,
+				new StringReader(text));
+		try {
+			for (Token token = tokens.next(); null != token; token = tokens
+					.next()) {
+				if (terms.contains(token.termText()))
+					matches.add(new int[] { token.startOffset(),
+							token.endOffset() });
+			}
+		} finally {
+			tokens.close();
+		}
+
+		return matches;
+	}
+
+	/**
+	 * Creates an extract from text.
+	 * 
+	 * @param text Text to excerpt.
+	 * @param matches Offsets of matches, in order.
+	 * @return Highlighted extract; null if there were no matches.
+	 */
+	public String excerpt(final String text, final List<int[]> matches) {
+		if (matches.isEmpty())
+			return null;
+
+		// create a fragment starting shortly before each match that does not
+		// fall into the previous fragment: { start, end, number of matches }
+		final List<int[]> fragments = new ArrayList<int[]>();
+		int[] fragment = null;
+		for (final int[] match : matches) {
+			if (match[1] > text.length())
+				continue;
+
+			if (null != fragment && match[1] <= fragment[1]) {
+				fragment[2]++;
+				continue;
+			}
+
+			final int start = startOfWord(text, Math.max(0, match[0]
+					- fragmentSize / 4));
+			fragment = new int[] { start,
+					endOfWord(text, Math.max(match[1], start + fragmentSize)),
+					1 };
+			fragments.add(fragment);
+		}
+
+		if (fragments.isEmpty())
+			return null;
+
+		// keep the fragments with the most matches, in document order
+		Collections.sort(fragments, FRAGMENT_SCORE);
+		final List<int[]> selected = new ArrayList<int[]>(fragments.subList(
+				0, Math.min(maxFragments, fragments.size())));
+		Collections.sort(selected, START_ORDER);
+
+		final StringBuffer extract = new StringBuffer();
+		int m = 0;
+		for (final int[] f : selected) {
+			if (f[0] > 0)
+				extract.append(fragmentSeparator);
+
+			int position = f[0];
+			for (; m < matches.size() && matches.get(m)[0] < f[1]; m++) {
+				final int[] match = matches.get(m);
+				if (match[0] < position || match[1] > f[1])
+					continue;
+
+				extract.append(escape(text.substring(position, match[0])));
+				extract.append(open);
+				extract.append(escape(text.substring(match[0], match[1])));
+				extract.append(close);
+				position = match[1];
+			}
+			extract.append(escape(text.substring(position, f[1])));
+		}
+
+		if (selected.get(selected.size() - 1)[1] < text.length())
+			extract.append(fragmentSeparator);
+
+		return extract.toString();
+	}
+
+	/**
+	 * Creates search extracts for a page of results.  Results are excerpted
+	 * in order until the time budget is spent; the remainder are left
+	 * without extracts.
+	 * 
+	 * @param query Query that produced the results.
+	 * @param searcher Searcher that produced the results.
+	 * @param analyzer Analyzer to use when term vectors are unavailable.
+	 * @param docs Document numbers of the results.
+	 * @param documents Documents corresponding to the results.
+	 * @param results Results to set extracts on.
+	 * @throws IOException
+	 */
+	public void excerpt(final Query query, final Searcher searcher,
+			final Analyzer analyzer, final int[] docs,
+			final Document[] documents, final List<? extends Result> results)
+			throws IOException {
+		final long begin = System.currentTimeMillis();
+
+		final Map<String, Set<String>> terms = getTerms(searcher
+				.rewrite(query));
+		if (terms.isEmpty())
+			return;
+
+		// term vectors are only available when searching a single index
+		IndexReader reader = null;
+		if (searcher instanceof IndexSearcher)
+			reader = ((IndexSearcher) searcher).getIndexReader();
+
+		for (int i = 0; i < results.size(); i++) {
+			if (timeBudget > 0
+					&& System.currentTimeMillis() - begin > timeBudget) {
+				log.debug("Time budget exceeded; " + (results.size() - i)
+						+ " result(s) not excerpted.");
+				break;
+			}
+
+			final Result result = results.get(i);
+			final HydrationPlan plan = HydrationPlan.getPlan(documents[i]
+					.get(IndexSupport.TYPE_FIELD_NAME));
+			final String field = plan.getExcerptFieldName();
+			if (null == field || !terms.containsKey(field))
+				continue;
+
+			final String text = getText(plan, documents[i], result);
+			if (null == text)
+				continue;
+
+			List<int[]> matches = null;
+			if (null != reader)
+				matches = getMatches(reader.getTermFreqVector(docs[i], field),
+						terms.get(field));
+			if (null == matches)
+				matches = analyze(analyzer, field, text, terms.get(field));
+
+			result.setSearchExtract(excerpt(text, matches));
+		}
+	}
+
+	/**
+	 * Finds the end of the word containing the specified offset.
+	 * 
+	 * @param text Text to search.
+	 * @param offset Offset to start at.
+	 * @return Offset of the end of the word.
+	 */
+	private int endOfWord(final String text, final int offset) {
+		int end = Math.min(offset, text.length());
+		while (end < text.length()
+				&& !Character.isWhitespace(text.charAt(end)))
+			end++;
+		return end;
+	}
+
+	/**
+	 * Escapes text for inclusion in an extract.
+	 * 
+	 * @param text Text to escape.
+	 * @return Escaped text.
+	 */
+	protected String escape(final String text) {
+		return StringEscapeUtils.escapeHtml(text);
+	}
+
+	/**
+	 * Gets the tag placed at the end of highlighted regions.
+	 * 
+	 * @return Close tag.
+	 */
+	public String getClose() {
+		return close;
+	}
+
+	/**
+	 * Gets the text placed between fragments.
+	 * 
+	 * @return Fragment separator.
+	 */
+	public String getFragmentSeparator() {
+		return fragmentSeparator;
+	}
+
+	/**
+	 * Gets the approximate size of each fragment.
+	 * 
+	 * @return Fragment size in characters.
+	 */
+	public int getFragmentSize() {
+		return fragmentSize;
+	}
+
+	/**
+	 * Locates matches using a stored term vector.
+	 * 
+	 * @param vector Term vector.
+	 * @param terms Terms to match.
+	 * @return Offsets of matches, in order; null if the term vector does not
+	 *         include offsets.
+	 */
+	private List<int[]> getMatches(final TermFreqVector vector,
+			final Set<String> terms) {
+		if (!(vector instanceof TermPositionVector))
+			return null;
+
+		final TermPositionVector positions = (TermPositionVector) vector;
+		final List<int[]> matches = new ArrayList<int[]>();
+		for (final String term : terms) {
+			final int index = positions.indexOf(term);
+			if (index < 0)
+				continue;
+
+			final TermVectorOffsetInfo[] offsets = positions.getOffsets(index);
+			if (null == offsets)
+				return null;
+
+			for (final TermVectorOffsetInfo offset : offsets) {
+				matches.add(new int[] { offset.getStartOffset(),
+						offset.getEndOffset() });
+			}
+		}
+
+		Collections.sort(matches, START_ORDER);
+		return matches;
+	}
+
+	/**
+	 * Gets the maximum number of fragments to include in an extract.
+	 * 
+	 * @return Maximum number of fragments.
+	 */
+	public int getMaxFragments() {
+		return maxFragments;
+	}
+
+	/**
+	 * Gets the tag placed at the beginning of highlighted regions.
+	 * 
+	 * @return Open tag.
+	 */
+	public String getOpen() {
+		return open;
+	}
+
+	/**
+	 * Gets the terms of a query, grouped by field.
+	 * 
+	 * @param query Rewritten query.
+	 * @return Map of field names to term texts.
+	 */
+	private Map<String, Set<String>> getTerms(final Query query) {
+		final Map<String, Set<String>> terms = new HashMap<String, Set<String>>();
+		final Set<Term> extracted = new HashSet<Term>();
+		try {
+			query.extractTerms(extracted);
+		} catch (final UnsupportedOperationException e) {
+			log.debug("Could not extract terms from query: " + query);
+		}
+
+		for (final Term term : extracted) {
+			Set<String> texts = terms.get(term.field());
+			if (null == texts) {
+				texts = new HashSet<String>();
+				terms.put(term.field(), texts);
+			}
+			texts.add(term.text());
+		}
+
+		return terms;
+	}
+
+	/**
+	 * Gets the text to excerpt.
+	 * 
+	 * @param plan Hydration plan for the result's type.
+	 * @param document Document corresponding to the result.
+	 * @param result Result.
+	 * @return Text to excerpt; null if unavailable.
+	 */
+	@SuppressWarnings("unchecked")
+	private String getText(final HydrationPlan plan, final Document document,
+			final Result result) {
+		final String stored = document.get(plan.getExcerptFieldName());
+		if (null != stored || !(result instanceof Searchable))
+			return stored;
+
+		// fall back to the hydrated result
+		final IndexPlan.Property property = IndexPlan.getPlan(
+				(Class<? extends Searchable>) result.getClass()).getProperty(
+				plan.getExcerptPropertyName());
+		if (null == property)
+			return null;
+
+		try {
+			final Object value = property.getValue(result);
+			return null == value ? null : value.toString();
+		} catch (final IndexingException e) {
+			log.debug("Could not read excerptable property: "
+					+ e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the time budget for excerpting a page of results.
+	 * 
+	 * @return Time budget in milliseconds; 0 for no limit.
+	 */
+	public long getTimeBudget() {
+		return timeBudget;
+	}
+
+	/**
+	 * Sets the tag placed at the end of highlighted regions.
+	 * 
+	 * @param close Close tag.
+	 */
+	public void setClose(final String close) {
+		this.close = close;
+	}
+
+	/**
+	 * Sets the text placed between fragments.
+	 * 
+	 * @param fragmentSeparator Fragment separator.
+	 */
+	public void setFragmentSeparator(final String fragmentSeparator) {
+		this.fragmentSeparator = fragmentSeparator;
+	}
+
+	/**
+	 * Sets the approximate size of each fragment.  Fragments are extended to
+	 * word boundaries.
+	 * 
+	 * @param fragmentSize Fragment size in characters.
+	 */
+	public void setFragmentSize(final int fragmentSize) {
+		this.fragmentSize = fragmentSize;
+	}
+
+	/**
+	 * Sets the maximum number of fragments to include in an extract.
+	 * 
+	 * @param maxFragments Maximum number of fragments.
+	 */
+	public void setMaxFragments(final int maxFragments) {
+		this.maxFragments = maxFragments;
+	}
+
+	/**
+	 * Sets the tag placed at the beginning of highlighted regions.
+	 * 
+	 * @param open Open tag.
+	 */
+	public void setOpen(final String open) {
+		this.open = open;
+	}
+
+	/**
+	 * Sets the time budget for excerpting a page of results.
+	 * 
+	 * @param timeBudget Time budget in milliseconds; 0 for no limit.
+	 */
+	public void setTimeBudget(final long timeBudget) {
+		this.timeBudget = timeBudget;
+	}
+
+	/**
+	 * Finds the start of the word containing the specified offset.
+	 * 
+	 * @param text Text to search.
+	 * @param offset Offset to start at.
+	 * @return Offset of the start of the word.
+	 */
+	private int startOfWord(final String text, final int offset) {
+		int start = offset;
+		while (start > 0 && !Character.isWhitespace(text.charAt(start - 1)))
+			start--;
+		return start;
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.io.Serializable;
+
+/**
+ * Number of matching documents with a given value in a faceted field.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public class FacetCount implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final int count;
+
+	private final String field;
+
+	private final String value;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param field Faceted field.
+	 * @param value Value.
+	 * @param count Number of matching documents with this value.
+	 */
+	public FacetCount(final String field, final String value, final int count) {
+		this.field = field;
+		this.value = value;
+		this.count = count;
+	}
+
+	/**
+	 * Gets the number of matching documents with this value.
+	 * 
+	 * @return Count.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the faceted field, as requested.
+	 * 
+	 * @return Field name.
+	 */
+	public String getField() {
+		return field;
+	}
+
+	/**
+	 * Gets the value.
+	 * 
+	 * @return Value.
+	 */
+	public String getValue() {
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return field + ":" + value + " (" + count + ")";
+	}
+}
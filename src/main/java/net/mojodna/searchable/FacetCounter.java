@@ -0,0 +1,209 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.HitCollector;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+
+/**
+ * Counts the values of untokenized fields across every document matching a
+ * query, in a single pass.  Values are read from cached FieldOrdinals, so
+ * no documents are loaded.
+ * 
+ * Properties annotated with @Sortable are counted using their sortable
+ * (untokenized) fields; other fields must be untokenized.  Counts by type
+ * (TYPE_FIELD_NAME) are always included.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public class FacetCounter {
+	/** Default number of values to return per field */
+	public static final int DEFAULT_LIMIT = 10;
+
+	private final String[] fields;
+
+	private int limit = DEFAULT_LIMIT;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param fields Fields to count values of.
+	 */
+	public FacetCounter(final String[] fields) {
+		this.fields = fields.clone();
+	}
+
+	/**
+	 * Counts the values of each field across all documents matching a query.
+	 * 
+	 * @param query Query to use.
+	 * @param filter Filter to use; may be null.
+	 * @param searcher Searcher to use.
+	 * @return Map of field names to the most frequent values of each field,
+	 *         most frequent first.
+	 * @throws IOException
+	 */
+	public Map<String, List<FacetCount>> count(final Query query,
+			final Filter filter, final IndexSearcher searcher)
+			throws IOException {
+		final IndexReader reader = searcher.getIndexReader();
+
+		// resolve ordinals for each field (and the type field)
+		final String[] names = new String[fields.length + 1];
+		final FieldOrdinals[] ordinals = new FieldOrdinals[names.length];
+		final SortableType[] types = new SortableType[names.length];
+		final int[][] counts = new int[names.length][];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = i < fields.length ? fields[i]
+					: IndexSupport.TYPE_FIELD_NAME;
+			final String field = resolveField(searcher, names[i]);
+			ordinals[i] = FieldOrdinals.getOrdinals(reader, field);
+			types[i] = SortableType.getType(reader, field);
+			counts[i] = new int[ordinals[i].getValueCount()];
+		}
+
+		// count every field in a single pass over the matches
+		searcher.search(query, filter, new HitCollector() {
+			@Override
+			public void collect(final int doc, final float score) {
+				for (int i = 0; i < ordinals.length; i++) {
+					ordinals[i].count(doc, counts[i]);
+				}
+			}
+		});
+
+		final Map<String, List<FacetCount>> facets = new LinkedHashMap<String, List<FacetCount>>();
+		for (int i = 0; i < names.length; i++) {
+			facets.put(names[i], getTopCounts(names[i], ordinals[i],
+					types[i], counts[i]));
+		}
+
+		return facets;
+	}
+
+	/**
+	 * Gets the fields whose values are counted.
+	 * 
+	 * @return Field names.
+	 */
+	public String[] getFields() {
+		return fields.clone();
+	}
+
+	/**
+	 * Gets the number of values returned per field.
+	 * 
+	 * @return Maximum number of values per field.
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Selects the most frequent values of a field.
+	 * 
+	 * @param field Field name, as requested.
+	 * @param ordinals Ordinals for the field.
+	 * @param type Encoding of the field's values; null if they are strings.
+	 * @param counts Counts, indexed by ordinal.
+	 * @return Most frequent values, most frequent first (ties in value
+	 *         order).
+	 */
+	private List<FacetCount> getTopCounts(final String field,
+			final FieldOrdinals ordinals, final SortableType type,
+			final int[] counts) {
+		// min-heap of ordinals, least frequent (and last in value order) first
+		final PriorityQueue<Integer> top = new PriorityQueue<Integer>(Math
+				.max(1, limit), new Comparator<Integer>() {
+			public int compare(final Integer o1, final Integer o2) {
+				if (counts[o1] != counts[o2])
+					return counts[o1] - counts[o2];
+
+				return o2 - o1;
+			}
+		});
+
+		for (int ord = 0; ord < counts.length; ord++) {
+			if (0 == counts[ord])
+				continue;
+
+			if (top.size() < limit) {
+				top.add(ord);
+			} else if (limit > 0 && counts[ord] > counts[top.peek()]) {
+				top.poll();
+				top.add(ord);
+			}
+		}
+
+		final List<FacetCount> facetCounts = new ArrayList<FacetCount>(top
+				.size());
+		while (!top.isEmpty()) {
+			final int ord = top.poll();
+			final String value = ordinals.getValue(ord);
+			facetCounts.add(new FacetCount(field, null == type ? value : type
+					.format(value), counts[ord]));
+		}
+		Collections.reverse(facetCounts);
+
+		return facetCounts;
+	}
+
+	/**
+	 * Resolves the field to read values from.  Sortable fields are preferred,
+	 * as they are always untokenized.
+	 * 
+	 * @param searcher Searcher being used.
+	 * @param field Requested field.
+	 * @return Field to read values from.
+	 */
+	private String resolveField(final IndexSearcher searcher,
+			final String field) {
+		final String sortableField = IndexSupport.SORTABLE_PREFIX + field;
+
+		final Set<String> fieldNames = SearcherManager.getFieldNames(searcher);
+		if (null != fieldNames) {
+			if (fieldNames.contains(sortableField))
+				return sortableField;
+		} else if (searcher.getIndexReader().getFieldNames(
+				IndexReader.FieldOption.ALL).contains(sortableField)) {
+			return sortableField;
+		}
+
+		return field;
+	}
+
+	/**
+	 * Sets the number of values returned per field.
+	 * 
+	 * @param limit Maximum number of values per field.
+	 */
+	public void setLimit(final int limit) {
+		this.limit = limit;
+	}
+}
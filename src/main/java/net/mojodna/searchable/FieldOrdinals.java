@@ -0,0 +1,183 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+
+/**
+ * Maps the documents in an IndexReader to the ordinals of the terms they
+ * contain in an untokenized field.  Fields may contain multiple values per
+ * document.
+ * 
+ * Ordinals are built once per reader and field and cached until the reader
+ * is garbage collected.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public final class FieldOrdinals {
+	/** Cached ordinals, keyed on reader and then on field */
+	private static final Map<IndexReader, Map<String, FieldOrdinals>> cache = new WeakHashMap<IndexReader, Map<String, FieldOrdinals>>();
+
+	/**
+	 * Gets the ordinals for a field, building them if necessary.  Building
+	 * them twice under contention is harmless.
+	 * 
+	 * @param reader Reader to use.
+	 * @param field Untokenized field.
+	 * @return Ordinals for the specified field.
+	 * @throws IOException
+	 */
+	public static FieldOrdinals getOrdinals(final IndexReader reader,
+			final String field) throws IOException {
+		synchronized (cache) {
+			final Map<String, FieldOrdinals> readerCache = cache.get(reader);
+			if (null != readerCache && readerCache.containsKey(field))
+				return readerCache.get(field);
+		}
+
+		final FieldOrdinals ordinals = new FieldOrdinals(reader, field);
+
+		synchronized (cache) {
+			Map<String, FieldOrdinals> readerCache = cache.get(reader);
+			if (null == readerCache) {
+				readerCache = new HashMap<String, FieldOrdinals>();
+				cache.put(reader, readerCache);
+			}
+			readerCache.put(field, ordinals);
+		}
+
+		return ordinals;
+	}
+
+	private final String field;
+
+	/** Ordinals of each document's values, grouped by document */
+	private final int[] ordinals;
+
+	/** Index into ordinals at which each document's values start */
+	private final int[] starts;
+
+	/** Term values, in ordinal (term) order */
+	private final String[] values;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param reader Reader to build ordinals for.
+	 * @param field Untokenized field.
+	 * @throws IOException
+	 */
+	private FieldOrdinals(final IndexReader reader, final String field)
+			throws IOException {
+		this.field = field;
+
+		final int maxDoc = reader.maxDoc();
+		final List<String> values = new ArrayList<String>();
+		final int[] counts = new int[maxDoc + 1];
+
+		// first pass: count values per document
+		final TermDocs termDocs = reader.termDocs();
+		final TermEnum terms = reader.terms(new Term(field, ""));
+		try {
+			do {
+				final Term term = terms.term();
+				if (null == term || !field.equals(term.field()))
+					break;
+
+				values.add(term.text());
+				termDocs.seek(terms);
+				while (termDocs.next()) {
+					counts[termDocs.doc() + 1]++;
+				}
+			} while (terms.next());
+		} finally {
+			terms.close();
+		}
+
+		this.values = values.toArray(new String[values.size()]);
+
+		// prefix sums give each document's starting position
+		for (int i = 1; i <= maxDoc; i++) {
+			counts[i] += counts[i - 1];
+		}
+		this.starts = counts;
+		this.ordinals = new int[counts[maxDoc]];
+
+		// second pass: fill in ordinals
+		final int[] next = new int[maxDoc];
+		try {
+			for (int ord = 0; ord < this.values.length; ord++) {
+				termDocs.seek(new Term(field, this.values[ord]));
+				while (termDocs.next()) {
+					final int doc = termDocs.doc();
+					ordinals[starts[doc] + next[doc]++] = ord;
+				}
+			}
+		} finally {
+			termDocs.close();
+		}
+	}
+
+	/**
+	 * Increments the counts of each of a document's values.
+	 * 
+	 * @param doc Document number.
+	 * @param counts Counts, indexed by ordinal.
+	 */
+	public void count(final int doc, final int[] counts) {
+		for (int i = starts[doc]; i < starts[doc + 1]; i++) {
+			counts[ordinals[i]]++;
+		}
+	}
+
+	/**
+	 * Gets the field these ordinals were built for.
+	 * 
+	 * @return Field name.
+	 */
+	public String getField() {
+		return field;
+	}
+
+	/**
+	 * Gets the value with the specified ordinal.
+	 * 
+	 * @param ordinal Ordinal.
+	 * @return Value.
+	 */
+	public String getValue(final int ordinal) {
+		return values[ordinal];
+	}
+
+	/**
+	 * Gets the number of distinct values in this field.
+	 * 
+	 * @return Number of values.
+	 */
+	public int getValueCount() {
+		return values.length;
+	}
+}
@@ -0,0 +1,264 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.beanutils.ConvertUtils;
+import org.apache.commons.beanutils.Converter;
+import org.apache.log4j.Logger;
+
+/**
+ * Resolved description of how results of a given type should be hydrated.
+ * Classes, constructors, id property names, and id converters are resolved
+ * once per type name (including types that cannot be loaded), so hydrating
+ * results does no class loading or reflection once warm.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public final class HydrationPlan {
+	/** Converters for id types that have already been resolved. */
+	private static final Map<Class, Converter> converters = new ConcurrentHashMap<Class, Converter>();
+
+	/** Id types that have already been resolved. */
+	private static final Map<String, Class> idTypes = new ConcurrentHashMap<String, Class>();
+
+	private static final Logger log = Logger.getLogger(HydrationPlan.class);
+
+	/** Plans that have already been resolved, keyed on type name. */
+	private static final Map<String, HydrationPlan> plans = new ConcurrentHashMap<String, HydrationPlan>();
+
+	/** Marker for id types that could not be loaded. */
+	private static final Class UNKNOWN_TYPE = Void.class;
+
+	/**
+	 * Converts a stored id to an instance of its original type.
+	 * 
+	 * @param id Stored id.
+	 * @param idType Name of the id's original type.
+	 * @return Converted id; null if the id type could not be loaded.
+	 */
+	public static Object convertId(final String id, final String idType) {
+		Class type = idTypes.get(idType);
+		if (null == type) {
+			try {
+				type = Class.forName(idType);
+			} catch (final ClassNotFoundException e) {
+				log.warn("Id type was not a class that could be found: "
+						+ idType);
+				type = UNKNOWN_TYPE;
+			}
+			idTypes.put(idType, type);
+		}
+
+		if (UNKNOWN_TYPE == type)
+			return null;
+
+		Converter converter = converters.get(type);
+		if (null == converter) {
+			converter = ConvertUtils.lookup(type);
+			if (null == converter)
+				return ConvertUtils.convert(id, type);
+			converters.put(type, converter);
+		}
+
+		return converter.convert(type, id);
+	}
+
+	/**
+	 * Gets the plan for the specified type name, resolving it if necessary.
+	 * 
+	 * @param className Fully qualified name of the type.
+	 * @return Plan for the specified type.
+	 */
+	public static HydrationPlan getPlan(final String className) {
+		HydrationPlan plan = plans.get(className);
+		if (null == plan) {
+			// resolving twice under contention is harmless
+			plan = new HydrationPlan(className);
+			plans.put(className, plan);
+		}
+		return plan;
+	}
+
+	/**
+	 * Resolves the name of the field an @Excerptable property is indexed or
+	 * stored in.
+	 * 
+	 * @param type Result type.
+	 * @param propertyName Name of the @Excerptable property; may be null.
+	 * @return Field name; null if the property name is null.
+	 */
+	@SuppressWarnings("unchecked")
+	private static String resolveExcerptFieldName(
+			final Class<? extends Result> type, final String propertyName) {
+		if (null == propertyName)
+			return null;
+
+		if (Searchable.class.isAssignableFrom(type)) {
+			final IndexPlan.Property property = IndexPlan.getPlan(
+					(Class<? extends Searchable>) type).getProperty(
+					propertyName);
+			// the field name (rather than an alias) is listed last
+			if (null != property && !property.getFieldnames().isEmpty())
+				return property.getFieldnames().get(
+						property.getFieldnames().size() - 1);
+		}
+
+		return propertyName;
+	}
+
+	private final Constructor<? extends Result> constructor;
+
+	private final String excerptFieldName;
+
+	private final String excerptPropertyName;
+
+	private final String idPropertyName;
+
+	private final String[] loadedFields;
+
+	private final Class<? extends Result> type;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param className Fully qualified name of the type to resolve.
+	 */
+	@SuppressWarnings("unchecked")
+	private HydrationPlan(final String className) {
+		Class<? extends Result> type = null;
+		Constructor<? extends Result> constructor = null;
+
+		if (null != className) {
+			try {
+				final Class<?> clazz = Class.forName(className);
+				if (Result.class.isAssignableFrom(clazz)) {
+					type = (Class<? extends Result>) clazz;
+					constructor = type.getConstructor();
+				} else {
+					log.debug(className + " is not a Result.");
+				}
+			} catch (final ClassNotFoundException e) {
+				log.debug("Could not load result type: " + className);
+			} catch (final NoSuchMethodException e) {
+				log.debug(className + " has no public default constructor.");
+			}
+		}
+
+		this.type = null == constructor ? null : type;
+		this.constructor = constructor;
+
+		if (null != this.type && Searchable.class.isAssignableFrom(this.type))
+			this.idPropertyName = SearchableBeanUtils
+					.getIdPropertyName((Class<? extends Searchable>) this.type);
+		else
+			this.idPropertyName = null;
+
+		this.loadedFields = null == this.type ? null : SearchableBeanUtils
+				.getLoadedFieldNames(this.type);
+
+		this.excerptPropertyName = null == this.type ? null
+				: SearchableBeanUtils.getExcerptPropertyName(this.type);
+		this.excerptFieldName = resolveExcerptFieldName(this.type,
+				this.excerptPropertyName);
+	}
+
+	/**
+	 * Gets the name of the field containing this type's @Excerptable
+	 * property.
+	 * 
+	 * @return Excerpt field name; null if this type has no @Excerptable
+	 *         property.
+	 */
+	public String getExcerptFieldName() {
+		return excerptFieldName;
+	}
+
+	/**
+	 * Gets the name of this type's @Excerptable property.
+	 * 
+	 * @return Excerpt property name; null if not present.
+	 */
+	public String getExcerptPropertyName() {
+		return excerptPropertyName;
+	}
+
+	/**
+	 * Gets the name of the id property of this type.
+	 * 
+	 * @return Id property name; null if this type is not Searchable.
+	 */
+	public String getIdPropertyName() {
+		return idPropertyName;
+	}
+
+	/**
+	 * Gets the stored fields specified by this type's @LoadedFields
+	 * annotation.
+	 * 
+	 * @return Names of stored fields to load; null for all fields.
+	 */
+	public String[] getLoadedFields() {
+		return loadedFields;
+	}
+
+	/**
+	 * Gets the type of result this plan hydrates.
+	 * 
+	 * @return Result type; null if the type could not be loaded or
+	 *         instantiated.
+	 */
+	public Class<? extends Result> getType() {
+		return type;
+	}
+
+	/**
+	 * Is this type Searchable?
+	 * 
+	 * @return Whether this type is Searchable.
+	 */
+	public boolean isSearchable() {
+		return null != idPropertyName;
+	}
+
+	/**
+	 * Creates a new instance of this type.
+	 * 
+	 * @return New instance; null if this type could not be resolved.
+	 * @throws SearchException
+	 */
+	public Result newInstance() throws SearchException {
+		if (null == constructor)
+			return null;
+
+		try {
+			return constructor.newInstance();
+		} catch (final InstantiationException e) {
+			throw new SearchException("Could not instantiate "
+					+ type.getName() + ".", e);
+		} catch (final IllegalAccessException e) {
+			throw new SearchException("Could not instantiate "
+					+ type.getName() + ".", e);
+		} catch (final InvocationTargetException e) {
+			throw new SearchException("Could not instantiate "
+					+ type.getName() + ".", e.getCause());
+		}
+	}
+}
@@ -0,0 +1,476 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.beans.PropertyDescriptor;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.mojodna.searchable.accessor.PropertyAccessException;
+import net.mojodna.searchable.accessor.PropertyAccessor;
+import net.mojodna.searchable.accessor.PropertyAccessorFactory;
+import net.mojodna.searchable.util.AnnotationUtils;
+import net.mojodna.searchable.util.SearchableUtils;
+
+import org.apache.commons.beanutils.PropertyUtils;
+import org.apache.lucene.document.Field;
+
+/**
+ * Precompiled description of how instances of a Searchable class should be
+ * indexed.  Annotations and property descriptors are inspected once per
+ * class; the resulting plan is immutable and shared by every indexer.
+ *
+ * Custom indexers may use plans to avoid reflecting on beans themselves.
+ *
+ * @author Seth Fitzsimmons
+ */
+public final class IndexPlan {
+	/**
+	 * Resolved indexing instructions for a single property.
+	 */
+	public static final class Property {
+		private final PropertyAccessor accessor;
+
+		private final float boost;
+
+		private final PropertyDescriptor descriptor;
+
+		private final List<String> fieldnames;
+
+		private final Field.Index index;
+
+		private final boolean indexed;
+
+		private final boolean nested;
+
+		private final boolean nestedSortable;
+
+		private final int precisionStep;
+
+		private final Method readMethod;
+
+		private final boolean sortable;
+
+		private final SortableType sortableType;
+
+		private final Field.Store store;
+
+		private final Field.TermVector termVector;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param descriptor Property descriptor to resolve.
+		 * @param accessor Accessor for this property.
+		 */
+		private Property(final PropertyDescriptor descriptor,
+				final PropertyAccessor accessor) {
+			this.descriptor = descriptor;
+			this.accessor = accessor;
+			this.readMethod = descriptor.getReadMethod();
+			this.indexed = SearchableUtils.containsIndexAnnotations(descriptor);
+			this.sortable = SearchableUtils
+					.containsSortableAnnotations(descriptor);
+			this.fieldnames = Collections.unmodifiableList(new ArrayList<String>(
+					SearchableUtils.getFieldnames(descriptor)));
+			this.boost = SearchableUtils.getBoost(descriptor);
+			this.store = SearchableUtils.isStored(descriptor);
+			this.index = SearchableUtils.getIndexStyle(descriptor);
+			this.termVector = resolveTermVector(readMethod);
+			this.nested = resolveNested(readMethod);
+			this.nestedSortable = resolveNestedSortable(readMethod);
+			this.precisionStep = resolvePrecisionStep(readMethod);
+			this.sortableType = SortableType.forClass(readMethod
+					.getReturnType());
+		}
+
+		/**
+		 * Gets the accessor used to read (and write) this property.
+		 *
+		 * @return Property accessor.
+		 */
+		public PropertyAccessor getAccessor() {
+			return accessor;
+		}
+
+		/**
+		 * Gets the boost factor for this property.
+		 *
+		 * @return Boost factor.
+		 */
+		public float getBoost() {
+			return boost;
+		}
+
+		/**
+		 * Gets the underlying property descriptor.
+		 *
+		 * @return Property descriptor.
+		 */
+		public PropertyDescriptor getDescriptor() {
+			return descriptor;
+		}
+
+		/**
+		 * Gets the primary field name used for this property: the name given
+		 * by its annotations, or the property name.
+		 *
+		 * @return Field name.
+		 */
+		public String getFieldname() {
+			// aliases precede the primary field name
+			return fieldnames.get(fieldnames.size() - 1);
+		}
+
+		/**
+		 * Gets the field names (including aliases) used for this property.
+		 *
+		 * @return Unmodifiable list of field names.
+		 */
+		public List<String> getFieldnames() {
+			return fieldnames;
+		}
+
+		/**
+		 * Gets how this property should be indexed.
+		 *
+		 * @return Index style.
+		 */
+		public Field.Index getIndex() {
+			return index;
+		}
+
+		/**
+		 * Gets the property name.
+		 *
+		 * @return Property name.
+		 */
+		public String getName() {
+			return descriptor.getName();
+		}
+
+		/**
+		 * Gets the number of bits per precision that this property is indexed
+		 * with for range filtering.
+		 *
+		 * @return Precision step; 0 if not indexed for range filtering.
+		 */
+		public int getPrecisionStep() {
+			return precisionStep;
+		}
+
+		/**
+		 * Gets the read method for this property.
+		 *
+		 * @return Read method.
+		 */
+		public Method getReadMethod() {
+			return readMethod;
+		}
+
+		/**
+		 * Gets the declared return type of this property.
+		 *
+		 * @return Return type.
+		 */
+		public Class<?> getReturnType() {
+			return readMethod.getReturnType();
+		}
+
+		/**
+		 * Gets the encoding used for this property's sortable field.
+		 *
+		 * @return Sortable encoding; null if values are sorted as strings.
+		 */
+		public SortableType getSortableType() {
+			return sortableType;
+		}
+
+		/**
+		 * Gets whether this property should be stored.
+		 *
+		 * @return Store setting.
+		 */
+		public Field.Store getStore() {
+			return store;
+		}
+
+		/**
+		 * Gets whether term vectors should be stored for this property.
+		 *
+		 * @return Term vector setting.
+		 */
+		public Field.TermVector getTermVector() {
+			return termVector;
+		}
+
+		/**
+		 * Reads the value of this property from a bean.
+		 *
+		 * @param bean Bean to read from.
+		 * @return Property value.
+		 * @throws IndexingException
+		 */
+		public Object getValue(final Object bean) throws IndexingException {
+			try {
+				return accessor.get(bean);
+			} catch (final PropertyAccessException e) {
+				throw new IndexingException(e.getMessage(), e.getCause());
+			}
+		}
+
+		/**
+		 * Should this property be indexed (or stored)?
+		 *
+		 * @return Whether this property has indexing annotations.
+		 */
+		public boolean isIndexed() {
+			return indexed;
+		}
+
+		/**
+		 * Should this property be indexed in a nested context?
+		 *
+		 * @return Whether this property should be treated as nested.
+		 */
+		public boolean isNested() {
+			return nested;
+		}
+
+		/**
+		 * Should this property be sortable in a nested context?
+		 *
+		 * @return Whether this property should be treated as a nested Sortable.
+		 */
+		public boolean isNestedSortable() {
+			return nestedSortable;
+		}
+
+		/**
+		 * Should multi-precision range fields be created for this property?
+		 *
+		 * @return Whether this property is a number or date with a precision
+		 * step.
+		 */
+		public boolean isRangeIndexed() {
+			return precisionStep > 0 && null != sortableType;
+		}
+
+		/**
+		 * Should a sortable field be created for this property?
+		 *
+		 * @return Whether this property is sortable.
+		 */
+		public boolean isSortable() {
+			return sortable;
+		}
+	}
+
+	/** Plans that have already been compiled. */
+	private static final Map<Class, IndexPlan> plans = new ConcurrentHashMap<Class, IndexPlan>();
+
+	/**
+	 * Gets the plan for the specified class, compiling it if necessary.
+	 *
+	 * @param clazz Class to get a plan for.
+	 * @return Plan for the specified class.
+	 */
+	public static IndexPlan getPlan(final Class<? extends Searchable> clazz) {
+		final PropertyAccessorFactory factory = PropertyAccessorFactory
+				.getDefault();
+		IndexPlan plan = plans.get(clazz);
+		if (null == plan || plan.accessorFactory != factory) {
+			// compiling twice under contention is harmless
+			plan = new IndexPlan(clazz, factory);
+			plans.put(clazz, plan);
+		}
+		return plan;
+	}
+
+	/**
+	 * Should the property with the specified read method be treated as nested?
+	 *
+	 * @param readMethod Read method.
+	 * @return Whether this property should be treated as nested.
+	 */
+	private static boolean resolveNested(final Method readMethod) {
+		for (final Class<? extends Annotation> annotationClass : Searchable.INDEXING_ANNOTATIONS) {
+			final Annotation annotation = AnnotationUtils.getAnnotation(
+					readMethod, annotationClass);
+			if (annotation instanceof Searchable.Indexed) {
+				return ((Searchable.Indexed) annotation).nested();
+			} else if (annotation instanceof Searchable.Stored) {
+				return ((Searchable.Stored) annotation).nested();
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Should the property with the specified read method be treated as a
+	 * nested Sortable?
+	 *
+	 * @param readMethod Read method.
+	 * @return Whether this property should be treated as a nested Sortable.
+	 */
+	private static boolean resolveNestedSortable(final Method readMethod) {
+		final Searchable.Sortable annotation = (Searchable.Sortable) AnnotationUtils
+				.getAnnotation(readMethod, Searchable.Sortable.class);
+		if (null != annotation)
+			return annotation.nested();
+
+		return false;
+	}
+
+	/**
+	 * Gets the precision step for range fields of the property with the
+	 * specified read method.
+	 *
+	 * @param readMethod Read method.
+	 * @return Precision step; 0 if not specified.
+	 */
+	private static int resolvePrecisionStep(final Method readMethod) {
+		final Searchable.Indexed annotation = (Searchable.Indexed) AnnotationUtils
+				.getAnnotation(readMethod, Searchable.Indexed.class);
+		if (null == annotation)
+			return 0;
+
+		if (annotation.precisionStep() < 0)
+			throw new IllegalArgumentException(
+					"precisionStep must not be negative.");
+
+		return annotation.precisionStep();
+	}
+
+	/**
+	 * Should the property with the specified read method have its term
+	 * vectors stored?  Positions and offsets are included so that excerpts
+	 * can be created without re-analyzing text.
+	 *
+	 * @param readMethod Read method.
+	 * @return Term vector setting.
+	 */
+	private static Field.TermVector resolveTermVector(final Method readMethod) {
+		final Searchable.Indexed annotation = (Searchable.Indexed) AnnotationUtils
+				.getAnnotation(readMethod, Searchable.Indexed.class);
+		if (null != annotation && annotation.storeTermVector())
+			return Field.TermVector.WITH_POSITIONS_OFFSETS;
+
+		return Field.TermVector.NO;
+	}
+
+	private final PropertyAccessorFactory accessorFactory;
+
+	private final Property idProperty;
+
+	private final String idPropertyName;
+
+	private final List<Property> properties;
+
+	private final Map<String, Property> propertiesByName;
+
+	private final Class<? extends Searchable> type;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param clazz Class to compile a plan for.
+	 * @param accessorFactory Factory to create property accessors with.
+	 */
+	private IndexPlan(final Class<? extends Searchable> clazz,
+			final PropertyAccessorFactory accessorFactory) {
+		this.type = clazz;
+		this.accessorFactory = accessorFactory;
+		this.idPropertyName = SearchableBeanUtils.getIdPropertyName(clazz);
+
+		final List<Property> properties = new ArrayList<Property>();
+		final Map<String, Property> propertiesByName = new HashMap<String, Property>();
+		Property idProperty = null;
+
+		for (final PropertyDescriptor d : PropertyUtils
+				.getPropertyDescriptors(clazz)) {
+			if (null == d.getReadMethod())
+				continue;
+
+			final Property property = new Property(d, accessorFactory
+					.getAccessor(d));
+			propertiesByName.put(d.getName(), property);
+
+			if (d.getName().equals(idPropertyName))
+				idProperty = property;
+
+			if (property.isIndexed() || property.isSortable())
+				properties.add(property);
+		}
+
+		this.properties = Collections.unmodifiableList(properties);
+		this.propertiesByName = Collections.unmodifiableMap(propertiesByName);
+		this.idProperty = idProperty;
+	}
+
+	/**
+	 * Gets the property used as this class's id.
+	 *
+	 * @return Id property; null if the class has no readable id property.
+	 */
+	public Property getIdProperty() {
+		return idProperty;
+	}
+
+	/**
+	 * Gets the name of the property used as this class's id.
+	 *
+	 * @return Id property name.
+	 */
+	public String getIdPropertyName() {
+		return idPropertyName;
+	}
+
+	/**
+	 * Gets the indexed, stored, and sortable properties of this class.
+	 *
+	 * @return Unmodifiable list of properties.
+	 */
+	public List<Property> getProperties() {
+		return properties;
+	}
+
+	/**
+	 * Gets a readable property by name, whether or not it is annotated.
+	 *
+	 * @param name Property name.
+	 * @return Property; null if not present.
+	 */
+	public Property getProperty(final String name) {
+		return propertiesByName.get(name);
+	}
+
+	/**
+	 * Gets the class this plan describes.
+	 *
+	 * @return Planned class.
+	 */
+	public Class<? extends Searchable> getType() {
+		return type;
+	}
+}
@@ -29,9 +29,7 @@ import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.index.IndexModifier;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.Searcher;
 import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
 
 /**
  * Support class for classes that access an index.  Contains common methods
@@ -61,6 +59,9 @@ public abstract class IndexSupport {
 	/** Name of id type field (contains the class name for the id) */
 	public static final String ID_TYPE_FIELD_NAME = "_id-type";
 
+	/** Directory strategies, keyed on index path */
+	private static Map<String, DirectoryStrategy> directoryStrategies = new ConcurrentHashMap<String, DirectoryStrategy>();
+
 	/** Shared index directories */
 	private static Map<String, Directory> indexDirectories = new ConcurrentHashMap<String, Directory>();
 
@@ -74,17 +75,27 @@ public abstract class IndexSupport {
 			.asList(new String[] { IndexSupport.ID_FIELD_NAME,
 					IndexSupport.ID_TYPE_FIELD_NAME,
 					IndexSupport.TYPE_FIELD_NAME,
-					IndexSupport.COMPOUND_ID_FIELD_NAME });
+					IndexSupport.COMPOUND_ID_FIELD_NAME,
+					IndexSupport.SORTABLE_TYPE_FIELD_NAME });
+
+	/** Prefix for multi-precision fields intended for range filtering */
+	public static final String RANGE_PREFIX = "_range-";
 
 	/** Shared IndexReaders */
 	private static Map<String, IndexReader> readers = new ConcurrentHashMap<String, IndexReader>();
 
-	/** Shared IndexSearchers */
-	private static Map<String, IndexSearcher> searchers = new ConcurrentHashMap<String, IndexSearcher>();
+	/** Shared SearcherManagers */
+	private static Map<String, SearcherManager> searcherManagers = new ConcurrentHashMap<String, SearcherManager>();
 
 	/** Prefix for keyword fields intended for sorting */
 	public static final String SORTABLE_PREFIX = "_sort-";
 
+	/**
+	 * Name of sortable type field (marks sortable fields encoded by a
+	 * SortableType)
+	 */
+	public static final String SORTABLE_TYPE_FIELD_NAME = "_sortable-type";
+
 	/** Name of type field (contains the class name for the indexed item) */
 	public static final String TYPE_FIELD_NAME = "_type";
 
@@ -101,7 +112,36 @@ public abstract class IndexSupport {
 	private String indexPath = DEFAULT_INDEX_PATH;
 
 	/**
-	 * Closes (and optimizes) the active index.
+	 * Acquires the shared IndexSearcher associated with this index.  It must
+	 * be handed back with releaseIndexSearcher() once the search is complete.
+	 * 
+	 * @return IndexSearcher associated with this index.
+	 * @throws IndexException
+	 */
+	protected IndexSearcher acquireIndexSearcher() throws IndexException {
+		return getSearcherManager().acquire();
+	}
+
+	/**
+	 * Closes the SearcherManager shared by every IndexSupport over the
+	 * specified index, stopping its background refresh.  Searchers still in
+	 * use are closed when they are released.  A new manager (with default
+	 * settings) is created if the index is subsequently searched.
+	 * 
+	 * @param indexPath Index path to close the SearcherManager for.
+	 * @throws IndexException
+	 */
+	public static void closeSearcherManager(final String indexPath)
+			throws IndexException {
+		final SearcherManager manager = searcherManagers.remove(indexPath);
+		if (null != manager)
+			manager.close();
+	}
+
+	/**
+	 * Closes (and optimizes) the active index.  The shared SearcherManager
+	 * is left open, as other instances may be using it; use
+	 * closeSearcherManager() to shut it down.
 	 * 
 	 * @throws IndexException
 	 */
@@ -176,6 +216,26 @@ public abstract class IndexSupport {
 		return batchMergeFactor;
 	}
 
+	/**
+	 * Gets the strategy used to read this index.
+	 * 
+	 * @return Directory strategy.
+	 */
+	public DirectoryStrategy getDirectoryStrategy() {
+		return getDirectoryStrategy(getIndexPath());
+	}
+
+	/**
+	 * Gets the strategy used to read the index at the specified path.
+	 * 
+	 * @param indexPath Index path.
+	 * @return Directory strategy; FS unless otherwise set.
+	 */
+	public static DirectoryStrategy getDirectoryStrategy(final String indexPath) {
+		final DirectoryStrategy strategy = directoryStrategies.get(indexPath);
+		return null == strategy ? DirectoryStrategy.FS : strategy;
+	}
+
 	/**
 	 * Gets the underlying Directory containing this index.
 	 *
@@ -183,8 +243,21 @@ public abstract class IndexSupport {
 	 * @throws IndexException 
 	 */
 	protected Directory getIndexDirectory() throws IndexException {
-		if (!indexDirectories.containsKey(getIndexPath())) {
-			final File indexFile = new File(getIndexPath());
+		return getIndexDirectory(getIndexPath());
+	}
+
+	/**
+	 * Gets the underlying Directory containing the index at the specified
+	 * path.
+	 *
+	 * @param indexPath Index path.
+	 * @return Directory holding the specified index.
+	 * @throws IndexException 
+	 */
+	protected Directory getIndexDirectory(final String indexPath)
+			throws IndexException {
+		if (!indexDirectories.containsKey(indexPath)) {
+			final File indexFile = new File(indexPath);
 
 			if (!indexFile.exists()) {
 				// create the index directory if necessary
@@ -192,14 +265,14 @@ public abstract class IndexSupport {
 			}
 
 			try {
-				indexDirectories.put(getIndexPath(), FSDirectory.getDirectory(
-						indexFile, false));
+				indexDirectories.put(indexPath, getDirectoryStrategy(
+						indexPath).open(indexFile));
 			} catch (final IOException e) {
 				throw new IndexException(e);
 			}
 		}
 
-		return indexDirectories.get(getIndexPath());
+		return indexDirectories.get(indexPath);
 	}
 
 	/**
@@ -255,19 +328,22 @@ public abstract class IndexSupport {
 	protected IndexReader getIndexReader() throws IndexException {
 		try {
 			if (readers.containsKey(getIndexPath())) {
-				// refresh if the reader is out of date
-				// if the reader is operating on a RAMDirectory, versions will have to be compared
-				if (!readers.get(getIndexPath()).isCurrent() && !isBatchMode()) {
+				// refresh if the reader is out of date; versions are compared
+				// as the reader may be operating on a RAMDirectory
+				if (readers.get(getIndexPath()).getVersion() != IndexReader
+						.getCurrentVersion(getIndexDirectory())
+						&& !isBatchMode()) {
 					log.debug("Refreshing reader...");
 					readers.put(getIndexPath(), IndexReader
-							.open(getIndexDirectory()));
+							.open(getDirectoryStrategy().openForReading(
+									getIndexDirectory())));
 				}
 			} else {
 				// attempt to open an IndexReader
-				// TODO future optimization: wrap in a RAMDirectory
 				log.debug("Creating an IndexReader...");
 				readers.put(getIndexPath(), IndexReader
-						.open(getIndexDirectory()));
+						.open(getDirectoryStrategy().openForReading(
+								getIndexDirectory())));
 			}
 		} catch (final IOException e) {
 			log.debug("Could not create IndexReader: " + e.getMessage());
@@ -278,26 +354,41 @@ public abstract class IndexSupport {
 	}
 
 	/**
-	 * Gets the IndexSearcher associated with this index.
-	 * Override this method if you wish to use something like a
-	 * DelayCloseIndexSearcher.
-	 *  
-	 * @return IndexSearcher associated with this index.
+	 * Gets the SearcherManager that shares searchers over this index,
+	 * creating it if necessary.  Its refresh interval and reopen metrics are
+	 * available through the returned manager.
+	 * 
+	 * @return SearcherManager associated with this index.
 	 * @throws IndexException
 	 */
-	protected Searcher getIndexSearcher() throws IndexException {
-		try {
-			if (!searchers.containsKey(getIndexPath())
-					|| !searchers.get(getIndexPath()).getIndexReader()
-							.isCurrent()) {
-				searchers.put(getIndexPath(), new IndexSearcher(
-						getIndexReader()));
+	public SearcherManager getSearcherManager() throws IndexException {
+		return getSearcherManager(getIndexPath());
+	}
+
+	/**
+	 * Gets the SearcherManager that shares searchers over the index at the
+	 * specified path, creating it if necessary.
+	 * 
+	 * @param indexPath Index path.
+	 * @return SearcherManager associated with the specified index.
+	 * @throws IndexException
+	 */
+	protected SearcherManager getSearcherManager(final String indexPath)
+			throws IndexException {
+		SearcherManager manager = searcherManagers.get(indexPath);
+		if (null == manager) {
+			synchronized (searcherManagers) {
+				manager = searcherManagers.get(indexPath);
+				if (null == manager) {
+					manager = new SearcherManager(getIndexDirectory(indexPath),
+							SearcherManager.DEFAULT_REFRESH_INTERVAL,
+							getDirectoryStrategy(indexPath));
+					searcherManagers.put(indexPath, manager);
+				}
 			}
-		} catch (final IOException e) {
-			throw new IndexException("Could not create IndexSearcher.", e);
 		}
 
-		return searchers.get(getIndexPath());
+		return manager;
 	}
 
 	/**
@@ -323,6 +414,30 @@ public abstract class IndexSupport {
 		}
 	}
 
+	/**
+	 * Reopens the shared IndexSearcher if it is open and the index has
+	 * changed, so that changes are visible without waiting for the next
+	 * background refresh.
+	 * 
+	 * @throws IndexException
+	 */
+	protected void refreshIndexSearcher() throws IndexException {
+		final SearcherManager manager = searcherManagers.get(getIndexPath());
+		if (null != manager)
+			manager.maybeRefresh();
+	}
+
+	/**
+	 * Releases an IndexSearcher obtained from acquireIndexSearcher().
+	 * 
+	 * @param searcher IndexSearcher to release.
+	 * @throws IndexException
+	 */
+	protected void releaseIndexSearcher(final IndexSearcher searcher)
+			throws IndexException {
+		SearcherManager.releaseSearcher(searcher);
+	}
+
 	/**
 	 * Sets the Analyzer in use.
 	 * 
@@ -350,6 +465,39 @@ public abstract class IndexSupport {
 		this.batchMode = batchMode;
 	}
 
+	/**
+	 * Sets the strategy used to read this index.
+	 * 
+	 * @param strategy Directory strategy.
+	 * @throws IllegalStateException if the index has already been opened
+	 *         with a different strategy.
+	 */
+	public void setDirectoryStrategy(final DirectoryStrategy strategy) {
+		setDirectoryStrategy(getIndexPath(), strategy);
+	}
+
+	/**
+	 * Sets the strategy used to read the index at the specified path.  This
+	 * applies to every indexer and searcher using that path, and must be set
+	 * before the index is first opened.
+	 * 
+	 * @param indexPath Index path.
+	 * @param strategy Directory strategy.
+	 * @throws IllegalStateException if the index has already been opened
+	 *         with a different strategy.
+	 */
+	public static void setDirectoryStrategy(final String indexPath,
+			final DirectoryStrategy strategy) {
+		synchronized (directoryStrategies) {
+			if (indexDirectories.containsKey(indexPath)
+					&& getDirectoryStrategy(indexPath) != strategy)
+				throw new IllegalStateException("Index at " + indexPath
+						+ " has already been opened.");
+
+			directoryStrategies.put(indexPath, strategy);
+		}
+	}
+
 	/**
 	 * Set the path containing the index.
 	 * 
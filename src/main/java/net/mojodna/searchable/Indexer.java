@@ -33,6 +33,15 @@ public interface Indexer<E extends Searchable> {
 	 */
 	Document add(E object) throws IndexException;
 
+	/**
+	 * Adds a collection of objects to the index as a single bulk operation.
+	 * This is considerably cheaper than adding objects individually.
+	 * 
+	 * @param objects Objects to index.
+	 * @throws IndexException
+	 */
+	void addAll(Iterable<? extends E> objects) throws IndexException;
+
 	/**
 	 * Deletes an object from the index.
 	 * 
@@ -41,6 +50,15 @@ public interface Indexer<E extends Searchable> {
 	 */
 	void delete(E object) throws IndexException;
 
+	/**
+	 * Deletes a collection of objects from the index as a single bulk
+	 * operation.
+	 * 
+	 * @param objects Objects to delete.
+	 * @throws IndexException
+	 */
+	void deleteAll(Iterable<? extends E> objects) throws IndexException;
+
 	/**
 	 * Optimize the index.
 	 *
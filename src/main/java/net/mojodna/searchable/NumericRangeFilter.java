@@ -0,0 +1,408 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.Filter;
+
+/**
+ * Restricts results to documents with a numeric or date property within a
+ * range.  The property must be indexed with a precisionStep (see
+ * Searchable.Indexed), which writes each value at several precisions (e.g.
+ * every 8 bits).  A range is then covered by a handful of coarse terms in
+ * the middle and finer terms at its edges, so the number of terms visited
+ * grows with the logarithm of the range rather than with the number of
+ * distinct values in it.
+ * 
+ * Bits are cached per reader for recently used ranges.  Ranges that are
+ * equal (including relative ranges such as those created by
+ * newRecentRange() within the same period) share cached bits.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public class NumericRangeFilter extends Filter {
+	/** Maximum number of ranges cached per reader */
+	public static final int CACHE_SIZE = 16;
+
+	private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+	private static final long serialVersionUID = 1L;
+
+	/** Cached bits, keyed on reader and then on filter */
+	private static final Map<IndexReader, Map<NumericRangeFilter, BitSet>> cache = new WeakHashMap<IndexReader, Map<NumericRangeFilter, BitSet>>();
+
+	/**
+	 * Appends a value as fixed-width hexadecimal digits.
+	 * 
+	 * @param sb Buffer to append to.
+	 * @param value Value.
+	 * @param digits Number of digits.
+	 */
+	private static void appendHex(final StringBuffer sb, final long value,
+			final int digits) {
+		for (int i = digits - 1; i >= 0; i--) {
+			sb.append(DIGITS[(int) (value >>> (i * 4)) & 0xf]);
+		}
+	}
+
+	/**
+	 * Encodes a value at the specified precision.  Terms are prefixed with
+	 * the number of bits dropped, so each precision occupies its own block of
+	 * terms, ordered by value within it.
+	 * 
+	 * @param value Sortable value.
+	 * @param shift Number of low-order bits to drop.
+	 * @param size Number of bits in the value (32 or 64).
+	 * @return Term text.
+	 */
+	static String encode(final long value, final int shift, final int size) {
+		// flip the sign bit so that the unsigned order matches the signed one
+		final long unsigned = 64 == size ? value ^ Long.MIN_VALUE
+				: (value ^ Integer.MIN_VALUE) & 0xffffffffL;
+		final StringBuffer sb = new StringBuffer(2 + size / 4);
+		appendHex(sb, shift, 2);
+		appendHex(sb, unsigned >>> shift, size / 4);
+		return sb.toString();
+	}
+
+	/**
+	 * Gets the terms to index for a value.
+	 * 
+	 * @param type Encoding of the value.
+	 * @param value Value.
+	 * @param precisionStep Number of bits per precision.
+	 * @return Terms, one per precision.
+	 */
+	public static String[] getTerms(final SortableType type,
+			final Object value, final int precisionStep) {
+		if (precisionStep < 1)
+			throw new IllegalArgumentException(
+					"precisionStep must be positive.");
+
+		final int size = getSize(type);
+		final long sortable = toSortableLong(type, value);
+		final List<String> terms = new ArrayList<String>();
+		for (int shift = 0; shift < size; shift += precisionStep) {
+			terms.add(encode(sortable, shift, size));
+		}
+		return terms.toArray(new String[terms.size()]);
+	}
+
+	/**
+	 * Gets the number of bits used to represent values of a type.
+	 * 
+	 * @param type Encoding.
+	 * @return 32 or 64.
+	 */
+	private static int getSize(final SortableType type) {
+		return SortableType.INT == type || SortableType.FLOAT == type ? 32
+				: 64;
+	}
+
+	/**
+	 * Creates a filter for dates within a period ending now, e.g. "the last 7
+	 * days".  The start of the period is rounded down to a multiple of the
+	 * granularity, so filters created within the same period are equal and
+	 * share cached bits.
+	 * 
+	 * @param field Date property name.
+	 * @param precisionStep Precision step the property was indexed with.
+	 * @param duration Length of the period, in milliseconds.
+	 * @param granularity Granularity of the start of the period, in
+	 *        milliseconds.
+	 * @return Filter matching dates from the start of the period onward.
+	 */
+	public static NumericRangeFilter newRecentRange(final String field,
+			final int precisionStep, final long duration,
+			final long granularity) {
+		final long start = System.currentTimeMillis() - duration;
+		return new NumericRangeFilter(field, precisionStep, SortableType.DATE,
+				new Date(start - start % granularity), null, true, true);
+	}
+
+	/**
+	 * Converts a value into a long with the same ordering.
+	 * 
+	 * @param type Encoding of the value.
+	 * @param value Value.
+	 * @return Sortable long.
+	 */
+	private static long toSortableLong(final SortableType type,
+			final Object value) {
+		switch (type) {
+		case DATE:
+			if (value instanceof Calendar)
+				return ((Calendar) value).getTimeInMillis();
+			return ((Date) value).getTime();
+		case DOUBLE:
+			return SortableType.doubleToSortableLong(((Number) value)
+					.doubleValue());
+		case FLOAT:
+			return SortableType.floatToSortableInt(((Number) value)
+					.floatValue());
+		case INT:
+			return ((Number) value).intValue();
+		default:
+			return ((Number) value).longValue();
+		}
+	}
+
+	private final String field;
+
+	/** Inclusive upper bound, as a sortable long */
+	private final long max;
+
+	/** Inclusive lower bound, as a sortable long */
+	private final long min;
+
+	private final int precisionStep;
+
+	private final SortableType type;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param field Property name.
+	 * @param precisionStep Precision step the property was indexed with.
+	 * @param type Encoding of the property (as returned by
+	 *        SortableType.forClass()).
+	 * @param lower Lower bound; null for no lower bound.
+	 * @param upper Upper bound; null for no upper bound.
+	 * @param includeLower Whether to include the lower bound.
+	 * @param includeUpper Whether to include the upper bound.
+	 */
+	public NumericRangeFilter(final String field, final int precisionStep,
+			final SortableType type, final Object lower, final Object upper,
+			final boolean includeLower, final boolean includeUpper) {
+		if (precisionStep < 1)
+			throw new IllegalArgumentException(
+					"precisionStep must be positive.");
+
+		this.field = field;
+		this.precisionStep = precisionStep;
+		this.type = type;
+
+		final boolean wide = 64 == getSize(type);
+		final long lowest = wide ? Long.MIN_VALUE : Integer.MIN_VALUE;
+		final long highest = wide ? Long.MAX_VALUE : Integer.MAX_VALUE;
+
+		// normalize to inclusive bounds; empty ranges have min > max
+		boolean empty = false;
+		long min = lowest;
+		if (null != lower) {
+			min = toSortableLong(type, lower);
+			if (!includeLower) {
+				empty = min == highest;
+				min++;
+			}
+		}
+		long max = highest;
+		if (null != upper) {
+			max = toSortableLong(type, upper);
+			if (!includeUpper) {
+				empty |= max == lowest;
+				max--;
+			}
+		}
+
+		this.min = empty ? highest : min;
+		this.max = empty ? lowest : max;
+	}
+
+	/**
+	 * Adds the documents matching a range of terms at a single precision.
+	 * 
+	 * @param reader Reader to use.
+	 * @param bits Bits to set.
+	 * @param lower Sortable lower bound.
+	 * @param upper Sortable upper bound.
+	 * @param shift Precision.
+	 * @return Number of terms visited.
+	 * @throws IOException
+	 */
+	private int addRange(final IndexReader reader, final BitSet bits,
+			final long lower, final long upper, final int shift)
+			throws IOException {
+		final String indexedField = IndexSupport.RANGE_PREFIX + field;
+		final int size = getSize(type);
+		final String upperTerm = encode(upper, shift, size);
+
+		int visited = 0;
+		final TermEnum terms = reader.terms(new Term(indexedField, encode(
+				lower, shift, size)));
+		final TermDocs termDocs = reader.termDocs();
+		try {
+			do {
+				final Term term = terms.term();
+				if (null == term || !indexedField.equals(term.field())
+						|| term.text().compareTo(upperTerm) > 0)
+					break;
+
+				visited++;
+				termDocs.seek(terms);
+				while (termDocs.next()) {
+					bits.set(termDocs.doc());
+				}
+			} while (terms.next());
+		} finally {
+			termDocs.close();
+			terms.close();
+		}
+
+		return visited;
+	}
+
+	@Override
+	public BitSet bits(final IndexReader reader) throws IOException {
+		synchronized (cache) {
+			final Map<NumericRangeFilter, BitSet> readerCache = cache
+					.get(reader);
+			if (null != readerCache && readerCache.containsKey(this))
+				return readerCache.get(this);
+		}
+
+		final BitSet bits = new BitSet(reader.maxDoc());
+		if (min <= max)
+			split(reader, bits);
+
+		synchronized (cache) {
+			Map<NumericRangeFilter, BitSet> readerCache = cache.get(reader);
+			if (null == readerCache) {
+				readerCache = new LinkedHashMap<NumericRangeFilter, BitSet>(
+						16, 0.75f, true) {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected boolean removeEldestEntry(
+							final Map.Entry<NumericRangeFilter, BitSet> eldest) {
+						return size() > CACHE_SIZE;
+					}
+				};
+				cache.put(reader, readerCache);
+			}
+			readerCache.put(this, bits);
+		}
+
+		return bits;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (!(obj instanceof NumericRangeFilter))
+			return false;
+
+		final NumericRangeFilter other = (NumericRangeFilter) obj;
+		return field.equals(other.field)
+				&& precisionStep == other.precisionStep && type == other.type
+				&& min == other.min && max == other.max;
+	}
+
+	/**
+	 * Gets the property being filtered on.
+	 * 
+	 * @return Property name.
+	 */
+	public String getField() {
+		return field;
+	}
+
+	/**
+	 * Gets the precision step the property was indexed with.
+	 * 
+	 * @return Precision step.
+	 */
+	public int getPrecisionStep() {
+		return precisionStep;
+	}
+
+	/**
+	 * Gets the encoding of the property being filtered on.
+	 * 
+	 * @return Encoding.
+	 */
+	public SortableType getType() {
+		return type;
+	}
+
+	@Override
+	public int hashCode() {
+		int hashCode = field.hashCode();
+		hashCode = hashCode * 31 + precisionStep;
+		hashCode = hashCode * 31 + type.hashCode();
+		hashCode = hashCode * 31 + (int) (min ^ (min >>> 32));
+		return hashCode * 31 + (int) (max ^ (max >>> 32));
+	}
+
+	/**
+	 * Splits the range into blocks of terms, using the coarsest precision
+	 * available for each part of it.
+	 * 
+	 * @param reader Reader to use.
+	 * @param bits Bits to set.
+	 * @return Number of terms visited.
+	 * @throws IOException
+	 */
+	int split(final IndexReader reader, final BitSet bits) throws IOException {
+		final int size = getSize(type);
+		long lower = min;
+		long upper = max;
+		int visited = 0;
+		for (int shift = 0;; shift += precisionStep) {
+			final long diff = 1L << (shift + precisionStep);
+			final long mask = ((1L << precisionStep) - 1L) << shift;
+			final boolean hasLower = (lower & mask) != 0L;
+			final boolean hasUpper = (upper & mask) != mask;
+			final long nextLower = (hasLower ? lower + diff : lower) & ~mask;
+			final long nextUpper = (hasUpper ? upper - diff : upper) & ~mask;
+
+			// stop once the next precision doesn't fit inside the range
+			if (shift + precisionStep >= size || nextLower > nextUpper
+					|| nextLower < lower || nextUpper > upper) {
+				visited += addRange(reader, bits, lower, upper, shift);
+				break;
+			}
+
+			if (hasLower)
+				visited += addRange(reader, bits, lower, lower | mask, shift);
+			if (hasUpper)
+				visited += addRange(reader, bits, upper & ~mask, upper, shift);
+
+			lower = nextLower;
+			upper = nextUpper;
+		}
+
+		return visited;
+	}
+
+	@Override
+	public String toString() {
+		return "NumericRangeFilter(" + field + ":[" + min + " TO " + max
+				+ "])";
+	}
+}
@@ -0,0 +1,426 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.document.Document;
+
+/**
+ * Indexes large numbers of Searchables by converting them to Documents on a
+ * pool of worker threads and handing the results to a single writer.
+ * 
+ * At most queueSize conversions are in flight at any time; the calling
+ * thread blocks (and writes completed Documents) when that limit is reached.
+ * Documents are saved in the order in which beans were supplied, so later
+ * versions of the same bean still replace earlier ones.
+ * 
+ * Saves go through the wrapped indexer's save(Document), so running it with
+ * WriteMode.BUFFERED avoids a flush per document.  Changes are not committed
+ * by this class.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public class ParallelIndexer {
+	/**
+	 * A bean that could not be indexed.
+	 */
+	public static class Failure {
+		private final Searchable bean;
+
+		private final Throwable cause;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param bean Bean that could not be indexed.
+		 * @param cause Cause of the failure.
+		 */
+		public Failure(final Searchable bean, final Throwable cause) {
+			this.bean = bean;
+			this.cause = cause;
+		}
+
+		/**
+		 * Gets the bean that could not be indexed.
+		 * 
+		 * @return Bean.
+		 */
+		public Searchable getBean() {
+			return bean;
+		}
+
+		/**
+		 * Gets the cause of the failure.
+		 * 
+		 * @return Cause.
+		 */
+		public Throwable getCause() {
+			return cause;
+		}
+	}
+
+	/**
+	 * Counters describing a run.
+	 */
+	public static class Statistics {
+		private final AtomicLong conversionNanos = new AtomicLong();
+
+		private final AtomicLong converted = new AtomicLong();
+
+		private long elapsedNanos;
+
+		private long failed;
+
+		private final List<Failure> failures = new LinkedList<Failure>();
+
+		private long writeNanos;
+
+		private long written;
+
+		/**
+		 * Gets the time spent converting beans, summed across worker threads.
+		 * 
+		 * @return Conversion time in milliseconds.
+		 */
+		public long getConversionTime() {
+			return conversionNanos.get() / 1000000;
+		}
+
+		/**
+		 * Gets the number of beans converted to Documents.
+		 * 
+		 * @return Number of beans converted.
+		 */
+		public long getConverted() {
+			return converted.get();
+		}
+
+		/**
+		 * Gets the total time taken.
+		 * 
+		 * @return Elapsed time in milliseconds.
+		 */
+		public long getElapsedTime() {
+			return elapsedNanos / 1000000;
+		}
+
+		/**
+		 * Gets the number of beans that could not be converted or saved.
+		 * 
+		 * @return Number of failures.
+		 */
+		public long getFailed() {
+			return failed;
+		}
+
+		/**
+		 * Gets details of failures.  Only the first MAX_RETAINED_FAILURES are
+		 * retained.
+		 * 
+		 * @return Failures.
+		 */
+		public List<Failure> getFailures() {
+			return Collections.unmodifiableList(failures);
+		}
+
+		/**
+		 * Gets the overall throughput.
+		 * 
+		 * @return Documents written per second.
+		 */
+		public double getThroughput() {
+			if (0 == elapsedNanos)
+				return 0;
+			return written * 1000000000D / elapsedNanos;
+		}
+
+		/**
+		 * Gets the time spent saving Documents.
+		 * 
+		 * @return Write time in milliseconds.
+		 */
+		public long getWriteTime() {
+			return writeNanos / 1000000;
+		}
+
+		/**
+		 * Gets the number of Documents saved.
+		 * 
+		 * @return Number of Documents saved.
+		 */
+		public long getWritten() {
+			return written;
+		}
+
+		/**
+		 * Records a failure.
+		 * 
+		 * @param failure Failure to record.
+		 */
+		private void fail(final Failure failure) {
+			failed++;
+			if (failures.size() < MAX_RETAINED_FAILURES)
+				failures.add(failure);
+		}
+
+		@Override
+		public String toString() {
+			return written + " written, " + failed + " failed in "
+					+ getElapsedTime() + "ms (" + (long) getThroughput()
+					+ " docs/sec; conversion " + getConversionTime()
+					+ "ms, writing " + getWriteTime() + "ms)";
+		}
+	}
+
+	/**
+	 * A bean being converted.
+	 */
+	private static class Conversion {
+		private final Searchable bean;
+
+		private final Future<Document> document;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param bean Bean being converted.
+		 * @param document Pending Document.
+		 */
+		public Conversion(final Searchable bean, final Future<Document> document) {
+			this.bean = bean;
+			this.document = document;
+		}
+	}
+
+	/** Default number of conversions in flight per worker thread */
+	public static final int DEFAULT_QUEUE_SIZE_PER_THREAD = 64;
+
+	/** Maximum number of failures retained for inspection */
+	public static final int MAX_RETAINED_FAILURES = 100;
+
+	private static final Logger log = Logger.getLogger(ParallelIndexer.class);
+
+	private final AbstractBeanIndexer indexer;
+
+	private int maxFailures = Integer.MAX_VALUE;
+
+	private int queueSize;
+
+	private final int threads;
+
+	/**
+	 * Constructor.  Uses one worker thread per available processor.
+	 * 
+	 * @param indexer Indexer to convert and save beans with.
+	 */
+	public ParallelIndexer(final AbstractBeanIndexer indexer) {
+		this(indexer, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param indexer Indexer to convert and save beans with.
+	 * @param threads Number of worker threads to convert beans with.
+	 */
+	public ParallelIndexer(final AbstractBeanIndexer indexer, final int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException(
+					"At least one thread is required.");
+
+		this.indexer = indexer;
+		this.threads = threads;
+		this.queueSize = threads * DEFAULT_QUEUE_SIZE_PER_THREAD;
+	}
+
+	/**
+	 * Records a failure, aborting if too many have occurred.
+	 * 
+	 * @param failure Failure to record.
+	 * @param stats Statistics to update.
+	 * @throws IndexingException
+	 */
+	private void failed(final Failure failure, final Statistics stats)
+			throws IndexingException {
+		log.warn("Unable to index " + failure.getBean() + ": "
+				+ failure.getCause().getMessage());
+		stats.fail(failure);
+
+		if (stats.getFailed() > maxFailures)
+			throw new IndexingException("Aborting after " + stats.getFailed()
+					+ " failures.", failure.getCause());
+	}
+
+	/**
+	 * Gets the maximum number of failures tolerated before aborting.
+	 * 
+	 * @return Maximum number of failures.
+	 */
+	public int getMaxFailures() {
+		return maxFailures;
+	}
+
+	/**
+	 * Gets the maximum number of conversions in flight.
+	 * 
+	 * @return Queue size.
+	 */
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	/**
+	 * Indexes a collection of beans.
+	 * 
+	 * @param beans Beans to index.
+	 * @return Statistics for this run.
+	 * @throws IndexException if the run was interrupted or too many beans
+	 * failed.
+	 */
+	public Statistics index(final Iterable<? extends Searchable> beans)
+			throws IndexException {
+		return index(beans.iterator());
+	}
+
+	/**
+	 * Indexes beans supplied by an iterator.  The iterator is only accessed
+	 * from the calling thread.
+	 * 
+	 * @param beans Beans to index.
+	 * @return Statistics for this run.
+	 * @throws IndexException if the run was interrupted or too many beans
+	 * failed.
+	 */
+	public Statistics index(final Iterator<? extends Searchable> beans)
+			throws IndexException {
+		final Statistics stats = new Statistics();
+		final long begin = System.nanoTime();
+		final ExecutorService executor = Executors.newFixedThreadPool(threads,
+				new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					public Thread newThread(final Runnable r) {
+						final Thread t = new Thread(r, "searchable-indexer-"
+								+ count.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		final LinkedList<Conversion> pending = new LinkedList<Conversion>();
+
+		try {
+			while (beans.hasNext()) {
+				final Searchable bean = beans.next();
+
+				// write completed Documents when the queue is full
+				while (pending.size() >= queueSize) {
+					write(pending.removeFirst(), stats);
+				}
+
+				pending.addLast(new Conversion(bean, executor
+						.submit(new Callable<Document>() {
+							public Document call() throws Exception {
+								final long start = System.nanoTime();
+								final Document doc = indexer
+										.createDocument(bean);
+								stats.conversionNanos.addAndGet(System
+										.nanoTime()
+										- start);
+								stats.converted.incrementAndGet();
+								return doc;
+							}
+						})));
+			}
+
+			while (!pending.isEmpty()) {
+				write(pending.removeFirst(), stats);
+			}
+		} finally {
+			executor.shutdownNow();
+			stats.elapsedNanos = System.nanoTime() - begin;
+		}
+
+		log.debug("Parallel indexing complete: " + stats);
+
+		return stats;
+	}
+
+	/**
+	 * Sets the maximum number of failures tolerated before aborting.
+	 * 
+	 * @param maxFailures Maximum number of failures.
+	 */
+	public void setMaxFailures(final int maxFailures) {
+		this.maxFailures = maxFailures;
+	}
+
+	/**
+	 * Sets the maximum number of conversions in flight.  Larger values smooth
+	 * out uneven conversion times at the cost of memory.
+	 * 
+	 * @param queueSize Queue size.
+	 */
+	public void setQueueSize(final int queueSize) {
+		if (queueSize < 1)
+			throw new IllegalArgumentException("Queue size must be positive.");
+
+		this.queueSize = queueSize;
+	}
+
+	/**
+	 * Waits for a conversion to complete and saves the resulting Document.
+	 * 
+	 * @param conversion Conversion to write.
+	 * @param stats Statistics to update.
+	 * @throws IndexException
+	 */
+	private void write(final Conversion conversion, final Statistics stats)
+			throws IndexException {
+		final Document doc;
+		try {
+			doc = conversion.document.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IndexingException("Interrupted while indexing.", e);
+		} catch (final ExecutionException e) {
+			failed(new Failure(conversion.bean, e.getCause()), stats);
+			return;
+		}
+
+		final long start = System.nanoTime();
+		try {
+			indexer.save(doc);
+			stats.written++;
+		} catch (final IndexException e) {
+			failed(new Failure(conversion.bean, e), stats);
+		} finally {
+			stats.writeNanos += System.nanoTime() - start;
+		}
+	}
+}
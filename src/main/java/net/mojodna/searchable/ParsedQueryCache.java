@@ -0,0 +1,338 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.queryParser.MultiFieldQueryParser;
+import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.queryParser.QueryParser;
+import org.apache.lucene.search.Query;
+
+/**
+ * Bounded LRU cache of parsed queries, keyed on the query string, default
+ * fields, Analyzer (by identity), and default operator.  Cache misses are
+ * parsed with pooled MultiFieldQueryParsers, as parsers may not be shared
+ * between threads.  Idle parsers are kept for a bounded number of
+ * configurations, least recently used first out, so that a shared cache does
+ * not pin every Analyzer it has seen.
+ * 
+ * Callers receive shallow clones of cached queries: properties of the
+ * returned query itself (such as its boost) may be changed, but nested
+ * queries, clauses and terms are shared with the cache and must not be
+ * modified.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public class ParsedQueryCache {
+	/**
+	 * Identifies a parser configuration (and, with a query string, a parsed
+	 * query).
+	 */
+	private static final class Key {
+		private final Analyzer analyzer;
+
+		private final String[] fields;
+
+		private final int hashCode;
+
+		private final QueryParser.Operator operator;
+
+		private final String query;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param query Query string; null when identifying a parser.
+		 * @param fields Default fields.
+		 * @param analyzer Analyzer.
+		 * @param operator Default operator.
+		 */
+		private Key(final String query, final String[] fields,
+				final Analyzer analyzer, final QueryParser.Operator operator) {
+			this.query = query;
+			this.fields = fields.clone();
+			this.analyzer = analyzer;
+			this.operator = operator;
+			this.hashCode = (null == query ? 0 : query.hashCode()) * 31 * 31
+					* 31 + Arrays.hashCode(this.fields) * 31 * 31
+					+ System.identityHashCode(analyzer) * 31
+					+ operator.hashCode();
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+
+			final Key other = (Key) obj;
+			return analyzer == other.analyzer
+					&& operator == other.operator
+					&& (null == query ? null == other.query : query
+							.equals(other.query))
+					&& Arrays.equals(fields, other.fields);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+
+	/** Default maximum number of idle parsers per configuration */
+	public static final int DEFAULT_MAX_IDLE_PARSERS = 8;
+
+	/** Default maximum number of configurations to keep idle parsers for */
+	public static final int DEFAULT_MAX_PARSER_CONFIGURATIONS = 16;
+
+	/** Default maximum number of cached queries */
+	public static final int DEFAULT_MAX_SIZE = 1000;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private int maxIdleParsers = DEFAULT_MAX_IDLE_PARSERS;
+
+	private volatile int maxParserConfigurations = DEFAULT_MAX_PARSER_CONFIGURATIONS;
+
+	private final int maxSize;
+
+	private final AtomicLong misses = new AtomicLong();
+
+	/** Idle parsers, keyed on configuration, in access order */
+	private final Map<Key, Queue<MultiFieldQueryParser>> parsers = new LinkedHashMap<Key, Queue<MultiFieldQueryParser>>(
+			16, 0.75F, true) {
+		@Override
+		protected boolean removeEldestEntry(
+				final Map.Entry<Key, Queue<MultiFieldQueryParser>> eldest) {
+			return size() > maxParserConfigurations;
+		}
+	};
+
+	/** Parsed queries, in access order */
+	private final Map<Key, Query> queries;
+
+	/**
+	 * Constructor.  Uses the default maximum size.
+	 */
+	public ParsedQueryCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param maxSize Maximum number of queries to cache.
+	 */
+	public ParsedQueryCache(final int maxSize) {
+		this.maxSize = maxSize;
+		this.queries = new LinkedHashMap<Key, Query>(16, 0.75F, true) {
+			@Override
+			protected boolean removeEldestEntry(
+					final Map.Entry<Key, Query> eldest) {
+				return size() > ParsedQueryCache.this.maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Borrows a parser for the specified configuration from the pool,
+	 * creating one if none are idle.
+	 * 
+	 * @param key Parser configuration.
+	 * @return Parser.
+	 */
+	private MultiFieldQueryParser borrowParser(final Key key) {
+		final Queue<MultiFieldQueryParser> idle;
+		synchronized (parsers) {
+			idle = parsers.get(key);
+		}
+		if (null != idle) {
+			final MultiFieldQueryParser parser = idle.poll();
+			if (null != parser)
+				return parser;
+		}
+
+		final MultiFieldQueryParser parser = new MultiFieldQueryParser(
+				key.fields, key.analyzer);
+		parser.setDefaultOperator(key.operator);
+		return parser;
+	}
+
+	/**
+	 * Discards all cached queries and idle parsers.
+	 */
+	public void clear() {
+		synchronized (queries) {
+			queries.clear();
+		}
+		synchronized (parsers) {
+			parsers.clear();
+		}
+	}
+
+	/**
+	 * Gets the number of lookups that were answered from the cache.
+	 * 
+	 * @return Number of cache hits.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Gets the maximum number of idle parsers retained per configuration.
+	 * 
+	 * @return Maximum number of idle parsers.
+	 */
+	public int getMaxIdleParsers() {
+		return maxIdleParsers;
+	}
+
+	/**
+	 * Gets the maximum number of configurations to keep idle parsers for.
+	 * 
+	 * @return Maximum number of parser configurations.
+	 */
+	public int getMaxParserConfigurations() {
+		return maxParserConfigurations;
+	}
+
+	/**
+	 * Gets the maximum number of queries to cache.
+	 * 
+	 * @return Maximum number of cached queries.
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Gets the number of lookups that required the query to be parsed.
+	 * 
+	 * @return Number of cache misses.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Gets the number of configurations with idle parsers.
+	 * 
+	 * @return Number of parser configurations.
+	 */
+	public int getParserConfigurations() {
+		synchronized (parsers) {
+			return parsers.size();
+		}
+	}
+
+	/**
+	 * Gets the number of cached queries.
+	 * 
+	 * @return Number of cached queries.
+	 */
+	public int getSize() {
+		synchronized (queries) {
+			return queries.size();
+		}
+	}
+
+	/**
+	 * Parses a query, using a cached copy if one is available.
+	 * 
+	 * @param query Query string.
+	 * @param fields Default fields to search against.
+	 * @param analyzer Analyzer to use.
+	 * @param operator Default operator.
+	 * @return Parsed query (a shallow copy; see above).
+	 * @throws ParseException
+	 */
+	public Query parse(final String query, final String[] fields,
+			final Analyzer analyzer, final QueryParser.Operator operator)
+			throws ParseException {
+		final Key key = new Key(query, fields, analyzer, operator);
+
+		Query parsed;
+		synchronized (queries) {
+			parsed = queries.get(key);
+		}
+
+		if (null != parsed) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+
+			final Key parserKey = new Key(null, fields, analyzer, operator);
+			final MultiFieldQueryParser parser = borrowParser(parserKey);
+			try {
+				parsed = parser.parse(query);
+			} finally {
+				returnParser(parserKey, parser);
+			}
+
+			synchronized (queries) {
+				queries.put(key, parsed);
+			}
+		}
+
+		return (Query) parsed.clone();
+	}
+
+	/**
+	 * Returns a parser to the pool, unless enough are already idle.
+	 * 
+	 * @param key Parser configuration.
+	 * @param parser Parser to return.
+	 */
+	private void returnParser(final Key key, final MultiFieldQueryParser parser) {
+		Queue<MultiFieldQueryParser> idle;
+		synchronized (parsers) {
+			idle = parsers.get(key);
+			if (null == idle) {
+				idle = new ConcurrentLinkedQueue<MultiFieldQueryParser>();
+				parsers.put(key, idle);
+			}
+		}
+
+		if (idle.size() < maxIdleParsers)
+			idle.offer(parser);
+	}
+
+	/**
+	 * Sets the maximum number of idle parsers retained per configuration.
+	 * 
+	 * @param maxIdleParsers Maximum number of idle parsers.
+	 */
+	public void setMaxIdleParsers(final int maxIdleParsers) {
+		this.maxIdleParsers = maxIdleParsers;
+	}
+
+	/**
+	 * Sets the maximum number of configurations (default fields, Analyzer
+	 * and operator) to keep idle parsers for.
+	 * 
+	 * @param maxParserConfigurations Maximum number of parser configurations.
+	 */
+	public void setMaxParserConfigurations(final int maxParserConfigurations) {
+		this.maxParserConfigurations = maxParserConfigurations;
+	}
+}
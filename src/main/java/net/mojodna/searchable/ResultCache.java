@@ -0,0 +1,368 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopDocs;
+
+/**
+ * Bounded LRU cache of search results (document numbers and scores, not
+ * hydrated results) for a single index.  Document numbers are only valid
+ * for the reader they were obtained from, so the cache belongs to a
+ * SearcherManager and is invalidated whenever the index is reopened.
+ * 
+ * Entries are keyed on the query, filter, sort, and the number of hits
+ * collected (offset + count).  Filters are compared with equals(), which
+ * is usually identity.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public class ResultCache {
+	/**
+	 * Identifies a set of results.
+	 */
+	private static final class Key {
+		private final Filter filter;
+
+		private final int hashCode;
+
+		private final int numHits;
+
+		private final Query query;
+
+		/** Sort criteria; Sort and SortField do not implement equals() */
+		private final List<Object> sort;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param query Query.
+		 * @param filter Filter; may be null.
+		 * @param sort Sort; may be null.
+		 * @param numHits Number of hits collected; Integer.MAX_VALUE for all.
+		 */
+		private Key(final Query query, final Filter filter, final Sort sort,
+				final int numHits) {
+			this.query = query;
+			this.filter = filter;
+			this.sort = describe(sort);
+			this.numHits = numHits;
+			this.hashCode = ((query.hashCode() * 31 + (null == filter ? 0
+					: filter.hashCode())) * 31 + this.sort.hashCode())
+					* 31 + numHits;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+
+			final Key other = (Key) obj;
+			return numHits == other.numHits
+					&& query.equals(other.query)
+					&& (null == filter ? null == other.filter : filter
+							.equals(other.filter)) && sort.equals(other.sort);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+
+	/** Default maximum estimated size of cached results (16MB) */
+	public static final long DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+
+	/** Default maximum number of cached results */
+	public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+	/** Estimated size of a cached entry, excluding its hits */
+	private static final int ENTRY_BYTES = 128;
+
+	/** Estimated size of a ScoreDoc and its reference */
+	private static final int SCORE_DOC_BYTES = 32;
+
+	/** Estimated size of a FieldDoc sort value and its reference */
+	private static final int SORT_VALUE_BYTES = 32;
+
+	/**
+	 * Describes sort criteria in a form that can be compared.
+	 * 
+	 * @param sort Sort to describe.
+	 * @return List of sort criteria.
+	 */
+	private static List<Object> describe(final Sort sort) {
+		final List<Object> criteria = new ArrayList<Object>();
+		if (null == sort || Sort.RELEVANCE == sort)
+			return criteria;
+
+		for (final SortField field : sort.getSort()) {
+			criteria.add(field.getField());
+			criteria.add(field.getType());
+			criteria.add(field.getReverse());
+			criteria.add(field.getLocale());
+			criteria.add(field.getFactory());
+		}
+
+		return criteria;
+	}
+
+	/**
+	 * Estimates the memory used by a set of results.
+	 * 
+	 * @param topDocs Results.
+	 * @return Estimated size in bytes.
+	 */
+	private static long estimateBytes(final TopDocs topDocs) {
+		long bytes = ENTRY_BYTES;
+		for (final Object scoreDoc : topDocs.scoreDocs) {
+			bytes += SCORE_DOC_BYTES;
+			if (scoreDoc instanceof FieldDoc
+					&& null != ((FieldDoc) scoreDoc).fields)
+				bytes += SORT_VALUE_BYTES
+						* ((FieldDoc) scoreDoc).fields.length;
+		}
+		return bytes;
+	}
+
+	private long bytes;
+
+	/** Cached results, in access order */
+	private final LinkedHashMap<Key, TopDocs> entries = new LinkedHashMap<Key, TopDocs>(
+			16, 0.75F, true);
+
+	private long evictions;
+
+	/** Generation that cached results belong to */
+	private long generation;
+
+	private long hits;
+
+	private long invalidations;
+
+	private long maxBytes = DEFAULT_MAX_BYTES;
+
+	private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+	private long misses;
+
+	/**
+	 * Discards all cached results.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Evicts least recently used results until the cache is within its
+	 * bounds.
+	 */
+	private void evict() {
+		final Iterator<Map.Entry<Key, TopDocs>> it = entries.entrySet()
+				.iterator();
+		while (it.hasNext()
+				&& (entries.size() > maxEntries || bytes > maxBytes)) {
+			bytes -= estimateBytes(it.next().getValue());
+			it.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Gets cached results.
+	 * 
+	 * @param generation Generation of the searcher being used.
+	 * @param query Query.
+	 * @param filter Filter; may be null.
+	 * @param sort Sort; may be null.
+	 * @param numHits Number of hits to collect; Integer.MAX_VALUE for all.
+	 * @return Cached results (not to be modified); null if not cached.
+	 */
+	public synchronized TopDocs get(final long generation, final Query query,
+			final Filter filter, final Sort sort, final int numHits) {
+		TopDocs topDocs = null;
+		if (generation == this.generation)
+			topDocs = entries.get(new Key(query, filter, sort, numHits));
+
+		if (null == topDocs)
+			misses++;
+		else
+			hits++;
+
+		return topDocs;
+	}
+
+	/**
+	 * Gets the estimated size of cached results.
+	 * 
+	 * @return Estimated size in bytes.
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Gets the number of results evicted to keep the cache within its bounds.
+	 * 
+	 * @return Number of evictions.
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Gets the number of lookups that were answered from the cache.
+	 * 
+	 * @return Number of cache hits.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Gets the proportion of lookups that were answered from the cache.
+	 * 
+	 * @return Hit rate between 0 and 1.
+	 */
+	public synchronized double getHitRate() {
+		final long lookups = hits + misses;
+		return 0 == lookups ? 0 : (double) hits / lookups;
+	}
+
+	/**
+	 * Gets the number of times cached results have been discarded because
+	 * the index was reopened.
+	 * 
+	 * @return Number of invalidations.
+	 */
+	public synchronized long getInvalidations() {
+		return invalidations;
+	}
+
+	/**
+	 * Gets the maximum estimated size of cached results.
+	 * 
+	 * @return Maximum size in bytes.
+	 */
+	public synchronized long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Gets the maximum number of cached results.
+	 * 
+	 * @return Maximum number of entries.
+	 */
+	public synchronized int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * Gets the number of lookups that were not answered from the cache.
+	 * 
+	 * @return Number of cache misses.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Gets the number of cached results.
+	 * 
+	 * @return Number of entries.
+	 */
+	public synchronized int getSize() {
+		return entries.size();
+	}
+
+	/**
+	 * Caches results.  Results from searchers other than the current
+	 * generation's are ignored, as are results larger than the cache.
+	 * 
+	 * @param generation Generation of the searcher used.
+	 * @param query Query.  It should not be modified once cached.
+	 * @param filter Filter; may be null.
+	 * @param sort Sort; may be null.
+	 * @param numHits Number of hits collected; Integer.MAX_VALUE for all.
+	 * @param topDocs Results.
+	 */
+	public synchronized void put(final long generation, final Query query,
+			final Filter filter, final Sort sort, final int numHits,
+			final TopDocs topDocs) {
+		if (generation != this.generation || 0 == maxEntries)
+			return;
+
+		final long size = estimateBytes(topDocs);
+		if (size > maxBytes)
+			return;
+
+		final TopDocs previous = entries.put(new Key(query, filter, sort,
+				numHits), topDocs);
+		if (null != previous)
+			bytes -= estimateBytes(previous);
+		bytes += size;
+
+		evict();
+	}
+
+	/**
+	 * Moves the cache on to a new generation, discarding results from the
+	 * previous one.
+	 * 
+	 * @param generation New generation.
+	 */
+	synchronized void setGeneration(final long generation) {
+		if (generation == this.generation)
+			return;
+
+		if (!entries.isEmpty())
+			invalidations++;
+
+		clear();
+		this.generation = generation;
+	}
+
+	/**
+	 * Sets the maximum estimated size of cached results.
+	 * 
+	 * @param maxBytes Maximum size in bytes.
+	 */
+	public synchronized void setMaxBytes(final long maxBytes) {
+		this.maxBytes = maxBytes;
+		evict();
+	}
+
+	/**
+	 * Sets the maximum number of cached results.
+	 * 
+	 * @param maxEntries Maximum number of entries; 0 to disable caching.
+	 */
+	public synchronized void setMaxEntries(final int maxEntries) {
+		this.maxEntries = maxEntries;
+		evict();
+	}
+}
@@ -0,0 +1,44 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads complete Searchables (typically from a system of record such as a
+ * database) to replace the placeholders returned by a search.  Hydrators
+ * are called once per type per page of results, allowing all objects of a
+ * type to be loaded with a single query.
+ * 
+ * @see ResultSetImpl#hydrate(ResultHydrator)
+ * @author Seth Fitzsimmons
+ */
+public interface ResultHydrator {
+	/**
+	 * Loads the objects with the specified ids.
+	 * 
+	 * @param type Type of objects to load.
+	 * @param ids Ids of the objects to load, in ranking order.
+	 * @return Loaded objects keyed on id.  Objects that could not be loaded
+	 *         may be omitted, in which case their placeholders are kept.
+	 * @throws SearchException
+	 */
+	Map<Serializable, ? extends Searchable> hydrate(
+			Class<? extends Searchable> type, List<Serializable> ids)
+			throws SearchException;
+}
@@ -0,0 +1,114 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Iterator over every result of a search, fetched a block at a time so that
+ * memory use is bounded by the block size rather than the number of
+ * results.  Intended for exports and other jobs that need every match.
+ * 
+ * Iterators hold resources (such as an IndexSearcher) until they are
+ * exhausted; call close() if abandoning one early.
+ * 
+ * @author Seth Fitzsimmons
+ * @param <E> Type of result.
+ */
+public abstract class ResultIterator<E extends Result> implements Iterator<E> {
+	/** Default number of results to fetch at a time */
+	public static final int DEFAULT_BLOCK_SIZE = 100;
+
+	private static final Logger log = Logger.getLogger(ResultIterator.class);
+
+	/** Results remaining in the current block */
+	private Iterator<E> block = Collections.<E> emptyList().iterator();
+
+	private boolean closed;
+
+	/**
+	 * Releases any resources held by this iterator.  Called automatically
+	 * once the iterator has been exhausted.
+	 * 
+	 * @throws IndexException
+	 */
+	public void close() throws IndexException {
+		closed = true;
+	}
+
+	/**
+	 * Fetches the next block of results.
+	 * 
+	 * @return Next block of results; empty if there are no more results.
+	 * @throws IndexException
+	 */
+	protected abstract List<E> fetchBlock() throws IndexException;
+
+	/**
+	 * Fetches more results if the current block has been exhausted.
+	 * 
+	 * @throws IllegalStateException if the next block could not be fetched.
+	 */
+	public boolean hasNext() {
+		while (!block.hasNext() && !closed) {
+			try {
+				final List<E> next = fetchBlock();
+				if (next.isEmpty())
+					close();
+				else
+					block = next.iterator();
+			} catch (final IndexException e) {
+				log.error("Could not fetch results: " + e.getMessage(), e);
+				try {
+					close();
+				} catch (final IndexException ce) {
+					log.warn("Could not close iterator.", ce);
+				}
+				throw new IllegalStateException("Could not fetch results: "
+						+ e.getMessage(), e);
+			}
+		}
+
+		return block.hasNext();
+	}
+
+	/**
+	 * Is this iterator closed?
+	 * 
+	 * @return Whether this iterator has been closed.
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	public E next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		return block.next();
+	}
+
+	/**
+	 * Not supported.
+	 */
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+}
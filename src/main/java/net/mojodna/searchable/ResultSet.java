@@ -17,6 +17,7 @@ package net.mojodna.searchable;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.lucene.search.Query;
 
@@ -39,6 +40,24 @@ public interface ResultSet<E extends Result> extends Iterable<E> {
 	 */
 	int count();
 
+	/**
+	 * Gets an opaque token that resumes the search after the last result in
+	 * this set.
+	 * 
+	 * @return Cursor token; null if there are no further results or the
+	 *         search was not cursor-based.
+	 */
+	String getCursor();
+
+	/**
+	 * Gets counts of the most frequent values of faceted fields across all
+	 * results (not just those in this set).
+	 * 
+	 * @return Map of field names to value counts, most frequent first; empty
+	 *         if the search was not faceted.
+	 */
+	Map<String, List<FacetCount>> getFacets();
+
 	/**
 	 * Gets the Query that was used to generate this set.
 	 * 
@@ -60,6 +79,15 @@ public interface ResultSet<E extends Result> extends Iterable<E> {
 	 */
 	boolean isEmpty();
 
+	/**
+	 * Is this missing results from one or more indexes?  This happens when a
+	 * multi-index search times out before every index has been searched;
+	 * size() then only counts the indexes that were.
+	 * 
+	 * @return Whether this resultset is partial.
+	 */
+	boolean isPartial();
+
 	/**
 	 * Gets an iterator over this resultset.
 	 * 
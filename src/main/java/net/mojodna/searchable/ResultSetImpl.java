@@ -15,9 +15,14 @@
  */
 package net.mojodna.searchable;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
 
 import org.apache.lucene.search.Query;
 
@@ -27,11 +32,17 @@ import org.apache.lucene.search.Query;
  * @author Seth Fitzsimmons
  */
 public class ResultSetImpl implements ResultSet {
+	private String cursor;
+
+	private Map<String, List<FacetCount>> facets = Collections.emptyMap();
+
 	private int offset;
 
+	private boolean partial;
+
 	private Query query;
 
-	private List<Result> results = new LinkedList<Result>();
+	private List<Result> results = new ArrayList<Result>();
 
 	private int size;
 
@@ -66,6 +77,14 @@ public class ResultSetImpl implements ResultSet {
 		return results.size();
 	}
 
+	public String getCursor() {
+		return cursor;
+	}
+
+	public Map<String, List<FacetCount>> getFacets() {
+		return facets;
+	}
+
 	public Query getQuery() {
 		return query;
 	}
@@ -74,10 +93,73 @@ public class ResultSetImpl implements ResultSet {
 		return results;
 	}
 
+	/**
+	 * Replaces the Searchables in this set with complete objects loaded by a
+	 * ResultHydrator.  The hydrator is called once per type with the ids of
+	 * all results of that type; results keep their positions (and rankings,
+	 * scores, extracts, and stored fields).
+	 * 
+	 * @param hydrator Hydrator to load objects with.
+	 * @throws SearchException
+	 */
+	@SuppressWarnings("unchecked")
+	public void hydrate(final ResultHydrator hydrator) throws SearchException {
+		// group positions and ids by type, preserving ranking order
+		final Map<Class<? extends Searchable>, List<Integer>> positions = new LinkedHashMap<Class<? extends Searchable>, List<Integer>>();
+		final Map<Class<? extends Searchable>, List<Serializable>> ids = new LinkedHashMap<Class<? extends Searchable>, List<Serializable>>();
+		for (int i = 0; i < results.size(); i++) {
+			if (!(results.get(i) instanceof Searchable))
+				continue;
+
+			final Searchable result = (Searchable) results.get(i);
+			final Class<? extends Searchable> type = result.getClass();
+			final IndexPlan.Property idProperty = IndexPlan.getPlan(type)
+					.getIdProperty();
+			if (null == idProperty)
+				continue;
+
+			final Object id;
+			try {
+				id = idProperty.getValue(result);
+			} catch (final IndexingException e) {
+				throw new SearchException("Unable to determine value for id.",
+						e);
+			}
+			if (!(id instanceof Serializable))
+				continue;
+
+			if (!positions.containsKey(type)) {
+				positions.put(type, new ArrayList<Integer>());
+				ids.put(type, new ArrayList<Serializable>());
+			}
+			positions.get(type).add(i);
+			ids.get(type).add((Serializable) id);
+		}
+
+		for (final Map.Entry<Class<? extends Searchable>, List<Integer>> e : positions
+				.entrySet()) {
+			final List<Serializable> typeIds = ids.get(e.getKey());
+			final Map<Serializable, ? extends Searchable> loaded = hydrator
+					.hydrate(e.getKey(), typeIds);
+			if (null == loaded)
+				continue;
+
+			for (int i = 0; i < typeIds.size(); i++) {
+				final Searchable replacement = loaded.get(typeIds.get(i));
+				if (null != replacement)
+					replace(e.getValue().get(i), replacement);
+			}
+		}
+	}
+
 	public boolean isEmpty() {
 		return results.isEmpty();
 	}
 
+	public boolean isPartial() {
+		return partial;
+	}
+
 	public Iterator<? extends Result> iterator() {
 		return results.iterator();
 	}
@@ -102,6 +184,41 @@ public class ResultSetImpl implements ResultSet {
 		results.set(results.indexOf(r1), r2);
 	}
 
+	/**
+	 * Replaces the Result at the specified position with something presumably
+	 * equivalent.  Result-specific properties are copied between objects as
+	 * part of this process.
+	 * 
+	 * @param index Position of the Result to replace.
+	 * @param replacement Replacement result.
+	 */
+	public void replace(final int index, final Result replacement) {
+		final Result original = results.get(index);
+		replacement.setRanking(original.getRanking());
+		replacement.setScore(original.getScore());
+		replacement.setSearchExtract(original.getSearchExtract());
+		replacement.setStoredFields(original.getStoredFields());
+		results.set(index, replacement);
+	}
+
+	/**
+	 * Sets the token that resumes the search after this set.
+	 * 
+	 * @param cursor Cursor token.
+	 */
+	public void setCursor(final String cursor) {
+		this.cursor = cursor;
+	}
+
+	/**
+	 * Sets counts of the most frequent values of faceted fields.
+	 * 
+	 * @param facets Map of field names to value counts.
+	 */
+	public void setFacets(final Map<String, List<FacetCount>> facets) {
+		this.facets = facets;
+	}
+
 	/**
 	 * Sets the offset of the first result in this set.
 	 * 
@@ -111,6 +228,15 @@ public class ResultSetImpl implements ResultSet {
 		this.offset = offset;
 	}
 
+	/**
+	 * Sets whether results from one or more indexes are missing.
+	 * 
+	 * @param partial Whether this set is partial.
+	 */
+	public void setPartial(final boolean partial) {
+		this.partial = partial;
+	}
+
 	/**
 	 * Sets the Query that was used to get this set.
 	 * 
@@ -121,12 +247,16 @@ public class ResultSetImpl implements ResultSet {
 	}
 
 	/**
-	 * Sets the available results in this set.
+	 * Sets the available results in this set.  Lists without constant-time
+	 * positional access are copied.
 	 * 
 	 * @param results Available results.
 	 */
 	public void setResults(final List<Result> results) {
-		this.results = results;
+		if (results instanceof RandomAccess)
+			this.results = results;
+		else
+			this.results = new ArrayList<Result>(results);
 	}
 
 	/**
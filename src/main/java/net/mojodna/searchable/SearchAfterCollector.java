@@ -0,0 +1,185 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.FieldSortedHitQueue;
+import org.apache.lucene.search.HitCollector;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreDocComparator;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+
+/**
+ * Collects the top results that sort after a SearchCursor.  Hits that sort
+ * at or before the cursor are skipped, and the remainder are kept in a
+ * priority queue bounded by the page size, so the cost of a page does not
+ * depend on how deep into the results it is.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public class SearchAfterCollector extends HitCollector {
+	/**
+	 * FieldSortedHitQueue that exposes its comparators.
+	 */
+	private static final class Queue extends FieldSortedHitQueue {
+		/**
+		 * Constructor.
+		 * 
+		 * @param reader Reader being searched.
+		 * @param fields Fields to sort by.
+		 * @param size Maximum number of results to retain.
+		 * @throws IOException
+		 */
+		private Queue(final IndexReader reader, final SortField[] fields,
+				final int size) throws IOException {
+			super(reader, fields, size);
+		}
+
+		/**
+		 * Compares a hit with a set of sort values, in sort order.
+		 * 
+		 * @param doc Hit to compare.
+		 * @param values Sort values to compare against.
+		 * @return Negative if the hit sorts first, positive if it sorts last.
+		 */
+		@SuppressWarnings("unchecked")
+		private int compare(final ScoreDoc doc, final Comparable[] values) {
+			for (int i = 0; i < comparators.length && i < values.length; i++) {
+				final Comparable value = comparators[i].sortValue(doc);
+				int c;
+				if (null == value)
+					c = null == values[i] ? 0 : -1;
+				else if (null == values[i])
+					c = 1;
+				else
+					c = value.compareTo(values[i]);
+
+				// higher scores sort first
+				if (SortField.SCORE == comparators[i].sortType())
+					c = -c;
+				if (fields[i].getReverse())
+					c = -c;
+				if (0 != c)
+					return c;
+			}
+
+			return 0;
+		}
+
+		/**
+		 * Gets the sort values for a hit.
+		 * 
+		 * @param doc Hit.
+		 * @return Sort values.
+		 */
+		private Comparable[] getValues(final ScoreDoc doc) {
+			final Comparable[] values = new Comparable[comparators.length];
+			for (int i = 0; i < comparators.length; i++) {
+				values[i] = comparators[i].sortValue(doc);
+			}
+			return values;
+		}
+	}
+
+	private final SearchCursor cursor;
+
+	private int matches;
+
+	private final Queue queue;
+
+	private int totalHits;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param reader Reader being searched.
+	 * @param sort Sort to use; null to sort by relevance.
+	 * @param cursor Cursor to resume after; null to start from the first
+	 *        result.
+	 * @param count Maximum number of results to collect.
+	 * @throws IOException
+	 */
+	public SearchAfterCollector(final IndexReader reader, final Sort sort,
+			final SearchCursor cursor, final int count) throws IOException {
+		final Sort s = null == sort ? Sort.RELEVANCE : sort;
+		this.queue = new Queue(reader, s.getSort(), Math.max(1, count));
+		this.cursor = cursor;
+	}
+
+	@Override
+	public void collect(final int doc, final float score) {
+		if (score <= 0.0f)
+			return;
+
+		totalHits++;
+		final FieldDoc hit = new FieldDoc(doc, score);
+		if (null != cursor) {
+			final int c = queue.compare(hit, cursor.getValues());
+			if (c < 0 || (0 == c && doc <= cursor.getDoc()))
+				return;
+		}
+
+		matches++;
+		queue.insert(hit);
+	}
+
+	/**
+	 * Gets a cursor positioned after the specified hit.
+	 * 
+	 * @param hit Hit (as returned by getTopDocs()).
+	 * @param offset Number of results returned up to and including this hit.
+	 * @return Cursor.
+	 */
+	public SearchCursor getCursor(final ScoreDoc hit, final int offset) {
+		return new SearchCursor(offset, hit.doc, queue.getValues(hit));
+	}
+
+	/**
+	 * Gets the number of hits that sort after the cursor, including those
+	 * that did not fit on this page.
+	 * 
+	 * @return Number of matching hits.
+	 */
+	public int getMatches() {
+		return matches;
+	}
+
+	/**
+	 * Gets the collected hits in sort order.  This drains the queue.
+	 * 
+	 * @return Collected hits.
+	 */
+	public ScoreDoc[] getTopDocs() {
+		final ScoreDoc[] docs = new ScoreDoc[queue.size()];
+		for (int i = docs.length - 1; i >= 0; i--) {
+			docs[i] = (ScoreDoc) queue.pop();
+		}
+		return docs;
+	}
+
+	/**
+	 * Gets the total number of hits, including those before the cursor.
+	 * 
+	 * @return Total number of hits.
+	 */
+	public int getTotalHits() {
+		return totalHits;
+	}
+}
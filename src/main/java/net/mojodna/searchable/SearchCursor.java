@@ -0,0 +1,217 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Position within a sorted set of results, used to resume a search after the
+ * last result that was returned.  Cursors are exchanged with clients as
+ * opaque tokens (see toString() and parse()).
+ * 
+ * A cursor consists of the sort values and document number of the last
+ * result returned, along with the number of results returned so far.
+ * Document numbers only break ties between equal sort values, so a cursor
+ * remains usable (though not necessarily exact) after the index changes.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public final class SearchCursor {
+	private static final String ENCODING = "UTF-8";
+
+	private static final char SEPARATOR = ':';
+
+	private static final char TYPE_DOC = 'd';
+
+	private static final char TYPE_DOUBLE = 'e';
+
+	private static final char TYPE_FLOAT = 'f';
+
+	private static final char TYPE_INTEGER = 'i';
+
+	private static final char TYPE_LONG = 'l';
+
+	private static final char TYPE_NULL = 'n';
+
+	private static final char TYPE_OFFSET = 'o';
+
+	private static final char TYPE_STRING = 's';
+
+	/**
+	 * Parses a token produced by toString().
+	 * 
+	 * @param token Cursor token.
+	 * @return Cursor.
+	 * @throws SearchException if the token is malformed.
+	 */
+	public static SearchCursor parse(final String token) throws SearchException {
+		try {
+			int offset = 0;
+			int doc = -1;
+			final List<Comparable> values = new ArrayList<Comparable>();
+
+			for (final String part : token.split(String.valueOf(SEPARATOR))) {
+				if (part.length() == 0)
+					throw new SearchException("Malformed cursor: " + token);
+
+				final String value = part.substring(1);
+				switch (part.charAt(0)) {
+				case TYPE_OFFSET:
+					offset = Integer.parseInt(value);
+					break;
+				case TYPE_DOC:
+					doc = Integer.parseInt(value);
+					break;
+				case TYPE_INTEGER:
+					values.add(Integer.valueOf(value));
+					break;
+				case TYPE_LONG:
+					values.add(Long.valueOf(value));
+					break;
+				case TYPE_NULL:
+					values.add(null);
+					break;
+				case TYPE_FLOAT:
+					values.add(Float.intBitsToFloat((int) Long.parseLong(
+							value, 16)));
+					break;
+				case TYPE_DOUBLE:
+					values.add(SortableType.DOUBLE.decode(value));
+					break;
+				case TYPE_STRING:
+					values.add(URLDecoder.decode(value, ENCODING));
+					break;
+				default:
+					throw new SearchException("Malformed cursor: " + token);
+				}
+			}
+
+			return new SearchCursor(offset, doc, values
+					.toArray(new Comparable[values.size()]));
+		} catch (final NumberFormatException e) {
+			throw new SearchException("Malformed cursor: " + token, e);
+		} catch (final UnsupportedEncodingException e) {
+			throw new SearchException(e);
+		}
+	}
+
+	private final int doc;
+
+	private final int offset;
+
+	private final Comparable[] values;
+
+	/**
+	 * Constructor for a cursor that only records an offset.  This is used
+	 * by searchers that cannot resume from sort values.
+	 * 
+	 * @param offset Number of results returned so far.
+	 */
+	public SearchCursor(final int offset) {
+		this(offset, -1, new Comparable[0]);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param offset Number of results returned so far.
+	 * @param doc Document number of the last result returned.
+	 * @param values Sort values of the last result returned (Strings,
+	 *        Integers, Longs, Floats, Doubles, or nulls).
+	 */
+	public SearchCursor(final int offset, final int doc,
+			final Comparable[] values) {
+		this.offset = offset;
+		this.doc = doc;
+		this.values = values.clone();
+	}
+
+	/**
+	 * Gets the document number of the last result returned.
+	 * 
+	 * @return Document number; -1 if not known.
+	 */
+	public int getDoc() {
+		return doc;
+	}
+
+	/**
+	 * Gets the number of results returned so far.  Results following this
+	 * cursor are ranked from this offset.
+	 * 
+	 * @return Offset.
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Gets the sort values of the last result returned.
+	 * 
+	 * @return Sort values.
+	 */
+	public Comparable[] getValues() {
+		return values.clone();
+	}
+
+	/**
+	 * Gets an opaque, URL-safe token representing this cursor.
+	 * 
+	 * @return Cursor token.
+	 * @throws IllegalArgumentException if a sort value is not a String,
+	 *         Integer, Long, Float, Double, or null.
+	 */
+	@Override
+	public String toString() {
+		final StringBuffer sb = new StringBuffer();
+		sb.append(TYPE_OFFSET).append(offset);
+		if (doc >= 0)
+			sb.append(SEPARATOR).append(TYPE_DOC).append(doc);
+
+		for (final Comparable value : values) {
+			sb.append(SEPARATOR);
+			if (null == value) {
+				sb.append(TYPE_NULL);
+			} else if (value instanceof Integer) {
+				sb.append(TYPE_INTEGER).append(value);
+			} else if (value instanceof Long) {
+				sb.append(TYPE_LONG).append(value);
+			} else if (value instanceof Float) {
+				sb.append(TYPE_FLOAT).append(
+						Integer.toHexString(Float
+								.floatToIntBits((Float) value)));
+			} else if (value instanceof Double) {
+				sb.append(TYPE_DOUBLE).append(SortableType.DOUBLE.encode(value));
+			} else if (value instanceof String) {
+				try {
+					sb.append(TYPE_STRING).append(
+							URLEncoder.encode((String) value, ENCODING));
+				} catch (final UnsupportedEncodingException e) {
+					throw new IllegalStateException(e.getMessage());
+				}
+			} else {
+				throw new IllegalArgumentException(
+						"Unsupported sort value type: " + value.getClass());
+			}
+		}
+
+		return sb.toString();
+	}
+}
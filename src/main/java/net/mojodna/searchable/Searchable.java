@@ -78,9 +78,10 @@ public interface Searchable extends Result {
 	 * indexed when the object is a property on another Searchable, the
 	 * "stored" attribute to specify whether it should be stored (defaults to
 	 * false), the "boost" attribute to set a boost value, the "tokenized"
-	 * attribute to change whether it is tokenized (defaults to true), and the
+	 * attribute to change whether it is tokenized (defaults to true), the
 	 * storeTermVector" attribute to specify whether a term vector should be
-	 * stored.
+	 * stored, and the "precisionStep" attribute to index numbers and dates
+	 * for range filtering (see NumericRangeFilter).
 	 */
 	@Target(ElementType.METHOD)
 	@Retention(RetentionPolicy.RUNTIME)
@@ -105,6 +106,12 @@ public interface Searchable extends Result {
 		 */
 		boolean nested() default false;
 
+		/**
+		 * @return Number of bits per precision to index numeric and date
+		 * values with for range filtering; 0 to disable.
+		 */
+		int precisionStep() default 0;
+
 		/**
 		 * @return Whether this property should be stored.
 		 */
@@ -126,6 +133,20 @@ public interface Searchable extends Result {
 		boolean value() default true;
 	}
 
+	/**
+	 * Provide a list of stored fields to load when hydrating results of the
+	 * annotated type.  Other stored fields are left out of the result's
+	 * stored field map.
+	 */
+	@Target(ElementType.TYPE)
+	@Retention(RetentionPolicy.RUNTIME)
+	public @interface LoadedFields {
+		/**
+		 * @return Names of stored fields to load.
+		 */
+		String[] value() default {};
+	}
+
 	/**
 	 * Mark this property as sortable.  Use the "nested" attribute to specify
 	 * whether this field should be processed in a nested Searchable.
@@ -110,4 +110,20 @@ public class SearchableBeanUtils {
 
 		return SearchableBeanUtils.ID_PROPERTY_NAME;
 	}
+
+	/**
+	 * Reflect on the specified class to determine which stored fields should
+	 * be loaded when hydrating results.
+	 * 
+	 * @param clazz Class to reflect on.
+	 * @return Array of stored field names; null if all should be loaded.
+	 */
+	public static String[] getLoadedFieldNames(
+			final Class<? extends Result> clazz) {
+		final Searchable.LoadedFields annotation = (Searchable.LoadedFields) AnnotationUtils
+				.getAnnotation(clazz, Searchable.LoadedFields.class);
+		if (null != annotation)
+			return annotation.value();
+		return null;
+	}
 }
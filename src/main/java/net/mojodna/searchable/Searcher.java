@@ -42,4 +42,40 @@ public interface Searcher<E extends Result> {
      * @throws IndexException
      */
     ResultSet<E> search(String query, Integer start, Integer count) throws IndexException;
+
+    /**
+     * Searches the index, sorting by multiple keys.  Each key is a sortable
+     * field name optionally followed by "asc" or "desc"; "score" sorts by
+     * relevance.
+     * 
+     * @param query Query to use.
+     * @param start First result to return (paging).
+     * @param count Number of results to return.
+     * @param sortFields Keys to sort by, e.g. { "date desc", "name", "score" }.
+     * @return ResultSet for the specified query.
+     * @throws IndexException
+     */
+    ResultSet<E> search(String query, Integer start, Integer count, String[] sortFields) throws IndexException;
+
+    /**
+     * Searches the index, resuming after the last result of a previous page.
+     * 
+     * @param query Query to use.
+     * @param cursor Cursor returned by ResultSet.getCursor(); null for the
+     *        first page.
+     * @param count Number of results to return.
+     * @return ResultSet for the specified query.
+     * @throws IndexException
+     */
+    ResultSet<E> searchAfter(String query, String cursor, Integer count) throws IndexException;
+
+    /**
+     * Iterates over every result of a search, fetching results a block at a
+     * time.
+     * 
+     * @param query Query to use.
+     * @return Iterator over all results for the specified query.
+     * @throws IndexException
+     */
+    ResultIterator<E> stream(String query) throws IndexException;
 }
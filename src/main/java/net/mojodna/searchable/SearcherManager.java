@@ -0,0 +1,634 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.Directory;
+
+/**
+ * Shares a reference-counted IndexSearcher over an index.  Searchers are
+ * obtained with acquire() and must be handed back with release(); a
+ * searcher is only closed once it has been replaced and every thread using
+ * it has released it.
+ * 
+ * The underlying reader is reopened when the index changes, either in the
+ * background every refreshInterval milliseconds or, if the refresh interval
+ * is 0, whenever a searcher is acquired.  Readers are opened on the
+ * directory chosen by the manager's DirectoryStrategy (e.g. a copy of the
+ * index in memory).  If a SearcherWarmer is set, each new searcher is
+ * warmed before it is published; searches continue to use the previous
+ * searcher in the meantime.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public class SearcherManager {
+	/**
+	 * A reader and searcher pair along with its reference count.
+	 */
+	private static final class Generation {
+		/** Names of all fields in the index; loaded on demand */
+		private volatile Set<String> fieldNames;
+
+		/** Names of fields other than searchable's own; loaded on demand */
+		private volatile String[] fieldsPresent;
+
+		private final long generation;
+
+		private final SearcherManager manager;
+
+		private final long openedAt = System.currentTimeMillis();
+
+		private final IndexReader reader;
+
+		/** References held; 1 for the manager itself while current */
+		private int refCount = 1;
+
+		private final IndexSearcher searcher;
+
+		/** Version of the index this generation was opened on */
+		private final long version;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param manager Manager that owns this generation.
+		 * @param reader Reader to search with.
+		 * @param generation Generation number.
+		 */
+		private Generation(final SearcherManager manager,
+				final IndexReader reader, final long generation) {
+			this.manager = manager;
+			this.reader = reader;
+			this.searcher = new IndexSearcher(reader);
+			this.generation = generation;
+			this.version = reader.getVersion();
+		}
+
+		/**
+		 * Gets the names of all fields in the index, loading them if
+		 * necessary.  Loading them twice under contention is harmless.
+		 * 
+		 * @return Unmodifiable set of field names.
+		 */
+		private Set<String> getFieldNames() {
+			if (null == fieldNames) {
+				final Set<String> names = new HashSet<String>();
+				for (final Object name : reader
+						.getFieldNames(IndexReader.FieldOption.ALL)) {
+					names.add((String) name);
+				}
+				fieldNames = Collections.unmodifiableSet(names);
+			}
+
+			return fieldNames;
+		}
+
+		/**
+		 * Gets the names of fields in the index other than those internal
+		 * to searchable, loading them if necessary.
+		 * 
+		 * @return Array of field names (not to be modified).
+		 */
+		private String[] getFieldsPresent() {
+			if (null == fieldsPresent) {
+				final Set<String> names = new HashSet<String>(getFieldNames());
+				names.removeAll(IndexSupport.PRIVATE_FIELD_NAMES);
+				fieldsPresent = names.toArray(new String[names.size()]);
+			}
+
+			return fieldsPresent;
+		}
+	}
+
+	/** Default refresh interval (1s) */
+	public static final long DEFAULT_REFRESH_INTERVAL = 1000;
+
+	/**
+	 * Generations that have not yet been closed, keyed on searcher.  This is
+	 * shared so that searchers can be released after their manager has been
+	 * closed and replaced.
+	 */
+	private static final Map<IndexSearcher, Generation> generations = new ConcurrentHashMap<IndexSearcher, Generation>();
+
+	private static final Logger log = Logger.getLogger(SearcherManager.class);
+
+	private boolean closed;
+
+	/** Current generation; null until the index is first opened */
+	private volatile Generation current;
+
+	private final Directory directory;
+
+	private long lastReopenTime;
+
+	private long lastWarmTime;
+
+	/** Number of generations that have not yet been closed */
+	private int openGenerations;
+
+	/** Lock held while reopening, so that acquires are not blocked */
+	private final Object refreshLock = new Object();
+
+	private ScheduledFuture<?> refreshTask;
+
+	private long refreshInterval;
+
+	private long reopenCount;
+
+	/** Results cached against the current generation */
+	private final ResultCache resultCache = new ResultCache();
+
+	private ScheduledExecutorService scheduler;
+
+	private final DirectoryStrategy strategy;
+
+	private long totalReopenTime;
+
+	private long totalWarmTime;
+
+	private volatile SearcherWarmer warmer;
+
+	/**
+	 * Constructor.  Uses the default refresh interval.
+	 * 
+	 * @param directory Directory containing the index.
+	 */
+	public SearcherManager(final Directory directory) {
+		this(directory, DEFAULT_REFRESH_INTERVAL);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param directory Directory containing the index.
+	 * @param refreshInterval Refresh interval in milliseconds.
+	 */
+	public SearcherManager(final Directory directory, final long refreshInterval) {
+		this(directory, refreshInterval, DirectoryStrategy.FS);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param directory Directory containing the index.
+	 * @param refreshInterval Refresh interval in milliseconds.
+	 * @param strategy Strategy the directory was opened with.
+	 */
+	public SearcherManager(final Directory directory,
+			final long refreshInterval, final DirectoryStrategy strategy) {
+		this.directory = directory;
+		this.strategy = strategy;
+		setRefreshInterval(refreshInterval);
+	}
+
+	/**
+	 * Acquires the current searcher.  Every call must be paired with a call
+	 * to release(), typically in a finally block.
+	 * 
+	 * @return Current searcher.
+	 * @throws IndexException
+	 */
+	public IndexSearcher acquire() throws IndexException {
+		if (null == current || 0 == getRefreshInterval())
+			maybeRefresh();
+
+		synchronized (this) {
+			if (closed)
+				throw new IndexException("SearcherManager has been closed.");
+
+			current.refCount++;
+			return current.searcher;
+		}
+	}
+
+	/**
+	 * Stops background refreshes and retires the current searcher.  Searchers
+	 * that are still in use remain open until they are released.
+	 * 
+	 * @throws IndexException
+	 */
+	public void close() throws IndexException {
+		final Generation retired;
+		synchronized (this) {
+			if (closed)
+				return;
+
+			closed = true;
+			if (null != refreshTask)
+				refreshTask.cancel(false);
+			if (null != scheduler)
+				scheduler.shutdown();
+			retired = current;
+			current = null;
+		}
+
+		if (null != retired)
+			decRef(retired);
+	}
+
+	/**
+	 * Drops a reference to a generation, closing it if it is no longer
+	 * referenced.
+	 * 
+	 * @param generation Generation to release.
+	 * @throws IndexException
+	 */
+	private static void decRef(final Generation generation)
+			throws IndexException {
+		synchronized (generation.manager) {
+			if (--generation.refCount > 0)
+				return;
+
+			generations.remove(generation.searcher);
+			generation.manager.openGenerations--;
+		}
+
+		log.debug("Closing generation " + generation.generation + ".");
+		try {
+			generation.searcher.close();
+			generation.reader.close();
+		} catch (final IOException e) {
+			throw new IndexException("Could not close IndexReader.", e);
+		}
+	}
+
+	/**
+	 * Gets the strategy used to open readers.
+	 * 
+	 * @return Directory strategy.
+	 */
+	public DirectoryStrategy getDirectoryStrategy() {
+		return strategy;
+	}
+
+	/**
+	 * Gets the names of all fields present in the index a managed searcher
+	 * was opened on.  These are determined once per generation rather than
+	 * per search.
+	 * 
+	 * @param searcher Searcher obtained from any SearcherManager.
+	 * @return Unmodifiable set of field names; null if the searcher is not
+	 *         managed.
+	 */
+	static Set<String> getFieldNames(final IndexSearcher searcher) {
+		final Generation generation = generations.get(searcher);
+		if (null == generation)
+			return null;
+
+		return generation.getFieldNames();
+	}
+
+	/**
+	 * Gets the names of fields present in the index a managed searcher was
+	 * opened on, excluding those internal to searchable.
+	 * 
+	 * @param searcher Searcher obtained from any SearcherManager.
+	 * @return Array of field names; null if the searcher is not managed.
+	 */
+	static String[] getFieldsPresent(final IndexSearcher searcher) {
+		final Generation generation = generations.get(searcher);
+		if (null == generation)
+			return null;
+
+		return generation.getFieldsPresent().clone();
+	}
+
+	/**
+	 * Gets the generation a managed searcher belongs to.
+	 * 
+	 * @param searcher Searcher obtained from any SearcherManager.
+	 * @return Generation; 0 if the searcher is not managed.
+	 */
+	static long getGeneration(final IndexSearcher searcher) {
+		final Generation generation = generations.get(searcher);
+		return null == generation ? 0 : generation.generation;
+	}
+
+	/**
+	 * Gets the number of the current generation.  This is incremented every
+	 * time the index is reopened.
+	 * 
+	 * @return Current generation; 0 if the index has not been opened.
+	 */
+	public long getGeneration() {
+		final Generation generation = current;
+		return null == generation ? 0 : generation.generation;
+	}
+
+	/**
+	 * Gets the age of the current generation, i.e. the maximum amount of time
+	 * that searches may lag behind a change to the index.
+	 * 
+	 * @return Age in milliseconds; 0 if the index has not been opened.
+	 */
+	public long getGenerationAge() {
+		final Generation generation = current;
+		return null == generation ? 0 : System.currentTimeMillis()
+				- generation.openedAt;
+	}
+
+	/**
+	 * Gets the time taken by the most recent reopen.
+	 * 
+	 * @return Reopen time in milliseconds.
+	 */
+	public synchronized long getLastReopenTime() {
+		return lastReopenTime;
+	}
+
+	/**
+	 * Gets the time taken to warm the most recently opened searcher.
+	 * 
+	 * @return Warm-up time in milliseconds.
+	 */
+	public synchronized long getLastWarmTime() {
+		return lastWarmTime;
+	}
+
+	/**
+	 * Gets the number of generations that are still open, including the
+	 * current one.
+	 * 
+	 * @return Number of open generations.
+	 */
+	public synchronized int getOpenGenerations() {
+		return openGenerations;
+	}
+
+	/**
+	 * Gets the refresh interval.
+	 * 
+	 * @return Refresh interval in milliseconds.
+	 */
+	public synchronized long getRefreshInterval() {
+		return refreshInterval;
+	}
+
+	/**
+	 * Gets the number of times the index has been (re)opened.
+	 * 
+	 * @return Reopen count.
+	 */
+	public synchronized long getReopenCount() {
+		return reopenCount;
+	}
+
+	/**
+	 * Gets the cache of results for this index.  It is cleared whenever the
+	 * index is reopened.
+	 * 
+	 * @return Result cache.
+	 */
+	public ResultCache getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * Gets the cache of results for the index a managed searcher was opened
+	 * on.
+	 * 
+	 * @param searcher Searcher obtained from any SearcherManager.
+	 * @return Result cache; null if the searcher is not managed.
+	 */
+	static ResultCache getResultCache(final IndexSearcher searcher) {
+		final Generation generation = generations.get(searcher);
+		return null == generation ? null : generation.manager.resultCache;
+	}
+
+	/**
+	 * Gets the total time spent reopening the index.
+	 * 
+	 * @return Total reopen time in milliseconds.
+	 */
+	public synchronized long getTotalReopenTime() {
+		return totalReopenTime;
+	}
+
+	/**
+	 * Gets the total time spent warming searchers.
+	 * 
+	 * @return Total warm-up time in milliseconds.
+	 */
+	public synchronized long getTotalWarmTime() {
+		return totalWarmTime;
+	}
+
+	/**
+	 * Gets the warmer applied to new searchers.
+	 * 
+	 * @return Searcher warmer; null if searchers are not warmed.
+	 */
+	public SearcherWarmer getWarmer() {
+		return warmer;
+	}
+
+	/**
+	 * Reopens the index if it has changed since the current searcher was
+	 * opened.  The previous searcher is retired and closed once it has been
+	 * released by all threads using it.
+	 * 
+	 * @return Whether the index was reopened.
+	 * @throws IndexException
+	 */
+	public boolean maybeRefresh() throws IndexException {
+		synchronized (refreshLock) {
+			try {
+				// compare against the index itself, as the reader may have
+				// been opened on a copy of it
+				final Generation previous = current;
+				if (null != previous
+						&& previous.version == IndexReader
+								.getCurrentVersion(directory))
+					return false;
+
+				final long begin = System.currentTimeMillis();
+				final IndexReader reader = IndexReader.open(strategy
+						.openForReading(directory));
+				final long elapsed = System.currentTimeMillis() - begin;
+
+				// warm before publishing, while the previous generation
+				// continues to serve searches
+				final Generation next = new Generation(this, reader,
+						getReopenCount() + 1);
+				final SearcherWarmer warmer = this.warmer;
+				final long warmElapsed;
+				boolean published = false;
+				try {
+					final long warmBegin = System.currentTimeMillis();
+					if (null != warmer)
+						warmer.warm(next.searcher);
+					warmElapsed = System.currentTimeMillis() - warmBegin;
+
+					synchronized (this) {
+						if (closed)
+							return false;
+
+						generations.put(next.searcher, next);
+						openGenerations++;
+						current = next;
+						resultCache.setGeneration(next.generation);
+						reopenCount++;
+						lastReopenTime = elapsed;
+						totalReopenTime += elapsed;
+						if (null != warmer) {
+							lastWarmTime = warmElapsed;
+							totalWarmTime += warmElapsed;
+						}
+					}
+					published = true;
+				} finally {
+					// don't leak generations that fail to warm or that are
+					// opened as the manager is closed
+					if (!published) {
+						try {
+							next.searcher.close();
+							reader.close();
+						} catch (final IOException e) {
+							log.warn("Could not close unpublished generation "
+									+ next.generation + ".", e);
+						}
+					}
+				}
+
+				log.debug("Opened generation " + next.generation + " in "
+						+ elapsed + "ms"
+						+ (null == warmer ? "" : " and warmed it in "
+								+ warmElapsed + "ms") + ".");
+
+				if (null != previous)
+					decRef(previous);
+
+				return true;
+			} catch (final IOException e) {
+				throw new IndexException("Could not open IndexReader.", e);
+			}
+		}
+	}
+
+	/**
+	 * Releases a searcher obtained from acquire().  Searchers may be released
+	 * after the manager they were acquired from has been closed.
+	 * 
+	 * @param searcher Searcher to release.
+	 * @throws IndexException
+	 */
+	public void release(final IndexSearcher searcher) throws IndexException {
+		releaseSearcher(searcher);
+	}
+
+	/**
+	 * Releases a searcher obtained from any SearcherManager.
+	 * 
+	 * @param searcher Searcher to release.
+	 * @throws IndexException
+	 */
+	static void releaseSearcher(final IndexSearcher searcher)
+			throws IndexException {
+		final Generation generation = generations.get(searcher);
+		if (null == generation) {
+			log.warn("Attempted to release a searcher that is not managed.");
+			return;
+		}
+
+		decRef(generation);
+	}
+
+	/**
+	 * Adds a reference to a searcher obtained from any SearcherManager, so
+	 * that it can be handed to another thread.  Each call must be paired with
+	 * a call to releaseSearcher().
+	 * 
+	 * @param searcher Searcher that is currently acquired.
+	 * @return Whether the searcher is managed (and was retained).
+	 */
+	static boolean retainSearcher(final IndexSearcher searcher) {
+		final Generation generation = generations.get(searcher);
+		if (null == generation)
+			return false;
+
+		synchronized (generation.manager) {
+			generation.refCount++;
+		}
+		return true;
+	}
+
+	/**
+	 * Sets the refresh interval.  A positive interval reopens the index in a
+	 * background thread; 0 checks for changes whenever a searcher is
+	 * acquired; a negative interval disables automatic refreshes (call
+	 * maybeRefresh() explicitly).
+	 * 
+	 * @param refreshInterval Refresh interval in milliseconds.
+	 */
+	public synchronized void setRefreshInterval(final long refreshInterval) {
+		this.refreshInterval = refreshInterval;
+
+		if (null != refreshTask) {
+			refreshTask.cancel(false);
+			refreshTask = null;
+		}
+
+		if (refreshInterval > 0 && !closed) {
+			if (null == scheduler) {
+				scheduler = Executors
+						.newSingleThreadScheduledExecutor(new ThreadFactory() {
+							public Thread newThread(final Runnable r) {
+								final Thread t = new Thread(r,
+										"searchable-refresh");
+								t.setDaemon(true);
+								return t;
+							}
+						});
+			}
+
+			refreshTask = scheduler.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					try {
+						maybeRefresh();
+					} catch (final Exception e) {
+						log.warn("Could not refresh searcher: "
+								+ e.getMessage(), e);
+					}
+				}
+			}, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Sets the warmer applied to new searchers before they are published.
+	 * With a positive refresh interval, warming happens in the background
+	 * refresh thread.
+	 * 
+	 * @param warmer Searcher warmer; null to publish searchers immediately.
+	 */
+	public void setWarmer(final SearcherWarmer warmer) {
+		this.warmer = warmer;
+	}
+}
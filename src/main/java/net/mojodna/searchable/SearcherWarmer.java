@@ -0,0 +1,191 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.FieldSortedHitQueue;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SortField;
+
+/**
+ * Prepares a newly opened searcher before SearcherManager publishes it, so
+ * that the first searches against a reopened index do not pay for loading
+ * caches.  Warming:
+ * 
+ * - loads the term index and the norms of every indexed field,
+ * - loads the sort caches of every sortable field (as used by
+ *   AbstractSearcher.createSortField()),
+ * - builds FieldOrdinals for the specified facet fields, and
+ * - runs the specified warm queries.
+ * 
+ * Warmers may be shared between managers.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public class SearcherWarmer {
+	private static final Logger log = Logger.getLogger(SearcherWarmer.class);
+
+	private volatile String[] facetFields = new String[0];
+
+	private volatile Query[] queries = new Query[0];
+
+	private volatile boolean sortableFieldsWarmed = true;
+
+	/**
+	 * Constructor.  Warms the sort caches of sortable fields.
+	 */
+	public SearcherWarmer() {
+		super();
+	}
+
+	/**
+	 * Constructor.  Warms the sort caches of sortable fields.
+	 * 
+	 * @param queries Queries to run against new searchers.
+	 */
+	public SearcherWarmer(final Query[] queries) {
+		setQueries(queries);
+	}
+
+	/**
+	 * Gets the fields whose facet ordinals are built.
+	 * 
+	 * @return Facet fields.
+	 */
+	public String[] getFacetFields() {
+		return facetFields.clone();
+	}
+
+	/**
+	 * Gets the queries run against new searchers.
+	 * 
+	 * @return Warm queries.
+	 */
+	public Query[] getQueries() {
+		return queries.clone();
+	}
+
+	/**
+	 * Are the sort caches of sortable fields warmed?
+	 * 
+	 * @return Whether sortable fields are warmed.
+	 */
+	public boolean isSortableFieldsWarmed() {
+		return sortableFieldsWarmed;
+	}
+
+	/**
+	 * Sets the fields whose facet ordinals are built, as passed to a
+	 * FacetCounter.  Sortable fields are used where present, as they are by
+	 * FacetCounter; the type field is always included.
+	 * 
+	 * @param facetFields Facet fields.
+	 */
+	public void setFacetFields(final String[] facetFields) {
+		this.facetFields = facetFields.clone();
+	}
+
+	/**
+	 * Sets the queries run against new searchers.  These should resemble
+	 * common searches, so that the parts of the index they use are read
+	 * into memory.
+	 * 
+	 * @param queries Warm queries.
+	 */
+	public void setQueries(final Query[] queries) {
+		this.queries = queries.clone();
+	}
+
+	/**
+	 * Sets whether the sort caches of sortable fields are warmed.
+	 * 
+	 * @param sortableFieldsWarmed Whether to warm sortable fields.
+	 */
+	public void setSortableFieldsWarmed(final boolean sortableFieldsWarmed) {
+		this.sortableFieldsWarmed = sortableFieldsWarmed;
+	}
+
+	/**
+	 * Warms a searcher.  Failures are logged rather than thrown, as a searcher
+	 * that could not be fully warmed is still usable.
+	 * 
+	 * @param searcher Searcher to warm.
+	 */
+	public void warm(final IndexSearcher searcher) {
+		final IndexReader reader = searcher.getIndexReader();
+		final String[] facetFields = this.facetFields;
+
+		try {
+			// loads the term index
+			final TermEnum terms = reader.terms(new Term(
+					IndexSupport.TYPE_FIELD_NAME, ""));
+			terms.close();
+
+			final Collection indexed = reader
+					.getFieldNames(IndexReader.FieldOption.INDEXED);
+			for (final Object name : indexed) {
+				reader.norms((String) name);
+			}
+
+			final Collection all = reader
+					.getFieldNames(IndexReader.FieldOption.ALL);
+			if (sortableFieldsWarmed) {
+				for (final Object name : all) {
+					final String field = (String) name;
+					if (field.startsWith(IndexSupport.SORTABLE_PREFIX)) {
+						// comparators are cached per reader by the hit queue
+						new FieldSortedHitQueue(reader,
+								new SortField[] { new SortField(field,
+										SortableComparatorSource.INSTANCE) }, 1);
+					}
+				}
+			}
+
+			for (final String field : facetFields) {
+				final String sortableField = IndexSupport.SORTABLE_PREFIX
+						+ field;
+				FieldOrdinals.getOrdinals(reader,
+						all.contains(sortableField) ? sortableField : field);
+			}
+			if (facetFields.length > 0)
+				FieldOrdinals.getOrdinals(reader, IndexSupport.TYPE_FIELD_NAME);
+		} catch (final IOException e) {
+			log.warn("Could not warm caches: " + e.getMessage(), e);
+		} catch (final RuntimeException e) {
+			// e.g. comparators that cannot parse a field's values
+			log.warn("Could not warm caches: " + e.getMessage(), e);
+		}
+
+		for (final Query query : queries) {
+			try {
+				searcher.search(query, null, 10);
+			} catch (final IOException e) {
+				log.warn("Could not run warm query " + query + ": "
+						+ e.getMessage(), e);
+			} catch (final RuntimeException e) {
+				log.warn("Could not run warm query " + query + ": "
+						+ e.getMessage(), e);
+			}
+		}
+	}
+}
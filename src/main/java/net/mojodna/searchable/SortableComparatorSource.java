@@ -0,0 +1,283 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.io.IOException;
+import java.util.BitSet;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreDocComparator;
+import org.apache.lucene.search.SortComparatorSource;
+import org.apache.lucene.search.SortField;
+
+/**
+ * Creates comparators for sortable fields.  Fields encoded by a SortableType
+ * are loaded into primitive arrays (int[] and float[] for ints and floats,
+ * long[] for longs, doubles and dates); other fields are sorted as Lucene
+ * would for SortField.AUTO.
+ * 
+ * An index may contain documents written before a field was encoded (as
+ * toString() values, or DateTools strings for dates).  Only documents
+ * carrying the type's marker term are decoded; the rest are parsed in that
+ * older format, so mixed indexes sort correctly while they are rebuilt.
+ * Values that cannot be parsed sort as 0.
+ * 
+ * Lucene caches comparators per reader, so each field is loaded once per
+ * searcher generation.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public class SortableComparatorSource implements SortComparatorSource {
+	/**
+	 * Receives the sortable value of each document as a field is loaded.
+	 */
+	private static interface Values {
+		/**
+		 * @param doc Document number.
+		 * @param value Sortable value (see SortableType.toSortable()).
+		 */
+		void set(int doc, long value);
+	}
+
+	/** Shared instance */
+	public static final SortableComparatorSource INSTANCE = new SortableComparatorSource();
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Creates a comparator for float values.
+	 * 
+	 * @param values Values, indexed by document.
+	 * @return Comparator.
+	 */
+	private static ScoreDocComparator floatComparator(final float[] values) {
+		return new ScoreDocComparator() {
+			public int compare(final ScoreDoc i, final ScoreDoc j) {
+				final float fi = values[i.doc];
+				final float fj = values[j.doc];
+				return fi < fj ? -1 : fi > fj ? 1 : 0;
+			}
+
+			public Comparable sortValue(final ScoreDoc i) {
+				return new Float(values[i.doc]);
+			}
+
+			public int sortType() {
+				return SortField.FLOAT;
+			}
+		};
+	}
+
+	/**
+	 * Creates a comparator for int values.
+	 * 
+	 * @param values Values, indexed by document.
+	 * @return Comparator.
+	 */
+	private static ScoreDocComparator intComparator(final int[] values) {
+		return new ScoreDocComparator() {
+			public int compare(final ScoreDoc i, final ScoreDoc j) {
+				final int fi = values[i.doc];
+				final int fj = values[j.doc];
+				return fi < fj ? -1 : fi > fj ? 1 : 0;
+			}
+
+			public Comparable sortValue(final ScoreDoc i) {
+				return new Integer(values[i.doc]);
+			}
+
+			public int sortType() {
+				return SortField.INT;
+			}
+		};
+	}
+
+	/**
+	 * Loads the sortable values of a typed field.  Documents without a value
+	 * (or with one that cannot be parsed) are left unset.
+	 * 
+	 * @param reader Reader to use.
+	 * @param field Field to load.
+	 * @param type Encoding used by documents carrying the type's marker.
+	 * @param values Receives the value of each document.
+	 * @throws IOException
+	 */
+	private static void load(final IndexReader reader, final String field,
+			final SortableType type, final Values values) throws IOException {
+		// documents written before the field was encoded carry no marker
+		final BitSet encoded = new BitSet(reader.maxDoc());
+		final TermDocs termDocs = reader.termDocs(new Term(
+				IndexSupport.SORTABLE_TYPE_FIELD_NAME, type.getMarker(field)));
+		try {
+			while (termDocs.next()) {
+				encoded.set(termDocs.doc());
+			}
+		} finally {
+			termDocs.close();
+		}
+
+		final TermEnum terms = reader.terms(new Term(field, ""));
+		final TermDocs docs = reader.termDocs();
+		try {
+			do {
+				final Term term = terms.term();
+				if (null == term || !field.equals(term.field()))
+					break;
+
+				final Long typed = parse(type, term.text(), true);
+				final Long legacy = parse(type, term.text(), false);
+				docs.seek(terms);
+				while (docs.next()) {
+					final Long value = encoded.get(docs.doc()) ? typed
+							: legacy;
+					if (null != value)
+						values.set(docs.doc(), value);
+				}
+			} while (terms.next());
+		} finally {
+			docs.close();
+			terms.close();
+		}
+	}
+
+	/**
+	 * Creates a comparator for values encoded as longs.
+	 * 
+	 * @param values Sortable values, indexed by document.
+	 * @param type Encoding used.
+	 * @return Comparator.
+	 */
+	private static ScoreDocComparator longComparator(final long[] values,
+			final SortableType type) {
+		return new ScoreDocComparator() {
+			public int compare(final ScoreDoc i, final ScoreDoc j) {
+				final long li = values[i.doc];
+				final long lj = values[j.doc];
+				return li < lj ? -1 : li > lj ? 1 : 0;
+			}
+
+			public Comparable sortValue(final ScoreDoc i) {
+				if (SortableType.DOUBLE == type)
+					return new Double(SortableType
+							.sortableLongToDouble(values[i.doc]));
+
+				return new Long(values[i.doc]);
+			}
+
+			public int sortType() {
+				return SortField.CUSTOM;
+			}
+		};
+	}
+
+	/**
+	 * Parses a term into a sortable value.
+	 * 
+	 * @param type Encoding of the field.
+	 * @param text Term text.
+	 * @param encoded Whether the term was written by the encoding, rather
+	 *        than before the field was encoded.
+	 * @return Sortable value; null if the term could not be parsed.
+	 */
+	private static Long parse(final SortableType type, final String text,
+			final boolean encoded) {
+		try {
+			return encoded ? type.toSortable(text) : type.parseLegacy(text);
+		} catch (final NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Creates a comparator for string values.
+	 * 
+	 * @param index Ordinals and values.
+	 * @return Comparator.
+	 */
+	private static ScoreDocComparator stringComparator(
+			final FieldCache.StringIndex index) {
+		return new ScoreDocComparator() {
+			public int compare(final ScoreDoc i, final ScoreDoc j) {
+				final int fi = index.order[i.doc];
+				final int fj = index.order[j.doc];
+				return fi < fj ? -1 : fi > fj ? 1 : 0;
+			}
+
+			public Comparable sortValue(final ScoreDoc i) {
+				return index.lookup[index.order[i.doc]];
+			}
+
+			public int sortType() {
+				return SortField.STRING;
+			}
+		};
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		return obj instanceof SortableComparatorSource;
+	}
+
+	@Override
+	public int hashCode() {
+		return SortableComparatorSource.class.hashCode();
+	}
+
+	public ScoreDocComparator newComparator(final IndexReader reader,
+			final String fieldname) throws IOException {
+		final String field = fieldname;
+		final SortableType type = SortableType.getType(reader, field);
+		if (SortableType.INT == type) {
+			final int[] values = new int[reader.maxDoc()];
+			load(reader, field, type, new Values() {
+				public void set(final int doc, final long value) {
+					values[doc] = (int) value;
+				}
+			});
+			return intComparator(values);
+		} else if (SortableType.FLOAT == type) {
+			final float[] values = new float[reader.maxDoc()];
+			load(reader, field, type, new Values() {
+				public void set(final int doc, final long value) {
+					values[doc] = SortableType.sortableIntToFloat((int) value);
+				}
+			});
+			return floatComparator(values);
+		} else if (null != type) {
+			final long[] values = new long[reader.maxDoc()];
+			load(reader, field, type, new Values() {
+				public void set(final int doc, final long value) {
+					values[doc] = value;
+				}
+			});
+			return longComparator(values, type);
+		}
+
+		// untyped fields are sorted as SortField.AUTO would
+		final Object values = FieldCache.DEFAULT.getAuto(reader, field);
+		if (values instanceof int[])
+			return intComparator((int[]) values);
+		else if (values instanceof float[])
+			return floatComparator((float[]) values);
+
+		return stringComparator((FieldCache.StringIndex) values);
+	}
+}
@@ -0,0 +1,391 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.Date;
+
+import org.apache.lucene.document.DateTools;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+
+/**
+ * Encodings for @Sortable properties with numeric or date types.  Values are
+ * written as fixed-width hexadecimal terms whose lexical order matches their
+ * natural order, so they sort correctly both as strings (e.g. in range
+ * queries or in Solr) and when loaded into primitive arrays by
+ * SortableComparatorSource.
+ * 
+ * Each document with a typed sortable field is also tagged with a term in
+ * SORTABLE_TYPE_FIELD_NAME so that searchers can tell how a field was
+ * encoded without knowing which classes were indexed.  A field name must use
+ * the same type in every class that is indexed together.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public enum SortableType {
+	/** Dates and Calendars, encoded as milliseconds since the epoch */
+	DATE {
+		@Override
+		public Comparable decode(final String term) {
+			return decodeLong(term);
+		}
+
+		@Override
+		public String encode(final Object value) {
+			if (value instanceof Calendar)
+				return encodeLong(((Calendar) value).getTimeInMillis());
+
+			return encodeLong(((Date) value).getTime());
+		}
+
+		@Override
+		public String format(final String term) {
+			try {
+				return DateTools.timeToString(decodeLong(term),
+						DateTools.Resolution.SECOND);
+			} catch (final NumberFormatException e) {
+				return term;
+			}
+		}
+
+		@Override
+		long parseLegacy(final String text) {
+			try {
+				return DateTools.stringToTime(text);
+			} catch (final ParseException e) {
+				throw new NumberFormatException("Not a date: " + text);
+			}
+		}
+
+		@Override
+		long toSortable(final String term) {
+			return decodeLong(term);
+		}
+	},
+
+	/** Doubles, encoded as sortable IEEE 754 bits */
+	DOUBLE {
+		@Override
+		public Comparable decode(final String term) {
+			return sortableLongToDouble(decodeLong(term));
+		}
+
+		@Override
+		public String encode(final Object value) {
+			return encodeLong(doubleToSortableLong(((Number) value)
+					.doubleValue()));
+		}
+
+		@Override
+		long parseLegacy(final String text) {
+			return doubleToSortableLong(Double.parseDouble(text));
+		}
+
+		@Override
+		long toSortable(final String term) {
+			return decodeLong(term);
+		}
+	},
+
+	/** Floats, encoded as sortable IEEE 754 bits */
+	FLOAT {
+		@Override
+		public Comparable decode(final String term) {
+			return sortableIntToFloat(decodeInt(term));
+		}
+
+		@Override
+		public String encode(final Object value) {
+			return encodeInt(floatToSortableInt(((Number) value).floatValue()));
+		}
+
+		@Override
+		long parseLegacy(final String text) {
+			return floatToSortableInt(Float.parseFloat(text));
+		}
+
+		@Override
+		long toSortable(final String term) {
+			return decodeInt(term);
+		}
+	},
+
+	/** Bytes, shorts, and ints */
+	INT {
+		@Override
+		public Comparable decode(final String term) {
+			return decodeInt(term);
+		}
+
+		@Override
+		public String encode(final Object value) {
+			return encodeInt(((Number) value).intValue());
+		}
+
+		@Override
+		long parseLegacy(final String text) {
+			return Integer.parseInt(text);
+		}
+
+		@Override
+		long toSortable(final String term) {
+			return decodeInt(term);
+		}
+	},
+
+	/** Longs */
+	LONG {
+		@Override
+		public Comparable decode(final String term) {
+			return decodeLong(term);
+		}
+
+		@Override
+		public String encode(final Object value) {
+			return encodeLong(((Number) value).longValue());
+		}
+
+		@Override
+		long parseLegacy(final String text) {
+			return Long.parseLong(text);
+		}
+
+		@Override
+		long toSortable(final String term) {
+			return decodeLong(term);
+		}
+	};
+
+	private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+	/**
+	 * Decodes a term written by encodeInt().
+	 * 
+	 * @param term Term text.
+	 * @return Value.
+	 * @throws NumberFormatException if the term was not encoded as an int.
+	 */
+	static int decodeInt(final String term) {
+		if (8 != term.length())
+			throw new NumberFormatException("Not an encoded int: " + term);
+
+		return (int) Long.parseLong(term, 16) ^ Integer.MIN_VALUE;
+	}
+
+	/**
+	 * Decodes a term written by encodeLong().
+	 * 
+	 * @param term Term text.
+	 * @return Value.
+	 * @throws NumberFormatException if the term was not encoded as a long.
+	 */
+	static long decodeLong(final String term) {
+		if (16 != term.length())
+			throw new NumberFormatException("Not an encoded long: " + term);
+
+		return (Long.parseLong(term.substring(0, 8), 16) << 32
+				| Long.parseLong(term.substring(8), 16))
+				^ Long.MIN_VALUE;
+	}
+
+	/**
+	 * Converts a double to a long with the same ordering.
+	 * 
+	 * @param value Value.
+	 * @return Sortable long.
+	 */
+	static long doubleToSortableLong(final double value) {
+		final long bits = Double.doubleToLongBits(value);
+		return bits ^ (bits >> 63 & Long.MAX_VALUE);
+	}
+
+	/**
+	 * Encodes an int as 8 hexadecimal digits with the sign bit flipped, so
+	 * that negative values sort before positive ones.
+	 * 
+	 * @param value Value.
+	 * @return Term text.
+	 */
+	static String encodeInt(final int value) {
+		final char[] chars = new char[8];
+		int v = value ^ Integer.MIN_VALUE;
+		for (int i = chars.length - 1; i >= 0; i--) {
+			chars[i] = DIGITS[v & 0xf];
+			v >>>= 4;
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Encodes a long as 16 hexadecimal digits with the sign bit flipped, so
+	 * that negative values sort before positive ones.
+	 * 
+	 * @param value Value.
+	 * @return Term text.
+	 */
+	static String encodeLong(final long value) {
+		final char[] chars = new char[16];
+		long v = value ^ Long.MIN_VALUE;
+		for (int i = chars.length - 1; i >= 0; i--) {
+			chars[i] = DIGITS[(int) v & 0xf];
+			v >>>= 4;
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Converts a float to an int with the same ordering.
+	 * 
+	 * @param value Value.
+	 * @return Sortable int.
+	 */
+	static int floatToSortableInt(final float value) {
+		final int bits = Float.floatToIntBits(value);
+		return bits ^ (bits >> 31 & Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Gets the encoding to use for a property type.
+	 * 
+	 * @param type Property type.
+	 * @return Encoding; null if values should be sorted as strings.
+	 */
+	public static SortableType forClass(final Class<?> type) {
+		if (Integer.class == type || Integer.TYPE == type
+				|| Short.class == type || Short.TYPE == type
+				|| Byte.class == type || Byte.TYPE == type)
+			return INT;
+		else if (Long.class == type || Long.TYPE == type)
+			return LONG;
+		else if (Float.class == type || Float.TYPE == type)
+			return FLOAT;
+		else if (Double.class == type || Double.TYPE == type)
+			return DOUBLE;
+		else if (Date.class.isAssignableFrom(type)
+				|| Calendar.class.isAssignableFrom(type))
+			return DATE;
+
+		return null;
+	}
+
+	/**
+	 * Gets the encoding used for a sortable field in an index.  An index may
+	 * also contain documents written before the field was encoded; only
+	 * documents carrying the type's marker term are encoded.
+	 * 
+	 * @param reader Reader to use.
+	 * @param field Sortable field name (including SORTABLE_PREFIX).
+	 * @return Encoding; null if the field was indexed as strings.
+	 * @throws IOException
+	 */
+	public static SortableType getType(final IndexReader reader,
+			final String field) throws IOException {
+		for (final SortableType type : values()) {
+			if (reader.docFreq(new Term(
+					IndexSupport.SORTABLE_TYPE_FIELD_NAME, type
+							.getMarker(field))) > 0)
+				return type;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Converts a long produced by doubleToSortableLong() back to a double.
+	 * 
+	 * @param value Sortable long.
+	 * @return Value.
+	 */
+	static double sortableLongToDouble(final long value) {
+		return Double.longBitsToDouble(value ^ (value >> 63 & Long.MAX_VALUE));
+	}
+
+	/**
+	 * Converts an int produced by floatToSortableInt() back to a float.
+	 * 
+	 * @param value Sortable int.
+	 * @return Value.
+	 */
+	static float sortableIntToFloat(final int value) {
+		return Float.intBitsToFloat(value ^ (value >> 31 & Integer.MAX_VALUE));
+	}
+
+	/**
+	 * Decodes a term.  Dates are decoded as milliseconds since the epoch.
+	 * 
+	 * @param term Term text.
+	 * @return Value.
+	 * @throws NumberFormatException if the term was not encoded by this type.
+	 */
+	public abstract Comparable decode(String term);
+
+	/**
+	 * Encodes a value.
+	 * 
+	 * @param value Value (of a type that this encoding was chosen for).
+	 * @return Term text.
+	 */
+	public abstract String encode(Object value);
+
+	/**
+	 * Formats a term for display.  Terms that were not encoded by this type
+	 * (i.e. written before the field was encoded) are returned as-is.
+	 * 
+	 * @param term Term text.
+	 * @return Human-readable value.
+	 */
+	public String format(final String term) {
+		try {
+			return decode(term).toString();
+		} catch (final NumberFormatException e) {
+			return term;
+		}
+	}
+
+	/**
+	 * Gets the term used to mark a field as having been encoded by this type.
+	 * 
+	 * @param field Sortable field name (including SORTABLE_PREFIX).
+	 * @return Marker term text.
+	 */
+	public String getMarker(final String field) {
+		return field + ":" + name().toLowerCase();
+	}
+
+	/**
+	 * Parses a value as it was written before sortable fields were encoded
+	 * (with toString(), or DateTools for dates) into the same sortable form
+	 * as toSortable().
+	 * 
+	 * @param text Term text.
+	 * @return Sortable value.
+	 * @throws NumberFormatException if the text could not be parsed.
+	 */
+	abstract long parseLegacy(String text);
+
+	/**
+	 * Converts an encoded term into a long with the same ordering (sortable
+	 * bits for floating point types, milliseconds for dates).
+	 * 
+	 * @param term Term text.
+	 * @return Sortable value.
+	 * @throws NumberFormatException if the term was not encoded by this type.
+	 */
+	abstract long toSortable(String term);
+}
@@ -0,0 +1,145 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+
+/**
+ * Map view of the stored fields of a Document.  Fields are looked up in the
+ * Document on demand; a copy is only made if the map is iterated over or
+ * modified.  Private and sortable fields are excluded, as are any fields not
+ * in the (optional) set of fields to load.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public class StoredFieldMap extends AbstractMap<String, String> {
+	private final Document doc;
+
+	/** Materialized copy of the fields; null until needed */
+	private Map<String, String> fields;
+
+	/** Fields to load; null for all fields */
+	private final Set<String> loadedFields;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param doc Document to expose.
+	 * @param loadedFields Names of fields to load; null for all fields.
+	 */
+	public StoredFieldMap(final Document doc, final String[] loadedFields) {
+		this.doc = doc;
+		if (null != loadedFields)
+			this.loadedFields = new HashSet<String>(Arrays
+					.asList(loadedFields));
+		else
+			this.loadedFields = null;
+	}
+
+	@Override
+	public boolean containsKey(final Object key) {
+		if (null != fields)
+			return fields.containsKey(key);
+
+		return isLoaded(key) && null != doc.getField((String) key);
+	}
+
+	@Override
+	public Set<Map.Entry<String, String>> entrySet() {
+		return getFields().entrySet();
+	}
+
+	@Override
+	public String get(final Object key) {
+		if (null != fields)
+			return fields.get(key);
+
+		if (!isLoaded(key))
+			return null;
+
+		// the last value wins, as it would when copying
+		final Field[] values = doc.getFields((String) key);
+		if (null == values || 0 == values.length)
+			return null;
+		return values[values.length - 1].stringValue();
+	}
+
+	/**
+	 * Gets a materialized copy of the loaded fields, creating it if necessary.
+	 * 
+	 * @return Loaded fields.
+	 */
+	private Map<String, String> getFields() {
+		if (null == fields) {
+			final Map<String, String> copy = new HashMap<String, String>();
+			final Enumeration e = doc.fields();
+			while (e.hasMoreElements()) {
+				final Field f = (Field) e.nextElement();
+				if (isLoaded(f.name()))
+					copy.put(f.name(), f.stringValue());
+			}
+			fields = copy;
+		}
+
+		return fields;
+	}
+
+	/**
+	 * Should the specified field be exposed?
+	 * 
+	 * @param name Field name.
+	 * @return Whether the field should be exposed.
+	 */
+	private boolean isLoaded(final Object name) {
+		if (!(name instanceof String))
+			return false;
+
+		final String fieldName = (String) name;
+		return !IndexSupport.PRIVATE_FIELD_NAMES.contains(fieldName)
+				&& !fieldName.startsWith(IndexSupport.SORTABLE_PREFIX)
+				&& (null == loadedFields || loadedFields.contains(fieldName));
+	}
+
+	@Override
+	public String put(final String key, final String value) {
+		return getFields().put(key, value);
+	}
+
+	@Override
+	public String remove(final Object key) {
+		return getFields().remove(key);
+	}
+
+	@Override
+	public int size() {
+		return getFields().size();
+	}
+
+	@Override
+	public Collection<String> values() {
+		return getFields().values();
+	}
+}
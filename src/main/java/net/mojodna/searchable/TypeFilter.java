@@ -0,0 +1,235 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.Filter;
+
+/**
+ * Filter that restricts results to documents whose type (stored in
+ * TYPE_FIELD_NAME) is the specified class or one of its subclasses or
+ * implementations.  Unlike a _type query clause, it does not participate in
+ * scoring.
+ * 
+ * Bits for each type are computed once per IndexReader and cached until the
+ * reader is garbage collected.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public class TypeFilter extends Filter {
+	/**
+	 * Cached bits, keyed on reader and then on type name (for individual
+	 * types) or Class (for types and their subtypes).  Bits are shared and
+	 * must not be modified.
+	 */
+	private static final Map<IndexReader, Map<Object, BitSet>> cache = new WeakHashMap<IndexReader, Map<Object, BitSet>>();
+
+	private static final Logger log = Logger.getLogger(TypeFilter.class);
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Gets cached bits.
+	 * 
+	 * @param reader Reader the bits were computed for.
+	 * @param key Type name or Class.
+	 * @return Cached bits; null if not cached.
+	 */
+	private static BitSet getCachedBits(final IndexReader reader,
+			final Object key) {
+		synchronized (cache) {
+			final Map<Object, BitSet> readerCache = cache.get(reader);
+			return null == readerCache ? null : readerCache.get(key);
+		}
+	}
+
+	/**
+	 * Caches bits.  Computing them twice under contention is harmless.
+	 * 
+	 * @param reader Reader the bits were computed for.
+	 * @param key Type name or Class.
+	 * @param bits Bits to cache.
+	 */
+	private static void putCachedBits(final IndexReader reader,
+			final Object key, final BitSet bits) {
+		synchronized (cache) {
+			Map<Object, BitSet> readerCache = cache.get(reader);
+			if (null == readerCache) {
+				readerCache = new HashMap<Object, BitSet>();
+				cache.put(reader, readerCache);
+			}
+			readerCache.put(key, bits);
+		}
+	}
+
+	/** Additional filter to intersect with; may be null */
+	private final Filter filter;
+
+	private final Class<?> type;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param type Type to restrict results to.
+	 */
+	public TypeFilter(final Class<?> type) {
+		this(type, null);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param type Type to restrict results to.
+	 * @param filter Additional filter to intersect with; may be null.
+	 */
+	public TypeFilter(final Class<?> type, final Filter filter) {
+		this.type = type;
+		this.filter = filter;
+	}
+
+	@Override
+	public BitSet bits(final IndexReader reader) throws IOException {
+		BitSet bits = getCachedBits(reader, type);
+		if (null == bits) {
+			bits = new BitSet(reader.maxDoc());
+
+			// the type field contains concrete class names, so find those
+			// that are assignable to this type
+			final TermEnum terms = reader.terms(new Term(
+					IndexSupport.TYPE_FIELD_NAME, ""));
+			try {
+				do {
+					final Term term = terms.term();
+					if (null == term
+							|| !IndexSupport.TYPE_FIELD_NAME.equals(term.field()))
+						break;
+
+					if (isAssignable(term.text()))
+						bits.or(getBits(reader, term.text()));
+				} while (terms.next());
+			} finally {
+				terms.close();
+			}
+
+			putCachedBits(reader, type, bits);
+		}
+
+		if (null == filter)
+			return bits;
+
+		final BitSet filtered = (BitSet) bits.clone();
+		filtered.and(filter.bits(reader));
+		return filtered;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (!(obj instanceof TypeFilter))
+			return false;
+
+		final TypeFilter other = (TypeFilter) obj;
+		return type.equals(other.type)
+				&& (null == filter ? null == other.filter : filter
+						.equals(other.filter));
+	}
+
+	/**
+	 * Gets the bits for documents of a single type.
+	 * 
+	 * @param reader Reader to use.
+	 * @param typeName Name of the type.
+	 * @return Bits for documents of the specified type.
+	 * @throws IOException
+	 */
+	private BitSet getBits(final IndexReader reader, final String typeName)
+			throws IOException {
+		BitSet bits = getCachedBits(reader, typeName);
+		if (null == bits) {
+			bits = new BitSet(reader.maxDoc());
+			final TermDocs termDocs = reader.termDocs(new Term(
+					IndexSupport.TYPE_FIELD_NAME, typeName));
+			try {
+				while (termDocs.next()) {
+					bits.set(termDocs.doc());
+				}
+			} finally {
+				termDocs.close();
+			}
+
+			putCachedBits(reader, typeName, bits);
+		}
+
+		return bits;
+	}
+
+	/**
+	 * Gets the additional filter that this is intersected with.
+	 * 
+	 * @return Additional filter; null if not set.
+	 */
+	public Filter getFilter() {
+		return filter;
+	}
+
+	/**
+	 * Gets the type that results are restricted to.
+	 * 
+	 * @return Type.
+	 */
+	public Class<?> getType() {
+		return type;
+	}
+
+	@Override
+	public int hashCode() {
+		return type.hashCode() * 31 + (null == filter ? 0 : filter.hashCode());
+	}
+
+	/**
+	 * Is the type with the specified name this type or one of its subtypes?
+	 * 
+	 * @param typeName Name of the type.
+	 * @return Whether the named type is assignable to this type.
+	 */
+	private boolean isAssignable(final String typeName) {
+		if (type.getName().equals(typeName))
+			return true;
+
+		try {
+			return type.isAssignableFrom(Class.forName(typeName, false, type
+					.getClassLoader()));
+		} catch (final ClassNotFoundException e) {
+			log.debug("Could not load indexed type: " + typeName);
+			return false;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return IndexSupport.TYPE_FIELD_NAME + ":" + type.getName()
+				+ (null == filter ? "" : " " + filter);
+	}
+}
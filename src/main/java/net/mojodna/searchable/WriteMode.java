@@ -0,0 +1,41 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+/**
+ * Durability and visibility contract for writes made through an
+ * AbstractIndexer.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public enum WriteMode {
+	/**
+	 * Every save and delete is applied and flushed before returning.  Changes
+	 * are durable and visible to newly opened readers immediately.  This is
+	 * the default.
+	 */
+	IMMEDIATE,
+
+	/**
+	 * Saves and deletes are buffered in memory, keyed on the compound id, so
+	 * a save replaces any pending change to the same document.  Buffered
+	 * changes are applied (deletes first, then adds) when the configured
+	 * document or memory threshold is reached, and are only guaranteed to be
+	 * durable and visible once commit() or close() has returned.  Changes
+	 * that are still buffered when the JVM exits are lost.
+	 */
+	BUFFERED
+}
@@ -0,0 +1,94 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable.accessor;
+
+import java.beans.PropertyDescriptor;
+
+import org.apache.commons.beanutils.PropertyUtils;
+
+/**
+ * Creates accessors that delegate to commons-beanutils' PropertyUtils.  This
+ * is slower than MethodPropertyAccessorFactory, but honors any custom
+ * introspection configured for PropertyUtils.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public class BeanUtilsPropertyAccessorFactory extends PropertyAccessorFactory {
+	/**
+	 * Accessor backed by PropertyUtils.
+	 */
+	private static class BeanUtilsPropertyAccessor implements PropertyAccessor {
+		private final String name;
+
+		private final boolean readable;
+
+		private final Class<?> type;
+
+		private final boolean writable;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param descriptor Property descriptor.
+		 */
+		public BeanUtilsPropertyAccessor(final PropertyDescriptor descriptor) {
+			this.name = descriptor.getName();
+			this.type = descriptor.getPropertyType();
+			this.readable = null != descriptor.getReadMethod();
+			this.writable = null != descriptor.getWriteMethod();
+		}
+
+		public Object get(final Object bean) throws PropertyAccessException {
+			try {
+				return PropertyUtils.getProperty(bean, name);
+			} catch (final Exception e) {
+				throw new PropertyAccessException("Unable to read property "
+						+ name + ".", e);
+			}
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Class<?> getType() {
+			return type;
+		}
+
+		public boolean isReadable() {
+			return readable;
+		}
+
+		public boolean isWritable() {
+			return writable;
+		}
+
+		public void set(final Object bean, final Object value)
+				throws PropertyAccessException {
+			try {
+				PropertyUtils.setSimpleProperty(bean, name, value);
+			} catch (final Exception e) {
+				throw new PropertyAccessException("Unable to write property "
+						+ name + ".", e);
+			}
+		}
+	}
+
+	@Override
+	public PropertyAccessor getAccessor(final PropertyDescriptor descriptor) {
+		return new BeanUtilsPropertyAccessor(descriptor);
+	}
+}
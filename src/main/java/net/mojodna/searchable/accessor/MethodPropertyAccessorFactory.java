@@ -0,0 +1,134 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable.accessor;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Creates accessors that invoke a property's read and write methods
+ * directly.  Methods are resolved once and made accessible up front, so
+ * repeated calls skip the name-based lookups performed by PropertyUtils and
+ * are eligible for the JVM's generated (inflated) reflection accessors.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public class MethodPropertyAccessorFactory extends PropertyAccessorFactory {
+	/**
+	 * Accessor backed by resolved Methods.
+	 */
+	private static class MethodPropertyAccessor implements PropertyAccessor {
+		private final String name;
+
+		private final Method readMethod;
+
+		private final Class<?> type;
+
+		private final Method writeMethod;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param descriptor Property descriptor.
+		 */
+		public MethodPropertyAccessor(final PropertyDescriptor descriptor) {
+			this.name = descriptor.getName();
+			this.type = descriptor.getPropertyType();
+			this.readMethod = makeAccessible(descriptor.getReadMethod());
+			this.writeMethod = makeAccessible(descriptor.getWriteMethod());
+		}
+
+		public Object get(final Object bean) throws PropertyAccessException {
+			if (null == readMethod)
+				throw new PropertyAccessException("Property " + name
+						+ " is not readable.");
+
+			try {
+				return readMethod.invoke(bean);
+			} catch (final IllegalAccessException e) {
+				throw new PropertyAccessException("Unable to read property "
+						+ name + ".", e);
+			} catch (final IllegalArgumentException e) {
+				// the bean does not declare this property
+				throw new PropertyAccessException("Unable to read property "
+						+ name + ".", e);
+			} catch (final InvocationTargetException e) {
+				throw new PropertyAccessException("Unable to read property "
+						+ name + ".", e.getCause());
+			}
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Class<?> getType() {
+			return type;
+		}
+
+		public boolean isReadable() {
+			return null != readMethod;
+		}
+
+		public boolean isWritable() {
+			return null != writeMethod;
+		}
+
+		public void set(final Object bean, final Object value)
+				throws PropertyAccessException {
+			if (null == writeMethod)
+				throw new PropertyAccessException("Property " + name
+						+ " is not writable.");
+
+			try {
+				writeMethod.invoke(bean, value);
+			} catch (final IllegalAccessException e) {
+				throw new PropertyAccessException("Unable to write property "
+						+ name + ".", e);
+			} catch (final IllegalArgumentException e) {
+				throw new PropertyAccessException("Unable to write property "
+						+ name + ".", e);
+			} catch (final InvocationTargetException e) {
+				throw new PropertyAccessException("Unable to write property "
+						+ name + ".", e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Make a method accessible, allowing public methods on non-public classes
+	 * to be invoked.
+	 * 
+	 * @param method Method to make accessible.
+	 * @return The same method.
+	 */
+	private static Method makeAccessible(final Method method) {
+		if (null != method) {
+			try {
+				method.setAccessible(true);
+			} catch (final SecurityException e) {
+				// fall back to normal access checks
+			}
+		}
+		return method;
+	}
+
+	@Override
+	public PropertyAccessor getAccessor(final PropertyDescriptor descriptor) {
+		return new MethodPropertyAccessor(descriptor);
+	}
+}
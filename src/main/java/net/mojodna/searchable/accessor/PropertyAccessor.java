@@ -0,0 +1,70 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable.accessor;
+
+/**
+ * Reads and writes a single property of a bean.  Accessors are resolved once
+ * per class and property and may be shared between threads.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public interface PropertyAccessor {
+	/**
+	 * Reads the value of this property.
+	 * 
+	 * @param bean Bean to read from.
+	 * @return Property value.
+	 * @throws PropertyAccessException
+	 */
+	Object get(Object bean) throws PropertyAccessException;
+
+	/**
+	 * Gets the name of this property.
+	 * 
+	 * @return Property name.
+	 */
+	String getName();
+
+	/**
+	 * Gets the type of this property.
+	 * 
+	 * @return Property type.
+	 */
+	Class<?> getType();
+
+	/**
+	 * Can this property be read?
+	 * 
+	 * @return Whether this property has a read method.
+	 */
+	boolean isReadable();
+
+	/**
+	 * Can this property be written?
+	 * 
+	 * @return Whether this property has a write method.
+	 */
+	boolean isWritable();
+
+	/**
+	 * Writes the value of this property.
+	 * 
+	 * @param bean Bean to write to.
+	 * @param value Value to write.
+	 * @throws PropertyAccessException
+	 */
+	void set(Object bean, Object value) throws PropertyAccessException;
+}
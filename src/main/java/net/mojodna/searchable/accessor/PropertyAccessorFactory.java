@@ -0,0 +1,99 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable.accessor;
+
+import java.beans.PropertyDescriptor;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.beanutils.PropertyUtils;
+
+/**
+ * Creates PropertyAccessors.  The default factory is used when compiling
+ * IndexPlans and when hydrating search results; replace it with
+ * setDefault(PropertyAccessorFactory) before indexing or searching begins.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public abstract class PropertyAccessorFactory {
+	private static volatile PropertyAccessorFactory defaultFactory = new MethodPropertyAccessorFactory();
+
+	/**
+	 * Gets the default factory.
+	 * 
+	 * @return Default factory.
+	 */
+	public static PropertyAccessorFactory getDefault() {
+		return defaultFactory;
+	}
+
+	/**
+	 * Sets the default factory.
+	 * 
+	 * @param factory Factory to use by default.
+	 */
+	public static void setDefault(final PropertyAccessorFactory factory) {
+		if (null == factory)
+			throw new IllegalArgumentException("Factory must not be null.");
+
+		defaultFactory = factory;
+	}
+
+	private final Map<String, PropertyAccessor> accessorCache = new ConcurrentHashMap<String, PropertyAccessor>();
+
+	private final Map<String, String> accessorMissCache = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * Gets an accessor for a named property, creating it if necessary.
+	 * 
+	 * @param clazz Class declaring the property.
+	 * @param propertyName Property name.
+	 * @return Accessor for the specified property; null if not present.
+	 */
+	public PropertyAccessor getAccessor(final Class<?> clazz,
+			final String propertyName) {
+		final String key = clazz.getName() + "#" + propertyName;
+
+		final PropertyAccessor accessor = accessorCache.get(key);
+		if (null != accessor) {
+			return accessor;
+		}
+
+		if (accessorMissCache.containsKey(key)) {
+			return null;
+		}
+
+		for (final PropertyDescriptor d : PropertyUtils
+				.getPropertyDescriptors(clazz)) {
+			if (d.getName().equals(propertyName)) {
+				final PropertyAccessor created = getAccessor(d);
+				accessorCache.put(key, created);
+				return created;
+			}
+		}
+
+		accessorMissCache.put(key, key);
+		return null;
+	}
+
+	/**
+	 * Creates an accessor for the specified property.
+	 * 
+	 * @param descriptor Property descriptor.
+	 * @return New accessor.
+	 */
+	public abstract PropertyAccessor getAccessor(PropertyDescriptor descriptor);
+}
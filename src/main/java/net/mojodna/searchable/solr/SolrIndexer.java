@@ -15,14 +15,16 @@
  */
 package net.mojodna.searchable.solr;
 
-import java.beans.PropertyDescriptor;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Stack;
 
 import net.mojodna.searchable.AbstractBeanIndexer;
 import net.mojodna.searchable.BatchIndexer;
 import net.mojodna.searchable.IndexException;
+import net.mojodna.searchable.IndexPlan;
 import net.mojodna.searchable.IndexSupport;
 import net.mojodna.searchable.IndexingException;
 import net.mojodna.searchable.Searchable;
@@ -46,10 +48,27 @@ import org.jdom.output.XMLOutputter;
  */
 public class SolrIndexer extends AbstractBeanIndexer implements
 		BatchIndexer<Searchable> {
+	/** Default number of documents or deletes to send per request */
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
 	private static final Logger log = Logger.getLogger(SolrIndexer.class);
 
+	/** Maximum number of clauses in a single delete query */
+	private static final int MAX_DELETE_CLAUSES = 1000;
+
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
 	private HttpClient httpClient;
 
+	/** Documents pending during a bulk operation */
+	private Element pendingAdd;
+
+	/** Number of documents pending during a bulk operation */
+	private int pendingAddCount;
+
+	/** Compound ids pending deletion during a bulk operation */
+	private List<String> pendingDeletes = new LinkedList<String>();
+
 	private String solrHost = "localhost";
 
 	private String solrPath = "/solr/update";
@@ -60,26 +79,66 @@ public class SolrIndexer extends AbstractBeanIndexer implements
 		return doAdd(bean);
 	}
 
+	/**
+	 * Adds beans, sending up to batchSize documents per request and
+	 * committing once.
+	 */
+	public void addAll(final Iterable<? extends Searchable> beans)
+			throws IndexException {
+		doAddAll(beans);
+	}
+
+	/**
+	 * Prevent _range-* fields from being created.
+	 */
+	@Override
+	protected Document addRangeFields(final Document doc,
+			final String fieldname, final Object prop,
+			final IndexPlan.Property property, final Stack<String> stack) {
+		return doc;
+	}
+
 	/**
 	 * Prevent _sortable-* fields from being created.
 	 */
 	@Override
 	protected Document addSortableFields(final Document doc,
-			final Searchable bean, final PropertyDescriptor descriptor,
+			final Searchable bean, final IndexPlan.Property property,
 			final Stack<String> stack) {
 		return doc;
 	}
 
+	/**
+	 * Sends anything left pending by a bulk operation and commits unless
+	 * running in batch mode.
+	 */
+	@Override
+	protected void applyBulk() throws IndexingException {
+		synchronized (this) {
+			postPendingAdd();
+			postPendingDeletes();
+		}
+
+		if (!isBatchMode()) {
+			commit();
+		}
+	}
+
 	/**
 	 * Commit pending documents to the index.
-	 * @throws IOException
+	 * @throws IndexingException
 	 */
-	protected void commit() throws IOException {
-		final PostMethod post = new PostMethod(solrPath);
-		post.setRequestEntity(new StringRequestEntity("<commit waitFlush=\"false\" waitSearcher=\"false\"/>", "text/xml",
-				"UTF-8"));
-		log.debug("Committing.");
-		getHttpClient().executeMethod(post);
+	@Override
+	public void commit() throws IndexingException {
+		try {
+			final PostMethod post = new PostMethod(solrPath);
+			post.setRequestEntity(new StringRequestEntity("<commit waitFlush=\"false\" waitSearcher=\"false\"/>", "text/xml",
+					"UTF-8"));
+			log.debug("Committing.");
+			getHttpClient().executeMethod(post);
+		} catch (final IOException e) {
+			throw new IndexingException(e);
+		}
 	}
 
 	public void delete(final Searchable bean) throws IndexException {
@@ -88,33 +147,37 @@ public class SolrIndexer extends AbstractBeanIndexer implements
 
 	@Override
 	protected void delete(final Serializable key) throws IndexingException {
-		final Element delete = new Element("delete").addContent(new Element(
-				"query").addContent(IndexSupport.COMPOUND_ID_FIELD_NAME + ":" + key.toString()));
+		if (isBulk()) {
+			synchronized (this) {
+				pendingDeletes.add(key.toString());
+				if (pendingDeletes.size() >= Math.min(batchSize,
+						MAX_DELETE_CLAUSES)) {
+					postPendingDeletes();
+				}
+			}
+			return;
+		}
 
-		// now do something with the delete block
-		try {
-			final XMLOutputter out = new XMLOutputter(Format.getPrettyFormat());
-			final String deleteString = out.outputString(delete);
-			final PostMethod post = new PostMethod(solrPath);
-			post.setRequestEntity(new StringRequestEntity(deleteString,
-					"text/xml", "UTF-8"));
-			log.debug("Deleting:\n" + deleteString);
-			getHttpClient().executeMethod(post);
+		post(new Element("delete").addContent(new Element("query")
+				.addContent(IndexSupport.COMPOUND_ID_FIELD_NAME + ":"
+						+ key.toString())));
 
-			if (!isBatchMode()) {
-				commit();
-			}
-		} catch (final IOException e) {
-			throw new IndexingException(e);
+		if (!isBatchMode()) {
+			commit();
 		}
 	}
 
+	/**
+	 * Deletes beans, combining up to batchSize deletes per request and
+	 * committing once.
+	 */
+	public void deleteAll(final Iterable<? extends Searchable> beans)
+			throws IndexException {
+		doDeleteAll(beans);
+	}
+
 	public void flush() throws IndexingException {
-		try {
-			commit();
-		} catch (IOException e) {
-			throw new IndexingException(e);
-		}
+		commit();
 	}
 
 	private HttpClient getHttpClient() throws URIException {
@@ -138,31 +201,97 @@ public class SolrIndexer extends AbstractBeanIndexer implements
 	}
 
 	/**
-	 * Serialize the Document and hand it to Solr.
+	 * Serialize an update block and POST it to Solr.
+	 * 
+	 * @param update Update block (add or delete).
+	 * @throws IndexingException
 	 */
-	@Override
-	protected void save(final Document doc) throws IndexingException {
-		final Element add = new Element("add");
-		add.addContent(DocumentConverter.convert(doc));
-
-		// now do something with the add block
+	private void post(final Element update) throws IndexingException {
 		try {
 			final XMLOutputter out = new XMLOutputter(Format.getPrettyFormat());
-			final String addString = out.outputString(add);
+			final String updateString = out.outputString(update);
 			final PostMethod post = new PostMethod(solrPath);
-			post.setRequestEntity(new StringRequestEntity(addString,
+			post.setRequestEntity(new StringRequestEntity(updateString,
 					"text/xml", "UTF-8"));
-			log.debug("Adding:\n" + addString);
+			if (log.isDebugEnabled())
+				log.debug("Posting:\n" + updateString);
 			getHttpClient().executeMethod(post);
-
-			if (!isBatchMode()) {
-				commit();
-			}
 		} catch (final IOException e) {
 			throw new IndexingException(e);
 		}
 	}
 
+	/**
+	 * Send documents pending from a bulk operation in a single add block.
+	 * 
+	 * @throws IndexingException
+	 */
+	private void postPendingAdd() throws IndexingException {
+		if (null != pendingAdd) {
+			log.debug("Adding " + pendingAddCount + " document(s).");
+			final Element add = pendingAdd;
+			pendingAdd = null;
+			pendingAddCount = 0;
+			post(add);
+		}
+	}
+
+	/**
+	 * Send deletes pending from a bulk operation as a single query.
+	 * 
+	 * @throws IndexingException
+	 */
+	private void postPendingDeletes() throws IndexingException {
+		if (!pendingDeletes.isEmpty()) {
+			final StringBuffer query = new StringBuffer();
+			for (final String key : pendingDeletes) {
+				if (query.length() > 0)
+					query.append(" OR ");
+				query.append(IndexSupport.COMPOUND_ID_FIELD_NAME).append(":\"")
+						.append(key).append("\"");
+			}
+			log.debug("Deleting " + pendingDeletes.size() + " document(s).");
+			pendingDeletes.clear();
+			post(new Element("delete").addContent(new Element("query")
+					.addContent(query.toString())));
+		}
+	}
+
+	/**
+	 * Serialize the Document and hand it to Solr.  During a bulk operation,
+	 * documents are collected and sent batchSize at a time.
+	 */
+	@Override
+	protected void save(final Document doc) throws IndexingException {
+		if (isBulk()) {
+			synchronized (this) {
+				if (null == pendingAdd)
+					pendingAdd = new Element("add");
+				pendingAdd.addContent(DocumentConverter.convert(doc));
+				if (++pendingAddCount >= batchSize) {
+					postPendingAdd();
+				}
+			}
+			return;
+		}
+
+		post(new Element("add").addContent(DocumentConverter.convert(doc)));
+
+		if (!isBatchMode()) {
+			commit();
+		}
+	}
+
+	/**
+	 * Set the number of documents or deletes to send per request during bulk
+	 * operations.
+	 * 
+	 * @param batchSize Batch size.
+	 */
+	public void setBatchSize(final int batchSize) {
+		this.batchSize = batchSize;
+	}
+
 	/**
 	 * Provide an HttpClient to use for making requests.
 	 * 
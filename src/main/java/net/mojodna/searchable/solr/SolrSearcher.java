@@ -21,25 +21,29 @@ import java.util.Iterator;
 import java.util.List;
 
 import net.mojodna.searchable.GenericResult;
+import net.mojodna.searchable.HydrationPlan;
 import net.mojodna.searchable.IndexException;
 import net.mojodna.searchable.IndexSupport;
 import net.mojodna.searchable.IndexingException;
 import net.mojodna.searchable.Result;
+import net.mojodna.searchable.ResultHydrator;
+import net.mojodna.searchable.ResultIterator;
 import net.mojodna.searchable.ResultSet;
 import net.mojodna.searchable.ResultSetImpl;
+import net.mojodna.searchable.SearchCursor;
 import net.mojodna.searchable.SearchException;
 import net.mojodna.searchable.Searchable;
-import net.mojodna.searchable.SearchableBeanUtils;
 import net.mojodna.searchable.Searcher;
+import net.mojodna.searchable.accessor.PropertyAccessor;
+import net.mojodna.searchable.accessor.PropertyAccessorFactory;
 
-import org.apache.commons.beanutils.ConvertUtils;
-import org.apache.commons.beanutils.PropertyUtils;
 import org.apache.commons.httpclient.HostConfiguration;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.NameValuePair;
 import org.apache.commons.httpclient.URI;
 import org.apache.commons.httpclient.URIException;
 import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.jdom.Document;
 import org.jdom.Element;
@@ -54,6 +58,8 @@ import org.jdom.input.SAXBuilder;
 public class SolrSearcher implements Searcher<Searchable> {
     private HttpClient httpClient;
 
+    private ResultHydrator resultHydrator;
+
     private String solrHost = "localhost";
 
     private String solrPath = "/solr/select";
@@ -67,6 +73,15 @@ public class SolrSearcher implements Searcher<Searchable> {
     }
 
     public ResultSet search(final String query, final Integer start, final Integer count) throws IndexException {
+        return search(query, start, count, null);
+    }
+
+    /**
+     * Sort keys are passed to Solr as its sort parameter.  Fields are sorted
+     * on as named, so they must be sortable in Solr's schema; "score" sorts
+     * by relevance.
+     */
+    public ResultSet search(final String query, final Integer start, final Integer count, final String[] sortFields) throws IndexException {
         try {
             final GetMethod get = new GetMethod(solrPath);
             final List<NameValuePair> params = new ArrayList<NameValuePair>();
@@ -77,6 +92,10 @@ public class SolrSearcher implements Searcher<Searchable> {
             if (null != count) {
                 params.add(new NameValuePair("rows", count.toString()));
             }
+            final String sort = createSort(sortFields);
+            if (null != sort) {
+                params.add(new NameValuePair("sort", sort));
+            }
             params.add(new NameValuePair("version", "2.1"));
             params.add(new NameValuePair("indent", "on"));
             get.setQueryString(params.toArray(new NameValuePair[] {}));
@@ -111,16 +130,9 @@ public class SolrSearcher implements Searcher<Searchable> {
                 
                 try {
                     // attempt to instantiate an instance of the specified class
-                    try {
-                        if (null != className) {
-                            final Object o = Class.forName(className).newInstance();
-                            if (o instanceof Result) {
-                                log.debug("Created new instance of: " + className);
-                                result = (Result) o;
-                            }
-                        }
-                    } catch (final ClassNotFoundException e) {
-                        // class was invalid, or something
+                    final HydrationPlan plan = null == className ? null : HydrationPlan.getPlan(className);
+                    if (null != plan) {
+                        result = plan.newInstance();
                     }
 
                     // fall back to a GenericResult as a container
@@ -129,22 +141,21 @@ public class SolrSearcher implements Searcher<Searchable> {
 
                     if (result instanceof Searchable) {
                         // special handling for searchables
-                        final String idField = SearchableBeanUtils
-                                .getIdPropertyName(((Searchable) result).getClass());
+                        final String idField = plan.getIdPropertyName();
 
                         // attempt to load the id and set the id property on the Searchable appropriately
                         if (null != id) {
                             log.debug("Setting id to '" + id + "' of type "
                                     + idType);
-                            try {
-                                final Object idValue = ConvertUtils.convert(id,
-                                        Class.forName(idType));
-                                PropertyUtils.setSimpleProperty(result, idField,
-                                        idValue);
-                            } catch (final ClassNotFoundException e) {
-                                log
-                                        .warn("Id type was not a class that could be found: "
-                                                + idType);
+                            final Object idValue = HydrationPlan.convertId(id, idType);
+                            if (null != idValue) {
+                                final PropertyAccessor idAccessor = PropertyAccessorFactory
+                                        .getDefault().getAccessor(result.getClass(), idField);
+                                if (null == idAccessor) {
+                                    throw new SearchException("Unknown id property '" + idField
+                                            + "' on " + result.getClass().getName() + ".");
+                                }
+                                idAccessor.set(result, idValue);
                             }
                         } else {
                             log.warn("Id value was null.");
@@ -166,6 +177,10 @@ public class SolrSearcher implements Searcher<Searchable> {
                 resultSet.add(result);
             }
             
+            if (null != resultHydrator) {
+                resultSet.hydrate(resultHydrator);
+            }
+
             return resultSet;
         } catch (final JDOMException e) {
             throw new IndexingException(e);
@@ -174,6 +189,98 @@ public class SolrSearcher implements Searcher<Searchable> {
         }
     }
 
+    /**
+     * Solr does not expose sort values, so cursors issued by this searcher
+     * only record the offset of the next page.
+     */
+    public ResultSet searchAfter(final String query, final String cursor, final Integer count) throws IndexException {
+        final int start = null == cursor ? 0 : SearchCursor.parse(cursor).getOffset();
+        final ResultSetImpl resultSet = (ResultSetImpl) search(query, start, count);
+        final int next = start + resultSet.count();
+        if (resultSet.count() > 0 && next < resultSet.size()) {
+            resultSet.setCursor(new SearchCursor(next).toString());
+        }
+        return resultSet;
+    }
+
+    /**
+     * Converts sort keys into a Solr sort parameter.
+     * 
+     * @param sortFields Sort keys.
+     * @return Solr sort parameter; null if no keys were specified.
+     * @throws SearchException
+     */
+    protected String createSort(final String[] sortFields) throws SearchException {
+        if (null == sortFields) {
+            return null;
+        }
+
+        final StringBuffer sort = new StringBuffer();
+        for (final String sortField : sortFields) {
+            if (StringUtils.isBlank(sortField)) {
+                continue;
+            }
+
+            final String[] parts = StringUtils.split(sortField.trim());
+            if (parts.length > 2 || (parts.length == 2 && !"asc".equalsIgnoreCase(parts[1]) && !"desc".equalsIgnoreCase(parts[1]))) {
+                throw new SearchException("Invalid sort key: '" + sortField + "'.");
+            }
+
+            if (sort.length() > 0) {
+                sort.append(",");
+            }
+            if ("score".equals(parts[0])) {
+                sort.append("score ").append(parts.length == 2 ? parts[1].toLowerCase() : "desc");
+            } else {
+                // SolrIndexer does not create _sort- fields; sortability is
+                // up to Solr's schema
+                sort.append(parts[0]).append(" ").append(parts.length == 2 ? parts[1].toLowerCase() : "asc");
+            }
+        }
+
+        return sort.length() > 0 ? sort.toString() : null;
+    }
+
+    public ResultIterator stream(final String query) throws IndexException {
+        return stream(query, ResultIterator.DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Iterates over every result of a search, requesting blockSize results
+     * from Solr at a time.
+     * 
+     * @param query
+     *            Query to use.
+     * @param blockSize
+     *            Number of results to request at a time.
+     * @return Iterator over all results.
+     * @throws IndexException
+     */
+    public ResultIterator stream(final String query, final int blockSize) throws IndexException {
+        return new ResultIterator<Result>() {
+            private int numFound = -1;
+
+            private int start = 0;
+
+            @Override
+            @SuppressWarnings("unchecked")
+            protected List<Result> fetchBlock() throws IndexException {
+                if (numFound >= 0 && start >= numFound) {
+                    return new ArrayList<Result>();
+                }
+
+                final ResultSet<Result> page = search(query, start, Math.max(1, blockSize));
+                numFound = page.size();
+                final List<Result> results = page.getResults();
+                for (int i = 0; i < results.size(); i++) {
+                    results.get(i).setRanking(start + i);
+                }
+                start += results.size();
+                return results;
+            }
+        };
+    }
+
     /**
      * @param args
      * @throws Exception
@@ -194,6 +301,16 @@ public class SolrSearcher implements Searcher<Searchable> {
         this.httpClient = httpClient;
     }
 
+    /**
+     * Provide a ResultHydrator to load complete results with.
+     * 
+     * @param resultHydrator
+     *            Result hydrator; null to return placeholders.
+     */
+    public void setResultHydrator(final ResultHydrator resultHydrator) {
+        this.resultHydrator = resultHydrator;
+    }
+
     /**
      * Set the hostname of the Solr server.
      * 
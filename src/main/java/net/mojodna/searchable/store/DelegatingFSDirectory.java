@@ -0,0 +1,112 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable.store;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.Lock;
+
+/**
+ * Directory that delegates everything but reading to an FSDirectory, so that
+ * subclasses can change how files are read without changing how they are
+ * written or locked.  Indexes written through a subclass are identical to
+ * those written through FSDirectory.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public abstract class DelegatingFSDirectory extends Directory {
+	private final FSDirectory delegate;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param path Index path.
+	 * @throws IOException
+	 */
+	protected DelegatingFSDirectory(final File path) throws IOException {
+		this.delegate = FSDirectory.getDirectory(path, false);
+	}
+
+	@Override
+	public void close() throws IOException {
+		delegate.close();
+	}
+
+	@Override
+	public IndexOutput createOutput(final String name) throws IOException {
+		return delegate.createOutput(name);
+	}
+
+	@Override
+	public void deleteFile(final String name) throws IOException {
+		delegate.deleteFile(name);
+	}
+
+	@Override
+	public boolean fileExists(final String name) throws IOException {
+		return delegate.fileExists(name);
+	}
+
+	@Override
+	public long fileLength(final String name) throws IOException {
+		return delegate.fileLength(name);
+	}
+
+	@Override
+	public long fileModified(final String name) throws IOException {
+		return delegate.fileModified(name);
+	}
+
+	/**
+	 * Gets a file within this directory.
+	 * 
+	 * @param name File name.
+	 * @return File.
+	 */
+	protected File getFile(final String name) {
+		return new File(delegate.getFile(), name);
+	}
+
+	@Override
+	public String[] list() throws IOException {
+		return delegate.list();
+	}
+
+	@Override
+	public Lock makeLock(final String name) {
+		return delegate.makeLock(name);
+	}
+
+	@Override
+	public void renameFile(final String from, final String to)
+			throws IOException {
+		delegate.renameFile(from, to);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getName() + "@" + delegate.getFile();
+	}
+
+	@Override
+	public void touchFile(final String name) throws IOException {
+		delegate.touchFile(name);
+	}
+}
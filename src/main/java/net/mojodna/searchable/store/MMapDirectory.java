@@ -0,0 +1,166 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.lucene.store.IndexInput;
+
+/**
+ * Directory that reads files through memory-mapped buffers.  Reads are
+ * served from the operating system's page cache without system calls or
+ * locking, which suits indexes that fit comfortably in memory.
+ * 
+ * Mapped files are unmapped when their buffers are garbage collected rather
+ * than when they are closed, so files deleted by a merge continue to occupy
+ * disk space until then.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public class MMapDirectory extends DelegatingFSDirectory {
+	/**
+	 * Reads a file mapped as one or more chunks.  Clones duplicate the
+	 * buffers, so each has its own position.
+	 */
+	private static final class MMapIndexInput extends IndexInput {
+		private ByteBuffer[] buffers;
+
+		/** Index of the buffer being read */
+		private int current;
+
+		private final long length;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param path File to map.
+		 * @throws IOException
+		 */
+		private MMapIndexInput(final File path) throws IOException {
+			final RandomAccessFile file = new RandomAccessFile(path, "r");
+			try {
+				length = file.length();
+				final FileChannel channel = file.getChannel();
+
+				// the last chunk may be empty, so that seeking to the end of
+				// the file is always possible
+				buffers = new ByteBuffer[(int) (length / CHUNK_SIZE) + 1];
+				for (int i = 0; i < buffers.length; i++) {
+					final long start = i * (long) CHUNK_SIZE;
+					buffers[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+							start, Math.min(CHUNK_SIZE, length - start));
+				}
+			} finally {
+				// mappings remain valid once the file has been closed
+				file.close();
+			}
+		}
+
+		@Override
+		public Object clone() {
+			final MMapIndexInput clone = (MMapIndexInput) super.clone();
+			clone.buffers = new ByteBuffer[buffers.length];
+			for (int i = 0; i < buffers.length; i++) {
+				clone.buffers[i] = buffers[i].duplicate();
+			}
+			return clone;
+		}
+
+		@Override
+		public void close() {
+			// buffers are unmapped when they are garbage collected
+		}
+
+		@Override
+		public long getFilePointer() {
+			return current * (long) CHUNK_SIZE + buffers[current].position();
+		}
+
+		@Override
+		public long length() {
+			return length;
+		}
+
+		@Override
+		public byte readByte() throws IOException {
+			while (!buffers[current].hasRemaining()) {
+				nextBuffer();
+			}
+			return buffers[current].get();
+		}
+
+		@Override
+		public void readBytes(final byte[] b, int offset, int len)
+				throws IOException {
+			while (len > 0) {
+				while (!buffers[current].hasRemaining()) {
+					nextBuffer();
+				}
+
+				final int count = Math.min(len, buffers[current].remaining());
+				buffers[current].get(b, offset, count);
+				offset += count;
+				len -= count;
+			}
+		}
+
+		@Override
+		public void seek(final long pos) throws IOException {
+			if (pos < 0 || pos > length)
+				throw new IOException("seek past EOF");
+
+			current = (int) (pos / CHUNK_SIZE);
+			buffers[current].position((int) (pos % CHUNK_SIZE));
+		}
+
+		/**
+		 * Moves on to the start of the next buffer.
+		 * 
+		 * @throws IOException if there are no more buffers.
+		 */
+		private void nextBuffer() throws IOException {
+			if (current + 1 >= buffers.length)
+				throw new IOException("read past EOF");
+
+			buffers[++current].position(0);
+		}
+	}
+
+	/**
+	 * Maximum size of a single mapping.  Files larger than this are mapped in
+	 * several chunks, as a ByteBuffer is indexed by int.
+	 */
+	static final int CHUNK_SIZE = 1 << 30;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param path Index path.
+	 * @throws IOException
+	 */
+	public MMapDirectory(final File path) throws IOException {
+		super(path);
+	}
+
+	@Override
+	public IndexInput openInput(final String name) throws IOException {
+		return new MMapIndexInput(getFile(name));
+	}
+}
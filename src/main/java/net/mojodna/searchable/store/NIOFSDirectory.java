@@ -0,0 +1,120 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.lucene.store.BufferedIndexInput;
+import org.apache.lucene.store.IndexInput;
+
+/**
+ * Directory that reads files with positional FileChannel reads.
+ * FSDirectory synchronizes on each file to seek and then read, so threads
+ * searching the same index take turns; positional reads do not move a
+ * shared file pointer and can proceed concurrently.
+ * 
+ * @author Seth Fitzsimmons
+ */
+public class NIOFSDirectory extends DelegatingFSDirectory {
+	/**
+	 * Reads a file through a shared FileChannel.  Clones share the channel;
+	 * only the original closes it.
+	 */
+	private static final class NIOFSIndexInput extends BufferedIndexInput {
+		private ByteBuffer byteBuffer;
+
+		private final FileChannel channel;
+
+		private boolean clone;
+
+		private final RandomAccessFile file;
+
+		private final long length;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param path File to read.
+		 * @throws IOException
+		 */
+		private NIOFSIndexInput(final File path) throws IOException {
+			this.file = new RandomAccessFile(path, "r");
+			this.channel = file.getChannel();
+			this.length = file.length();
+		}
+
+		@Override
+		public Object clone() {
+			final NIOFSIndexInput clone = (NIOFSIndexInput) super.clone();
+			clone.clone = true;
+			clone.byteBuffer = null;
+			return clone;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!clone)
+				file.close();
+		}
+
+		@Override
+		public long length() {
+			return length;
+		}
+
+		@Override
+		protected void readInternal(final byte[] b, final int offset,
+				final int len) throws IOException {
+			// the buffer passed in is normally the same every time
+			if (null == byteBuffer || byteBuffer.array() != b) {
+				byteBuffer = ByteBuffer.wrap(b);
+			}
+			byteBuffer.limit(offset + len).position(offset);
+
+			long position = getFilePointer();
+			while (byteBuffer.hasRemaining()) {
+				final int read = channel.read(byteBuffer, position);
+				if (read < 0)
+					throw new IOException("read past EOF");
+				position += read;
+			}
+		}
+
+		@Override
+		protected void seekInternal(final long pos) {
+			// reads are positional, so there is nothing to do
+		}
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param path Index path.
+	 * @throws IOException
+	 */
+	public NIOFSDirectory(final File path) throws IOException {
+		super(path);
+	}
+
+	@Override
+	public IndexInput openInput(final String name) throws IOException {
+		return new NIOFSIndexInput(getFile(name));
+	}
+}
@@ -0,0 +1,317 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+
+/**
+ * Tests for AbstractIndexer.
+ *
+ * @author Seth Fitzsimmons
+ */
+public class AbstractIndexerTest extends TestCase {
+	/**
+	 */
+	public static class Teapot extends AbstractResult implements Searchable {
+		private Integer id;
+
+		private String name;
+
+		/**
+		 * @param id Id.
+		 * @param name Name.
+		 */
+		public Teapot(final Integer id, final String name) {
+			this.id = id;
+			this.name = name;
+		}
+
+		/**
+		 * @return Id.
+		 */
+		public Integer getId() {
+			return id;
+		}
+
+		/**
+		 * @return Name.
+		 */
+		@Indexed(stored = true)
+		public String getName() {
+			return name;
+		}
+	}
+
+	private BeanIndexer indexer;
+
+	private String indexPath;
+
+	@Override
+	protected void setUp() throws Exception {
+		indexPath = System.getProperty("java.io.tmpdir") + File.separatorChar
+				+ "searchable-" + getName() + "-" + System.currentTimeMillis();
+		indexer = new BeanIndexer();
+		indexer.setIndexPath(indexPath);
+		indexer.createIndex();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		indexer.close();
+		IndexSupport.closeSearcherManager(indexPath);
+		final File[] files = new File(indexPath).listFiles();
+		if (null != files) {
+			for (final File f : files) {
+				f.delete();
+			}
+		}
+		new File(indexPath).delete();
+	}
+
+	/**
+	 * @param name Name to count.
+	 * @return Number of live documents with the specified name.
+	 * @throws Exception
+	 */
+	private int count(final String name) throws Exception {
+		final IndexReader reader = IndexReader.open(indexPath);
+		try {
+			// docFreq() includes deleted documents
+			final TermDocs docs = reader.termDocs(new Term("name", name));
+			int count = 0;
+			while (docs.next())
+				count++;
+			docs.close();
+			return count;
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testCloseKeepsSearcherManager() throws Exception {
+		final SearcherManager manager = indexer.getSearcherManager();
+		manager.setRefreshInterval(0);
+		indexer.close();
+
+		final BeanIndexer other = new BeanIndexer();
+		other.setIndexPath(indexPath);
+		assertSame(manager, other.getSearcherManager());
+		assertEquals(0, manager.getRefreshInterval());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testImmediateReplacesDocuments() throws Exception {
+		indexer.add(new Teapot(1, "brown"));
+		indexer.add(new Teapot(1, "brown"));
+		indexer.add(new Teapot(2, "white"));
+
+		final IndexReader reader = IndexReader.open(indexPath);
+		try {
+			assertEquals(2, reader.numDocs());
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testBufferedChangesVisibleAfterCommit() throws Exception {
+		indexer.setWriteMode(WriteMode.BUFFERED);
+		indexer.add(new Teapot(1, "brown"));
+		indexer.add(new Teapot(2, "white"));
+		assertEquals(0, count("brown"));
+
+		indexer.commit();
+		assertEquals(1, count("brown"));
+		assertEquals(1, count("white"));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testBufferedUpdatesReplaceByCompoundId() throws Exception {
+		indexer.setWriteMode(WriteMode.BUFFERED);
+		indexer.add(new Teapot(1, "brown"));
+		indexer.commit();
+
+		// replace a committed document, then replace the pending replacement
+		indexer.add(new Teapot(1, "white"));
+		indexer.add(new Teapot(1, "black"));
+		// add and delete within the same buffer
+		indexer.add(new Teapot(2, "green"));
+		indexer.delete(new Teapot(2, "green"));
+		indexer.commit();
+
+		assertEquals(0, count("brown"));
+		assertEquals(0, count("white"));
+		assertEquals(1, count("black"));
+		assertEquals(0, count("green"));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testBufferThreshold() throws Exception {
+		indexer.setWriteMode(WriteMode.BUFFERED);
+		indexer.setMaxBufferedDocs(2);
+		indexer.add(new Teapot(1, "brown"));
+		indexer.add(new Teapot(2, "brown"));
+		indexer.add(new Teapot(3, "brown"));
+		indexer.commit();
+		assertEquals(3, count("brown"));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testParallelIndexer() throws Exception {
+		final List<Teapot> teapots = new ArrayList<Teapot>();
+		for (int i = 0; i < 500; i++) {
+			teapots.add(new Teapot(i % 400, 0 == i % 2 ? "brown" : "white"));
+		}
+		// ids must be Serializable
+		teapots.add(new Teapot(null, "broken"));
+
+		indexer.setWriteMode(WriteMode.BUFFERED);
+		final ParallelIndexer pi = new ParallelIndexer(indexer, 4);
+		pi.setQueueSize(16);
+		final ParallelIndexer.Statistics stats = pi.index(teapots);
+		indexer.commit();
+
+		assertEquals(500, stats.getWritten());
+		assertEquals(1, stats.getFailed());
+		assertEquals(1, stats.getFailures().size());
+
+		// later versions replace earlier ones, in order
+		final IndexReader reader = IndexReader.open(indexPath);
+		try {
+			assertEquals(400, reader.numDocs());
+		} finally {
+			reader.close();
+		}
+		assertEquals(200, count("brown"));
+		assertEquals(200, count("white"));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testBulkAddAndDelete() throws Exception {
+		final List<Teapot> teapots = new ArrayList<Teapot>();
+		for (int i = 0; i < 10; i++) {
+			teapots.add(new Teapot(i, 0 == i % 2 ? "brown" : "white"));
+		}
+		indexer.addAll(teapots);
+		assertEquals(5, count("brown"));
+		assertEquals(5, count("white"));
+
+		indexer.deleteAll(teapots.subList(0, 4));
+		assertEquals(3, count("brown"));
+		assertEquals(3, count("white"));
+		assertEquals(WriteMode.IMMEDIATE, indexer.getWriteMode());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testBulkIsScopedToThread() throws Exception {
+		final List<Teapot> teapots = new ArrayList<Teapot>();
+		for (int i = 0; i < 4; i++) {
+			teapots.add(new Teapot(i, "brown"));
+		}
+
+		final int[] counts = new int[1];
+		final Exception[] failure = new Exception[1];
+		indexer.addAll(new Iterable<Teapot>() {
+			public Iterator<Teapot> iterator() {
+				final Iterator<Teapot> i = teapots.iterator();
+				return new Iterator<Teapot>() {
+					public boolean hasNext() {
+						return i.hasNext();
+					}
+
+					public Teapot next() {
+						final Teapot teapot = i.next();
+						if (teapot.getId() == 2) {
+							// add from another thread mid-way through
+							final Thread other = new Thread() {
+								@Override
+								public void run() {
+									try {
+										indexer.add(new Teapot(100, "white"));
+									} catch (final Exception e) {
+										failure[0] = e;
+									}
+								}
+							};
+							other.start();
+							try {
+								other.join();
+								counts[0] = count("white");
+							} catch (final Exception e) {
+								failure[0] = e;
+							}
+						}
+						return teapot;
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		});
+
+		assertNull(failure[0]);
+		// the other thread's add was committed immediately (applying
+		// anything buffered ahead of it)
+		assertEquals(1, counts[0]);
+		assertEquals(4, count("brown"));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testBatchModeReplacesOnFlush() throws Exception {
+		indexer.add(new Teapot(1, "brown"));
+
+		indexer.setBatchMode(true);
+		indexer.add(new Teapot(1, "white"));
+		indexer.add(new Teapot(2, "green"));
+		indexer.delete(new Teapot(2, "green"));
+		assertEquals(1, count("brown"));
+
+		indexer.flushDeletes();
+		assertEquals(0, count("brown"));
+		assertEquals(1, count("white"));
+		assertEquals(0, count("green"));
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import net.mojodna.searchable.AbstractSearcherTest.Teapot;
+
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.Sort;
+
+/**
+ * Tests for AbstractMultiSearcher.
+ *
+ * @author Seth Fitzsimmons
+ */
+public class AbstractMultiSearcherTest extends TestCase {
+	/** Number of teapots indexed in each index */
+	private static final int NUM_TEAPOTS = 50;
+
+	private String[] indexPaths;
+
+	private AbstractMultiSearcher searcher;
+
+	/**
+	 * @param indexPath Index path.
+	 * @param first Id of the first teapot to add.
+	 * @param create Whether to create the index.
+	 * @throws Exception
+	 */
+	private void addTeapots(final String indexPath, final int first,
+			final boolean create) throws Exception {
+		final BeanIndexer indexer = new BeanIndexer();
+		indexer.setIndexPath(indexPath);
+		if (create)
+			indexer.createIndex();
+		for (int i = first; i < first + NUM_TEAPOTS; i++) {
+			indexer.add(new Teapot(i, 0 == i % 3 ? "brown" : "white", String
+					.valueOf((char) ('a' + i % 26))
+					+ i));
+		}
+		indexer.close();
+	}
+
+	/**
+	 * Asserts that two result sets contain the same results in the same order.
+	 *
+	 * @param expected Expected results.
+	 * @param actual Actual results.
+	 */
+	private void assertSameResults(final ResultSet expected,
+			final ResultSet actual) {
+		assertEquals(expected.size(), actual.size());
+		assertEquals(expected.count(), actual.count());
+
+		final List<? extends Result> e = expected.getResults();
+		final List<? extends Result> a = actual.getResults();
+		for (int i = 0; i < e.size(); i++) {
+			assertEquals(((Teapot) e.get(i)).getId(), ((Teapot) a.get(i))
+					.getId());
+			assertEquals(e.get(i).getScore(), a.get(i).getScore(), 0.0001f);
+		}
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		indexPaths = new String[2];
+		for (int i = 0; i < indexPaths.length; i++) {
+			indexPaths[i] = System.getProperty("java.io.tmpdir")
+					+ File.separatorChar + "searchable-" + getName() + "-" + i
+					+ "-" + System.currentTimeMillis();
+			addTeapots(indexPaths[i], i * NUM_TEAPOTS, true);
+		}
+
+		searcher = new AbstractMultiSearcher(indexPaths) {
+		};
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		searcher.setExecutor(null);
+		searcher.close();
+		for (final String indexPath : indexPaths) {
+			IndexSupport.closeSearcherManager(indexPath);
+			final File[] files = new File(indexPath).listFiles();
+			if (null != files) {
+				for (final File f : files) {
+					f.delete();
+				}
+			}
+			new File(indexPath).delete();
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testParallelSearch() throws Exception {
+		final Sort sort = new Sort(IndexSupport.SORTABLE_PREFIX + "size", true);
+		final ResultSet sequential = searcher.doSearch("brown", (Filter) null,
+				3, 10, (Sort) null);
+		final ResultSet sequentialSorted = searcher.doSearch("brown",
+				(Filter) null, 3, 10, sort);
+		final ResultSet sequentialAll = searcher.doSearch("brown",
+				(Filter) null, 0, null, sort);
+
+		searcher.setParallelism(2);
+		final ResultSet parallel = searcher.doSearch("brown", (Filter) null,
+				3, 10, (Sort) null);
+		assertFalse(parallel.isPartial());
+		assertSameResults(sequential, parallel);
+		assertSameResults(sequentialSorted, searcher.doSearch("brown",
+				(Filter) null, 3, 10, sort));
+
+		// all results, collected in queues sized from each index's matches
+		assertSameResults(searcher.doSearch("brown", (Filter) null, 0, null,
+				sort), sequentialAll);
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testTimeoutReleasesSearchers() throws Exception {
+		// occupy the only thread so that searches cannot start in time
+		final ExecutorService executor = AbstractMultiSearcher
+				.newSearchExecutor(1);
+		final CountDownLatch latch = new CountDownLatch(1);
+		executor.execute(new Runnable() {
+			public void run() {
+				try {
+					latch.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		searcher.setExecutor(executor);
+
+		final ResultSet rs = searcher.doSearch("brown", null, 0, 10, null, 50);
+		assertTrue(rs.isPartial());
+		assertEquals(0, rs.size());
+
+		latch.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+		// abandoned searches must not keep searchers open
+		final SearcherManager manager = searcher
+				.getSearcherManager(indexPaths[0]);
+		manager.close();
+		assertEquals(0, manager.getOpenGenerations());
+	}
+}
@@ -0,0 +1,580 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+
+/**
+ * Tests for AbstractSearcher.
+ *
+ * @author Seth Fitzsimmons
+ */
+public class AbstractSearcherTest extends TestCase {
+	/**
+	 */
+	public static class Teapot extends AbstractResult implements Searchable {
+		private Integer id;
+
+		private String name;
+
+		private String size;
+
+		/**
+		 */
+		public Teapot() {
+			super();
+		}
+
+		/**
+		 * @param id Id.
+		 * @param name Name.
+		 * @param size Size.
+		 */
+		public Teapot(final Integer id, final String name, final String size) {
+			this.id = id;
+			this.name = name;
+			this.size = size;
+		}
+
+		/**
+		 * @return Id.
+		 */
+		public Integer getId() {
+			return id;
+		}
+
+		/**
+		 * @return Name.
+		 */
+		@Indexed(stored = true, tokenized = false)
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return Size.
+		 */
+		@Sortable
+		@Stored
+		public String getSize() {
+			return size;
+		}
+
+		/**
+		 * @param id Id.
+		 */
+		public void setId(final Integer id) {
+			this.id = id;
+		}
+	}
+
+	/**
+	 */
+	public static class Kettle extends Teapot {
+		/**
+		 */
+		public Kettle() {
+			super();
+		}
+
+		/**
+		 * @param id Id.
+		 * @param name Name.
+		 * @param size Size.
+		 */
+		public Kettle(final Integer id, final String name, final String size) {
+			super(id, name, size);
+		}
+	}
+
+	/**
+	 */
+	public static class PricedTeapot extends Teapot {
+		private Integer price;
+
+		/**
+		 */
+		public PricedTeapot() {
+			super();
+		}
+
+		/**
+		 * @param id Id.
+		 * @param price Price.
+		 */
+		public PricedTeapot(final Integer id, final Integer price) {
+			super(id, "priced", "p");
+			this.price = price;
+		}
+
+		/**
+		 * @return Price.
+		 */
+		@Indexed(name = "cost", aliases = "amount", precisionStep = 4)
+		public Integer getPrice() {
+			return price;
+		}
+	}
+
+	/** Number of teapots indexed */
+	private static final int NUM_TEAPOTS = 100;
+
+	private String indexPath;
+
+	private BeanSearcher searcher;
+
+	/**
+	 * @param results Results.
+	 * @return Ids of the results, in order.
+	 */
+	private List<Integer> getIds(final Iterable<? extends Searchable> results) {
+		final List<Integer> ids = new ArrayList<Integer>();
+		for (final Searchable result : results) {
+			ids.add(((Teapot) result).getId());
+		}
+		return ids;
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		indexPath = System.getProperty("java.io.tmpdir") + File.separatorChar
+				+ "searchable-" + getName() + "-" + System.currentTimeMillis();
+
+		final BeanIndexer indexer = new BeanIndexer();
+		indexer.setIndexPath(indexPath);
+		indexer.createIndex();
+		for (int i = 0; i < NUM_TEAPOTS; i++) {
+			indexer.add(new Teapot(i, 0 == i % 2 ? "brown" : "white",
+					String.valueOf((char) ('a' + i % 26)) + i));
+		}
+		indexer.close();
+
+		searcher = new BeanSearcher();
+		searcher.setIndexPath(indexPath);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		searcher.close();
+		IndexSupport.closeSearcherManager(indexPath);
+		final File[] files = new File(indexPath).listFiles();
+		if (null != files) {
+			for (final File f : files) {
+				f.delete();
+			}
+		}
+		new File(indexPath).delete();
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testCountMatches() throws Exception {
+		final IndexSearcher indexSearcher = searcher.acquireIndexSearcher();
+		try {
+			assertEquals(NUM_TEAPOTS / 2, searcher.countMatches(new TermQuery(
+					new Term("name", "brown")), null, indexSearcher));
+			assertEquals(0, searcher.countMatches(new TermQuery(new Term(
+					"name", "green")), null, indexSearcher));
+
+			// all results are collected in a queue sized from the matches
+			assertEquals(NUM_TEAPOTS / 2, searcher.search(
+					new TermQuery(new Term("name", "white")), null,
+					indexSearcher, 0, null, null).scoreDocs.length);
+		} finally {
+			searcher.releaseIndexSearcher(indexSearcher);
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testDeepOffset() throws Exception {
+		final Query query = new TermQuery(new Term("name", "brown"));
+		final ResultSet<? extends Searchable> all = searcher.search(query,
+				0, null);
+		final ResultSet<? extends Searchable> page = searcher.search(query,
+				40, 5);
+
+		assertEquals(NUM_TEAPOTS / 2, all.size());
+		assertEquals(NUM_TEAPOTS / 2, all.count());
+		assertEquals(NUM_TEAPOTS / 2, page.size());
+		assertEquals(5, page.count());
+		assertEquals(40, page.offset());
+
+		final List<? extends Result> results = all.getResults();
+		int i = 40;
+		for (final Searchable result : page) {
+			final Teapot teapot = (Teapot) result;
+			assertEquals(((Teapot) results.get(i)).getId(), teapot.getId());
+			assertEquals(i, teapot.getRanking());
+			i++;
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testSortedPage() throws Exception {
+		final Query query = new TermQuery(new Term("name", "white"));
+		final ResultSet<? extends Searchable> page = searcher.search(query,
+				10, 10, "size", true);
+
+		assertEquals(10, page.count());
+		String previous = null;
+		for (final Searchable result : page) {
+			final String size = ((Teapot) result).getStoredFields().get("size");
+			if (null != previous)
+				assertTrue(previous.compareTo(size) >= 0);
+			previous = size;
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testMultiKeySort() throws Exception {
+		final SortField[] keys = searcher.createSort(
+				new String[] { "size desc", "name", "score", "score asc" })
+				.getSort();
+		assertEquals(4, keys.length);
+		assertEquals(IndexSupport.SORTABLE_PREFIX + "size", keys[0].getField());
+		assertTrue(keys[0].getReverse());
+		assertEquals(IndexSupport.SORTABLE_PREFIX + "name", keys[1].getField());
+		assertFalse(keys[1].getReverse());
+		assertEquals(SortField.SCORE, keys[2].getType());
+		assertFalse(keys[2].getReverse());
+		assertEquals(SortField.SCORE, keys[3].getType());
+		assertTrue(keys[3].getReverse());
+
+		assertSame(Sort.RELEVANCE, searcher.createSort(null));
+		try {
+			searcher.createSort(new String[] { "size sideways" });
+			fail("Invalid sort direction was accepted.");
+		} catch (final SearchException e) {
+			// expected
+		}
+
+		final ResultSet<Searchable> page = searcher.search("white", 0, 10,
+				new String[] { "size desc", "score" });
+		assertEquals(NUM_TEAPOTS / 2, page.size());
+		assertEquals(10, page.count());
+		String previous = null;
+		for (final Searchable result : page) {
+			final String size = ((Teapot) result).getStoredFields().get("size");
+			if (null != previous)
+				assertTrue(previous.compareTo(size) > 0);
+			previous = size;
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testLoadedFields() throws Exception {
+		final Query query = new TermQuery(new Term("name", "brown"));
+		Teapot teapot = (Teapot) searcher.search(query, 0, 1).getResults()
+				.get(0);
+		assertEquals("brown", teapot.getStoredFields().get("name"));
+		assertEquals(2, teapot.getStoredFields().size());
+		assertNull(teapot.getStoredFields().get(IndexSupport.ID_FIELD_NAME));
+
+		searcher.setLoadedFields(new String[] { "size" });
+		teapot = (Teapot) searcher.search(query, 0, 1).getResults().get(0);
+		assertNull(teapot.getStoredFields().get("name"));
+		assertFalse(teapot.getStoredFields().containsKey("name"));
+		assertNotNull(teapot.getStoredFields().get("size"));
+		assertEquals(1, teapot.getStoredFields().size());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testRangeFilterOnRenamedProperty() throws Exception {
+		final BeanIndexer indexer = new BeanIndexer();
+		indexer.setIndexPath(indexPath);
+		try {
+			for (int i = 0; i < 10; i++) {
+				indexer.add(new PricedTeapot(NUM_TEAPOTS + i, i * 10));
+			}
+			indexer.commit();
+
+			final Query query = new TermQuery(new Term("name", "priced"));
+			final NumericRangeFilter filter = searcher.createRangeFilter(
+					PricedTeapot.class, "price", 20, 50, true, true);
+			assertEquals("cost", filter.getField());
+			assertEquals(4, searcher.search(query, filter).size());
+
+			// range terms are written under the primary field name only
+			final IndexSearcher is = searcher.acquireIndexSearcher();
+			try {
+				final Collection fields = is.getIndexReader().getFieldNames(
+						IndexReader.FieldOption.ALL);
+				assertTrue(fields.contains(IndexSupport.RANGE_PREFIX + "cost"));
+				assertFalse(fields
+						.contains(IndexSupport.RANGE_PREFIX + "amount"));
+				assertFalse(fields.contains(IndexSupport.RANGE_PREFIX + "price"));
+			} finally {
+				searcher.releaseIndexSearcher(is);
+			}
+		} finally {
+			indexer.close();
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testResultHydrator() throws Exception {
+		final List<List<Serializable>> calls = new ArrayList<List<Serializable>>();
+		searcher.setResultHydrator(new ResultHydrator() {
+			public Map<Serializable, ? extends Searchable> hydrate(
+					final Class<? extends Searchable> type,
+					final List<Serializable> ids) {
+				calls.add(ids);
+				final Map<Serializable, Teapot> loaded = new HashMap<Serializable, Teapot>();
+				for (final Serializable id : ids) {
+					// pretend the last one has been deleted
+					if (!id.equals(ids.get(ids.size() - 1)))
+						loaded.put(id, new Teapot((Integer) id, "loaded", null));
+				}
+				return loaded;
+			}
+		});
+
+		final Query query = new TermQuery(new Term("name", "brown"));
+		final ResultSet<? extends Searchable> page = searcher.search(query,
+				10, 5);
+
+		assertEquals(1, calls.size());
+		assertEquals(5, calls.get(0).size());
+		int i = 0;
+		for (final Searchable result : page) {
+			final Teapot teapot = (Teapot) result;
+			assertEquals(calls.get(0).get(i), teapot.getId());
+			assertEquals(10 + i, teapot.getRanking());
+			if (i < 4)
+				assertEquals("loaded", teapot.getName());
+			else
+				assertNull(teapot.getName());
+			i++;
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testResultCache() throws Exception {
+		final ResultCache cache = searcher.getSearcherManager()
+				.getResultCache();
+		final Query query = new TermQuery(new Term("name", "brown"));
+
+		final List<Integer> first = getIds(searcher.search(query, 0, 10));
+		assertEquals(0, cache.getHits());
+		assertEquals(first, getIds(searcher.search(query, 0, 10)));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getSize());
+
+		// a different page is a different entry
+		searcher.search(query, 5, 10);
+		assertEquals(2, cache.getSize());
+
+		// reopening the index discards cached results
+		final BeanIndexer indexer = new BeanIndexer();
+		indexer.setIndexPath(indexPath);
+		try {
+			indexer.add(new Teapot(NUM_TEAPOTS, "brown", "z"));
+			indexer.commit();
+			assertEquals(NUM_TEAPOTS / 2 + 1, searcher.search(query, 0, 10)
+					.size());
+			assertEquals(1, cache.getInvalidations());
+			assertEquals(1, cache.getSize());
+		} finally {
+			indexer.close();
+		}
+
+		// the shared manager (and its cache) outlives the indexer
+		assertSame(cache, searcher.getSearcherManager().getResultCache());
+		searcher.search(query, 0, 10);
+		assertEquals(2, cache.getHits());
+
+		// requests for all results are cached too
+		searcher.search(query, 0, null);
+		searcher.search(query, 0, null);
+		assertEquals(3, cache.getHits());
+
+		searcher.search(new TermQuery(new Term("name", "white")), 0, 10);
+		cache.setMaxEntries(1);
+		assertEquals(1, cache.getSize());
+		assertEquals(2, cache.getEvictions());
+
+		searcher.setResultCacheEnabled(false);
+		searcher.search(new TermQuery(new Term("name", "white")), 0, 10);
+		assertEquals(3, cache.getHits());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testSearchAfter() throws Exception {
+		final Query query = new TermQuery(new Term("name", "brown"));
+		final List<Integer> expected = getIds(searcher.search(query, 0, null));
+
+		final List<Integer> actual = new ArrayList<Integer>();
+		String cursor = null;
+		int pages = 0;
+		do {
+			final ResultSet<? extends Searchable> page = searcher.searchAfter(
+					query, cursor, 7);
+			assertEquals(NUM_TEAPOTS / 2, page.size());
+			assertEquals(actual.size(), page.offset());
+			actual.addAll(getIds(page));
+			cursor = page.getCursor();
+			pages++;
+		} while (null != cursor);
+
+		assertEquals(8, pages);
+		assertEquals(expected, actual);
+
+		// a null count returns all remaining results
+		final ResultSet<? extends Searchable> first = searcher.searchAfter(
+				query, null, 7);
+		final ResultSet<? extends Searchable> rest = searcher.searchAfter(
+				query, first.getCursor(), null);
+		assertEquals(expected.subList(7, expected.size()), getIds(rest));
+		assertNull(rest.getCursor());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testSearchAfterSorted() throws Exception {
+		final Query query = new TermQuery(new Term("name", "white"));
+		final List<Integer> expected = getIds(searcher.search(query, null, 0,
+				null, "size", true));
+
+		final List<Integer> actual = new ArrayList<Integer>();
+		String cursor = null;
+		do {
+			final ResultSet<? extends Searchable> page = searcher.searchAfter(
+					query, null, cursor, 9, "size", true);
+			actual.addAll(getIds(page));
+			cursor = page.getCursor();
+		} while (null != cursor);
+
+		assertEquals(expected, actual);
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testSearchCursorToken() throws Exception {
+		final SearchCursor cursor = new SearchCursor(10, 42, new Comparable[] {
+				"a:b c", 3, 1.5F, null });
+		final SearchCursor parsed = SearchCursor.parse(cursor.toString());
+		assertEquals(10, parsed.getOffset());
+		assertEquals(42, parsed.getDoc());
+		assertEquals("a:b c", parsed.getValues()[0]);
+		assertEquals(3, parsed.getValues()[1]);
+		assertEquals(1.5F, parsed.getValues()[2]);
+		assertNull(parsed.getValues()[3]);
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testTypeFilter() throws Exception {
+		final BeanIndexer indexer = new BeanIndexer();
+		indexer.setIndexPath(indexPath);
+		try {
+			indexer.add(new Kettle(NUM_TEAPOTS, "brown", "k"));
+			indexer.commit();
+
+			final ResultSet kettles = searcher.doSearch("brown", (Filter) null,
+					Kettle.class, 0, null, (Sort) null);
+			assertEquals(1, kettles.size());
+			assertTrue(kettles.getResults().get(0) instanceof Kettle);
+
+			// subclasses are included
+			assertEquals(NUM_TEAPOTS / 2 + 1, searcher.doSearch("brown",
+					(Filter) null, Teapot.class, 0, null, (Sort) null).size());
+			assertEquals(NUM_TEAPOTS + 1, searcher.doSearch("brown OR white",
+					(Filter) null, Searchable.class, 0, null, (Sort) null).size());
+
+			// intersected with other filters
+			final Filter filter = new TypeFilter(Kettle.class);
+			assertEquals(1, searcher.doSearch("brown", filter, Teapot.class,
+					0, null, (Sort) null).size());
+
+			final IndexSearcher is = searcher.acquireIndexSearcher();
+			try {
+				assertSame(filter.bits(is.getIndexReader()), filter.bits(is
+						.getIndexReader()));
+			} finally {
+				searcher.releaseIndexSearcher(is);
+			}
+		} finally {
+			indexer.close();
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testStream() throws Exception {
+		final Query query = new TermQuery(new Term("name", "brown"));
+		final ResultIterator<? extends Searchable> results = searcher.stream(
+				query, null, 7);
+
+		int count = 0;
+		int previous = -1;
+		while (results.hasNext()) {
+			final Teapot teapot = (Teapot) results.next();
+			// teapots were indexed in id order
+			assertTrue(teapot.getId() > previous);
+			assertEquals(count, teapot.getRanking());
+			previous = teapot.getId();
+			count++;
+		}
+
+		assertEquals(NUM_TEAPOTS / 2, count);
+		assertTrue(results.isClosed());
+
+		// abandoning an iterator early
+		final ResultIterator<? extends Searchable> abandoned = searcher
+				.stream(query, null, 7);
+		assertNotNull(abandoned.next());
+		abandoned.close();
+		assertTrue(abandoned.isClosed());
+	}
+}
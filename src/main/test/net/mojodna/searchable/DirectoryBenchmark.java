@@ -0,0 +1,188 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+
+/**
+ * Compares concurrent query throughput of each DirectoryStrategy against the
+ * same index.  Every thread shares a single searcher, as searchers acquired
+ * through a SearcherManager are, so contention on the underlying files is
+ * what is being measured.
+ * 
+ * Usage: DirectoryBenchmark [documents] [threads] [seconds] [index path]
+ * 
+ * An existing index at the specified path is reused.  Run each strategy more
+ * than once (or discard the first round) so that the operating system's page
+ * cache is equally warm for all of them.
+ *
+ * @author Seth Fitzsimmons
+ */
+public class DirectoryBenchmark {
+	/** Number of distinct words */
+	private static final int NUM_WORDS = 10000;
+
+	/** Number of words per document */
+	private static final int WORDS_PER_DOCUMENT = 20;
+
+	/**
+	 * Builds an index of the specified size.
+	 * 
+	 * @param indexPath Path to the index.
+	 * @param documents Number of documents to index.
+	 * @throws Exception
+	 */
+	private static void buildIndex(final String indexPath, final int documents)
+			throws Exception {
+		final Random random = new Random(0);
+		final IndexWriter writer = new IndexWriter(indexPath,
+				new WhitespaceAnalyzer(), true);
+		writer.setMaxBufferedDocs(10000);
+		writer.setMergeFactor(50);
+		for (int i = 0; i < documents; i++) {
+			final StringBuffer body = new StringBuffer();
+			for (int j = 0; j < WORDS_PER_DOCUMENT; j++) {
+				body.append("w").append(nextWord(random)).append(" ");
+			}
+			final Document doc = new Document();
+			doc.add(new Field("body", body.toString(), Field.Store.NO,
+					Field.Index.TOKENIZED));
+			writer.addDocument(doc);
+		}
+		writer.optimize();
+		writer.close();
+	}
+
+	/**
+	 * Run the benchmark.
+	 * 
+	 * @param args Number of documents, number of threads, seconds per
+	 *        strategy, and index path (all optional).
+	 * @throws Exception
+	 */
+	public static void main(final String[] args) throws Exception {
+		final int documents = args.length > 0 ? Integer.parseInt(args[0])
+				: 1000000;
+		final int threads = args.length > 1 ? Integer.parseInt(args[1])
+				: Runtime.getRuntime().availableProcessors() * 2;
+		final int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		final String indexPath = args.length > 3 ? args[3] : System
+				.getProperty("java.io.tmpdir")
+				+ File.separatorChar
+				+ "searchable-directory-benchmark-"
+				+ documents;
+
+		if (!new File(indexPath, "segments").exists()) {
+			final long begin = System.currentTimeMillis();
+			buildIndex(indexPath, documents);
+			System.out.println("Indexed " + documents + " documents in "
+					+ (System.currentTimeMillis() - begin) + "ms");
+		}
+
+		for (int round = 0; round < 2; round++) {
+			for (final DirectoryStrategy strategy : DirectoryStrategy.values()) {
+				run(strategy, new File(indexPath), threads, seconds, round);
+			}
+		}
+	}
+
+	/**
+	 * Picks a word, favouring low numbers so that some terms are common.
+	 * 
+	 * @param random Source of randomness.
+	 * @return Word number.
+	 */
+	private static int nextWord(final Random random) {
+		final double d = random.nextDouble();
+		return (int) (d * d * NUM_WORDS);
+	}
+
+	/**
+	 * Measure query throughput using the specified strategy.
+	 * 
+	 * @param strategy Strategy to use.
+	 * @param path Index path.
+	 * @param threads Number of searching threads.
+	 * @param seconds Duration.
+	 * @param round Benchmark round.
+	 * @throws Exception
+	 */
+	private static void run(final DirectoryStrategy strategy, final File path,
+			final int threads, final int seconds, final int round)
+			throws Exception {
+		final Directory directory = strategy.open(path);
+		final SearcherManager manager = new SearcherManager(directory, -1,
+				strategy);
+		final long openBegin = System.currentTimeMillis();
+		manager.maybeRefresh();
+		final long openTime = System.currentTimeMillis() - openBegin;
+
+		final AtomicLong queries = new AtomicLong();
+		final long deadline = System.currentTimeMillis() + seconds * 1000L;
+		final Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			final Random random = new Random(i);
+			workers[i] = new Thread("benchmark-" + i) {
+				@Override
+				public void run() {
+					try {
+						while (System.currentTimeMillis() < deadline) {
+							final BooleanQuery query = new BooleanQuery();
+							query.add(new TermQuery(new Term("body", "w"
+									+ nextWord(random))),
+									BooleanClause.Occur.SHOULD);
+							query.add(new TermQuery(new Term("body", "w"
+									+ random.nextInt(NUM_WORDS))),
+									BooleanClause.Occur.SHOULD);
+
+							final IndexSearcher searcher = manager.acquire();
+							try {
+								searcher.search(query, null, 10);
+							} finally {
+								manager.release(searcher);
+							}
+							queries.incrementAndGet();
+						}
+					} catch (final Exception e) {
+						e.printStackTrace();
+					}
+				}
+			};
+			workers[i].start();
+		}
+		for (final Thread worker : workers) {
+			worker.join();
+		}
+		manager.close();
+
+		System.out.println("round " + round + " [" + strategy + "]: "
+				+ (queries.get() / seconds) + " queries/s with " + threads
+				+ " threads (opened in " + openTime + "ms)");
+	}
+}
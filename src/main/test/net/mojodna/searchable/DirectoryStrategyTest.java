@@ -0,0 +1,148 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.analysis.SimpleAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+
+/**
+ * Tests for DirectoryStrategy and the directories it opens.
+ *
+ * @author Seth Fitzsimmons
+ */
+public class DirectoryStrategyTest extends TestCase {
+	private File indexFile;
+
+	/**
+	 * @param directory Directory to write to.
+	 * @param names Values of the name field, one document each.
+	 * @param create Whether to create the index.
+	 * @throws Exception
+	 */
+	private void addDocuments(final Directory directory, final String[] names,
+			final boolean create) throws Exception {
+		final IndexWriter writer = new IndexWriter(directory,
+				new SimpleAnalyzer(), create);
+		for (final String name : names) {
+			final Document doc = new Document();
+			doc.add(new Field("name", name, Field.Store.YES,
+					Field.Index.UN_TOKENIZED));
+			writer.addDocument(doc);
+		}
+		writer.close();
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		indexFile = new File(System.getProperty("java.io.tmpdir"),
+				"searchable-" + getName() + "-" + System.currentTimeMillis());
+		indexFile.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		final File[] files = indexFile.listFiles();
+		if (null != files) {
+			for (final File f : files) {
+				f.delete();
+			}
+		}
+		indexFile.delete();
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testInputs() throws Exception {
+		for (final DirectoryStrategy strategy : DirectoryStrategy.values()) {
+			final Directory directory = strategy.open(indexFile);
+			final IndexOutput out = directory.createOutput("test");
+			for (int i = 0; i < 5000; i++) {
+				out.writeVInt(i);
+			}
+			out.close();
+
+			final IndexInput in = directory.openInput("test");
+			try {
+				for (int i = 0; i < 5000; i++) {
+					assertEquals(strategy.name(), i, in.readVInt());
+				}
+				assertEquals(directory.fileLength("test"), in.getFilePointer());
+
+				// clones read independently of the original
+				in.seek(0);
+				final IndexInput clone = (IndexInput) in.clone();
+				assertEquals(0, in.readVInt());
+				assertEquals(1, in.readVInt());
+				assertEquals(0, clone.readVInt());
+				clone.close();
+			} finally {
+				in.close();
+			}
+
+			directory.deleteFile("test");
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testSearch() throws Exception {
+		for (final DirectoryStrategy strategy : DirectoryStrategy.values()) {
+			final Directory directory = strategy.open(indexFile);
+			addDocuments(directory, new String[] { "brown", "white" }, true);
+
+			final SearcherManager manager = new SearcherManager(directory, -1,
+					strategy);
+			try {
+				IndexSearcher searcher = manager.acquire();
+				try {
+					assertEquals(strategy.name(), 1, searcher.search(
+							new TermQuery(new Term("name", "brown"))).length());
+				} finally {
+					manager.release(searcher);
+				}
+
+				// changes on disk are picked up, even when reading a copy
+				addDocuments(directory, new String[] { "brown" }, false);
+				assertTrue(strategy.name(), manager.maybeRefresh());
+				assertFalse(strategy.name(), manager.maybeRefresh());
+
+				searcher = manager.acquire();
+				try {
+					assertEquals(strategy.name(), 2, searcher.search(
+							new TermQuery(new Term("name", "brown"))).length());
+				} finally {
+					manager.release(searcher);
+				}
+			} finally {
+				manager.close();
+			}
+		}
+	}
+}
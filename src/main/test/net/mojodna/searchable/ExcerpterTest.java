@@ -0,0 +1,222 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TermQuery;
+
+/**
+ * Tests for Excerpter.
+ *
+ * @author Seth Fitzsimmons
+ */
+public class ExcerpterTest extends TestCase {
+	/**
+	 */
+	public static class Note extends AbstractResult implements Searchable {
+		private String description;
+
+		private Integer id;
+
+		/**
+		 */
+		public Note() {
+			super();
+		}
+
+		/**
+		 * @param id Id.
+		 * @param description Description.
+		 */
+		public Note(final Integer id, final String description) {
+			this.id = id;
+			this.description = description;
+		}
+
+		/**
+		 * @return Description.
+		 */
+		@Excerptable
+		@Indexed(stored = true)
+		public String getDescription() {
+			return description;
+		}
+
+		/**
+		 * @return Id.
+		 */
+		public Integer getId() {
+			return id;
+		}
+
+		/**
+		 * @param id Id.
+		 */
+		public void setId(final Integer id) {
+			this.id = id;
+		}
+	}
+
+	/**
+	 */
+	public static class VectorNote extends AbstractResult implements
+			Searchable {
+		private String description;
+
+		private Integer id;
+
+		/**
+		 */
+		public VectorNote() {
+			super();
+		}
+
+		/**
+		 * @param id Id.
+		 * @param description Description.
+		 */
+		public VectorNote(final Integer id, final String description) {
+			this.id = id;
+			this.description = description;
+		}
+
+		/**
+		 * @return Description.
+		 */
+		@Excerptable
+		@Indexed(stored = true, storeTermVector = true)
+		public String getDescription() {
+			return description;
+		}
+
+		/**
+		 * @return Id.
+		 */
+		public Integer getId() {
+			return id;
+		}
+
+		/**
+		 * @param id Id.
+		 */
+		public void setId(final Integer id) {
+			this.id = id;
+		}
+	}
+
+	private static final String TEXT = "The quick brown fox jumps over the lazy dog.  "
+			+ "Meanwhile, a slow green turtle wanders through the garden, "
+			+ "ignoring the fox entirely & eating lettuce.";
+
+	private String indexPath;
+
+	private BeanSearcher searcher;
+
+	@Override
+	protected void setUp() throws Exception {
+		indexPath = System.getProperty("java.io.tmpdir") + File.separatorChar
+				+ "searchable-" + getName() + "-" + System.currentTimeMillis();
+
+		final BeanIndexer indexer = new BeanIndexer();
+		indexer.setIndexPath(indexPath);
+		indexer.createIndex();
+		indexer.add(new Note(1, TEXT));
+		indexer.add(new VectorNote(2, TEXT));
+		indexer.close();
+
+		searcher = new BeanSearcher();
+		searcher.setIndexPath(indexPath);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		searcher.close();
+		final File[] files = new File(indexPath).listFiles();
+		if (null != files) {
+			for (final File f : files) {
+				f.delete();
+			}
+		}
+		new File(indexPath).delete();
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testExcerpt() throws Exception {
+		final Excerpter excerpter = new Excerpter();
+		excerpter.setFragmentSize(40);
+		excerpter.setMaxFragments(1);
+
+		final List<int[]> matches = new ArrayList<int[]>();
+		matches.add(new int[] { 10, 15 });
+		matches.add(new int[] { 16, 19 });
+		matches.add(new int[] { 118, 121 });
+
+		final String extract = excerpter.excerpt(TEXT, matches);
+		assertTrue(extract
+				.startsWith("The quick <strong>brown</strong> <strong>fox</strong>"));
+		assertTrue(extract
+				.endsWith(AbstractSearcher.DEFAULT_HIGHLIGHT_FRAGMENT_SEPARATOR));
+		assertFalse(extract.contains("entirely"));
+
+		excerpter.setMaxFragments(2);
+		assertTrue(excerpter.excerpt(TEXT, matches).contains(
+				"<strong>fox</strong> entirely &amp;"));
+
+		assertNull(excerpter.excerpt(TEXT, new ArrayList<int[]>()));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testSearch() throws Exception {
+		final BooleanQuery query = new BooleanQuery();
+		query.add(new TermQuery(new Term("description", "fox")),
+				BooleanClause.Occur.MUST);
+		query.add(new TermQuery(new Term("description", "lettuce")),
+				BooleanClause.Occur.MUST);
+
+		// no extracts unless an excerpter is provided
+		for (final Searchable result : searcher.search((Query) query)) {
+			assertNull(((Result) result).getSearchExtract());
+		}
+
+		final ResultSet<? extends Searchable> results = searcher.search(query,
+				(Filter) null, 0, 10, (Sort) null, new Excerpter());
+		assertEquals(2, results.count());
+
+		// term vectors and re-analysis produce the same extract
+		final String extract = ((Result) results.getResults().get(0))
+				.getSearchExtract();
+		assertNotNull(extract);
+		assertTrue(extract.contains("<strong>fox</strong>"));
+		assertTrue(extract.contains("<strong>lettuce</strong>"));
+		assertEquals(extract, ((Result) results.getResults().get(1))
+				.getSearchExtract());
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import net.mojodna.searchable.AbstractSearcherTest.Kettle;
+import net.mojodna.searchable.AbstractSearcherTest.Teapot;
+
+import org.apache.lucene.analysis.SimpleAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+
+/**
+ * Tests for FacetCounter.
+ *
+ * @author Seth Fitzsimmons
+ */
+public class FacetCounterTest extends TestCase {
+	private String indexPath;
+
+	private BeanSearcher searcher;
+
+	@Override
+	protected void setUp() throws Exception {
+		indexPath = System.getProperty("java.io.tmpdir") + File.separatorChar
+				+ "searchable-" + getName() + "-" + System.currentTimeMillis();
+
+		final BeanIndexer indexer = new BeanIndexer();
+		indexer.setIndexPath(indexPath);
+		indexer.createIndex();
+		for (int i = 0; i < 10; i++) {
+			final String name = i < 5 ? "brown" : i < 8 ? "white" : "black";
+			final String size = 0 == i % 2 ? "large" : "small";
+			if (8 != i)
+				indexer.add(new Teapot(i, name, size));
+			else
+				indexer.add(new Kettle(i, name, size));
+		}
+		indexer.close();
+
+		searcher = new BeanSearcher();
+		searcher.setIndexPath(indexPath);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		searcher.close();
+		final File[] files = new File(indexPath).listFiles();
+		if (null != files) {
+			for (final File f : files) {
+				f.delete();
+			}
+		}
+		new File(indexPath).delete();
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testFacets() throws Exception {
+		final FacetCounter counter = new FacetCounter(new String[] { "name",
+				"size" });
+		counter.setLimit(2);
+		searcher.setFacetCounter(counter);
+
+		final Query query = new TermQuery(new Term(
+				IndexSupport.SORTABLE_PREFIX + "size", "large"));
+		final ResultSet<? extends Searchable> results = searcher.search(query,
+				0, 1);
+		assertEquals(1, results.count());
+
+		final Map<String, List<FacetCount>> facets = results.getFacets();
+		assertEquals(3, facets.size());
+
+		// counted across all matches, not just the page; ties in value order
+		final List<FacetCount> names = facets.get("name");
+		assertEquals(2, names.size());
+		assertEquals("brown", names.get(0).getValue());
+		assertEquals(3, names.get(0).getCount());
+		assertEquals("black", names.get(1).getValue());
+		assertEquals(1, names.get(1).getCount());
+
+		// @Sortable properties are counted from their sortable fields
+		final List<FacetCount> sizes = facets.get("size");
+		assertEquals(1, sizes.size());
+		assertEquals(5, sizes.get(0).getCount());
+
+		final List<FacetCount> types = facets.get(IndexSupport.TYPE_FIELD_NAME);
+		assertEquals(Teapot.class.getName(), types.get(0).getValue());
+		assertEquals(4, types.get(0).getCount());
+		assertEquals(Kettle.class.getName(), types.get(1).getValue());
+		assertEquals(1, types.get(1).getCount());
+
+		searcher.setFacetCounter(null);
+		assertTrue(searcher.search(query, 0, 1).getFacets().isEmpty());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testMultiValuedOrdinals() throws Exception {
+		final Directory directory = new RAMDirectory();
+		final IndexWriter writer = new IndexWriter(directory,
+				new SimpleAnalyzer(), true);
+		final String[][] tags = new String[][] { { "tea", "china" }, {},
+				{ "tea" } };
+		for (final String[] values : tags) {
+			final Document doc = new Document();
+			for (final String value : values) {
+				doc.add(new Field("tag", value, Field.Store.NO,
+						Field.Index.UN_TOKENIZED));
+			}
+			writer.addDocument(doc);
+		}
+		writer.close();
+
+		final IndexReader reader = IndexReader.open(directory);
+		try {
+			final FieldOrdinals ordinals = FieldOrdinals.getOrdinals(reader,
+					"tag");
+			assertSame(ordinals, FieldOrdinals.getOrdinals(reader, "tag"));
+			assertEquals(2, ordinals.getValueCount());
+			assertEquals("china", ordinals.getValue(0));
+
+			final int[] counts = new int[ordinals.getValueCount()];
+			for (int doc = 0; doc < reader.maxDoc(); doc++) {
+				ordinals.count(doc, counts);
+			}
+			assertEquals(1, counts[0]);
+			assertEquals(2, counts[1]);
+		} finally {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.util.UUID;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for HydrationPlan.
+ *
+ * @author Seth Fitzsimmons
+ */
+public class HydrationPlanTest extends TestCase {
+	/**
+	 */
+	@Searchable.LoadedFields("title")
+	public static class HydratedBean extends AbstractResult implements
+			Searchable {
+		private Long key;
+
+		/**
+		 * @return Key.
+		 */
+		@ID
+		public Long getKey() {
+			return key;
+		}
+
+		/**
+		 * @param key Key.
+		 */
+		public void setKey(final Long key) {
+			this.key = key;
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testConvertId() throws Exception {
+		assertEquals(new Long(42), HydrationPlan.convertId("42",
+				Long.class.getName()));
+		assertNull(HydrationPlan.convertId("42", "com.example.Missing"));
+
+		// registered by AbstractSearcher
+		new BeanSearcher();
+		final UUID uuid = UUID.randomUUID();
+		assertEquals(uuid, HydrationPlan.convertId(uuid.toString(), UUID.class
+				.getName()));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testPlan() throws Exception {
+		final HydrationPlan plan = HydrationPlan.getPlan(HydratedBean.class
+				.getName());
+		assertSame(plan, HydrationPlan.getPlan(HydratedBean.class.getName()));
+		assertEquals(HydratedBean.class, plan.getType());
+		assertTrue(plan.isSearchable());
+		assertEquals("key", plan.getIdPropertyName());
+		assertEquals("title", plan.getLoadedFields()[0]);
+		assertTrue(plan.newInstance() instanceof HydratedBean);
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testUnresolvableTypes() throws Exception {
+		final HydrationPlan missing = HydrationPlan
+				.getPlan("com.example.Missing");
+		assertSame(missing, HydrationPlan.getPlan("com.example.Missing"));
+		assertNull(missing.getType());
+		assertNull(missing.newInstance());
+
+		// not a Result
+		assertNull(HydrationPlan.getPlan(String.class.getName()).newInstance());
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+
+/**
+ * Tests for IndexPlan.
+ *
+ * @author Seth Fitzsimmons
+ */
+public class IndexPlanTest extends TestCase {
+	/**
+	 */
+	public static class PlannedBean extends AbstractResult implements
+			Searchable {
+		/**
+		 * @return Key.
+		 */
+		@ID
+		public Integer getKey() {
+			return 42;
+		}
+
+		/**
+		 * @return Name
+		 */
+		@Indexed(boost = 2.0F, aliases = "title", stored = true)
+		@Sortable
+		public String getName() {
+			return "teapot";
+		}
+
+		/**
+		 * @return Description.
+		 */
+		@Stored(nested = true)
+		public String getDescription() {
+			return "short and stout";
+		}
+
+		/**
+		 * @return Unindexed property.
+		 */
+		public String getColor() {
+			return "blue";
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testPlanIsShared() throws Exception {
+		assertSame(IndexPlan.getPlan(PlannedBean.class), IndexPlan
+				.getPlan(PlannedBean.class));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testProperties() throws Exception {
+		final IndexPlan plan = IndexPlan.getPlan(PlannedBean.class);
+		assertEquals("key", plan.getIdPropertyName());
+		assertEquals(42, plan.getIdProperty().getValue(new PlannedBean()));
+
+		// only annotated properties are planned
+		assertEquals(2, plan.getProperties().size());
+		assertNotNull(plan.getProperty("color"));
+
+		final IndexPlan.Property name = plan.getProperty("name");
+		assertTrue(name.isIndexed());
+		assertTrue(name.isSortable());
+		assertFalse(name.isNested());
+		assertEquals(2.0F, name.getBoost());
+		assertEquals(Field.Store.YES, name.getStore());
+		assertEquals(Field.Index.TOKENIZED, name.getIndex());
+		assertTrue(name.getFieldnames().contains("title"));
+		assertTrue(name.getFieldnames().contains("name"));
+
+		final IndexPlan.Property description = plan.getProperty("description");
+		assertTrue(description.isNested());
+		assertFalse(description.isSortable());
+		assertEquals(Field.Index.NO, description.getIndex());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testProcessBean() throws Exception {
+		final BeanIndexer indexer = new BeanIndexer();
+		final PlannedBean bean = new PlannedBean();
+		final Document doc = indexer.processBean(indexer.doCreate(bean), bean);
+
+		assertEquals("42", doc.get(IndexSupport.ID_FIELD_NAME));
+		assertEquals("teapot", doc.get("name"));
+		assertEquals("teapot", doc.get("title"));
+		assertEquals("teapot", doc.get(IndexSupport.SORTABLE_PREFIX + "name"));
+		assertEquals("short and stout", doc.get("description"));
+		assertNull(doc.get("color"));
+	}
+}
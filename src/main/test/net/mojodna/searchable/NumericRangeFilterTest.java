@@ -0,0 +1,166 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.util.BitSet;
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.analysis.SimpleAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+
+/**
+ * Tests for NumericRangeFilter.
+ *
+ * @author Seth Fitzsimmons
+ */
+public class NumericRangeFilterTest extends TestCase {
+	private static final int PRECISION_STEP = 4;
+
+	/** Indexed values; document n contains VALUES[n] */
+	private static final int[] VALUES = new int[2001];
+
+	static {
+		for (int i = 0; i < VALUES.length; i++) {
+			VALUES[i] = i - 1000;
+		}
+	}
+
+	private IndexReader reader;
+
+	/**
+	 * Gets the expected bits for an inclusive range.
+	 *
+	 * @param min Lower bound.
+	 * @param max Upper bound.
+	 * @return Bits of documents with values within the range.
+	 */
+	private BitSet expected(final int min, final int max) {
+		final BitSet bits = new BitSet();
+		for (int i = 0; i < VALUES.length; i++) {
+			if (VALUES[i] >= min && VALUES[i] <= max)
+				bits.set(i);
+		}
+		return bits;
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		final Directory directory = new RAMDirectory();
+		final IndexWriter writer = new IndexWriter(directory,
+				new SimpleAnalyzer(), true);
+		for (final int value : VALUES) {
+			final Document doc = new Document();
+			for (final String term : NumericRangeFilter.getTerms(
+					SortableType.INT, value, PRECISION_STEP)) {
+				doc.add(new Field(IndexSupport.RANGE_PREFIX + "n", term,
+						Field.Store.NO, Field.Index.NO_NORMS));
+			}
+			writer.addDocument(doc);
+		}
+		writer.close();
+
+		reader = IndexReader.open(directory);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		reader.close();
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testBounds() throws Exception {
+		assertEquals(expected(-1000, 1000), new NumericRangeFilter("n",
+				PRECISION_STEP, SortableType.INT, null, null, true, true)
+				.bits(reader));
+		assertEquals(expected(11, 999), new NumericRangeFilter("n",
+				PRECISION_STEP, SortableType.INT, 10, 1000, false, false)
+				.bits(reader));
+		assertEquals(expected(Integer.MIN_VALUE, -1), new NumericRangeFilter(
+				"n", PRECISION_STEP, SortableType.INT, null, 0, true, false)
+				.bits(reader));
+		assertTrue(new NumericRangeFilter("n", PRECISION_STEP,
+				SortableType.INT, 5, 4, true, true).bits(reader).isEmpty());
+		assertTrue(new NumericRangeFilter("n", PRECISION_STEP,
+				SortableType.INT, Integer.MAX_VALUE, null, false, true).bits(
+				reader).isEmpty());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testCaching() throws Exception {
+		final NumericRangeFilter filter = new NumericRangeFilter("n",
+				PRECISION_STEP, SortableType.INT, -10, 10, true, true);
+		final NumericRangeFilter equivalent = new NumericRangeFilter("n",
+				PRECISION_STEP, SortableType.INT, -11, 11, false, false);
+		assertEquals(filter, equivalent);
+		assertEquals(filter.hashCode(), equivalent.hashCode());
+		assertSame(filter.bits(reader), equivalent.bits(reader));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testRanges() throws Exception {
+		for (int min = -1000; min <= 1000; min += 37) {
+			for (int max = min; max <= 1000; max += 53) {
+				final NumericRangeFilter filter = new NumericRangeFilter("n",
+						PRECISION_STEP, SortableType.INT, min, max, true, true);
+				final BitSet bits = new BitSet();
+				final int visited = filter.split(reader, bits);
+				assertEquals(min + " TO " + max, expected(min, max), bits);
+
+				// at most 2 * (2^precisionStep - 1) terms per precision
+				assertTrue(visited <= 2 * 15 * (32 / PRECISION_STEP));
+			}
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testRecentRange() throws Exception {
+		final long day = 24 * 60 * 60 * 1000L;
+		final NumericRangeFilter filter = NumericRangeFilter.newRecentRange(
+				"created", 8, 7 * day, day);
+		assertEquals(SortableType.DATE, filter.getType());
+		assertEquals(filter, NumericRangeFilter.newRecentRange("created", 8,
+				7 * day, day));
+		assertFalse(filter.equals(NumericRangeFilter.newRecentRange(
+				"created", 8, 14 * day, day)));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testTerms() throws Exception {
+		final String[] terms = NumericRangeFilter.getTerms(SortableType.DATE,
+				new Date(0L), 16);
+		assertEquals(4, terms.length);
+		assertEquals("008000000000000000", terms[0]);
+		assertEquals("300000000000008000", terms[3]);
+		assertEquals(8, NumericRangeFilter.getTerms(SortableType.INT, 1, 4).length);
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.queryParser.QueryParser;
+import org.apache.lucene.search.Query;
+
+/**
+ * Tests for ParsedQueryCache.
+ *
+ * @author Seth Fitzsimmons
+ */
+public class ParsedQueryCacheTest extends TestCase {
+	private static final String[] FIELDS = new String[] { "name", "color" };
+
+	private final Analyzer analyzer = new StandardAnalyzer();
+
+	/**
+	 * @throws Exception
+	 */
+	public void testCachedQueriesAreCopies() throws Exception {
+		final ParsedQueryCache cache = new ParsedQueryCache();
+		final Query first = cache.parse("brown teapot", FIELDS, analyzer,
+				QueryParser.AND_OPERATOR);
+		first.setBoost(5F);
+
+		final Query second = cache.parse("brown teapot", FIELDS, analyzer,
+				QueryParser.AND_OPERATOR);
+		assertNotSame(first, second);
+		assertEquals(1F, second.getBoost(), 0F);
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testEviction() throws Exception {
+		final ParsedQueryCache cache = new ParsedQueryCache(2);
+		cache.parse("a1", FIELDS, analyzer, QueryParser.AND_OPERATOR);
+		cache.parse("b2", FIELDS, analyzer, QueryParser.AND_OPERATOR);
+		// touch a1 so that b2 is least recently used
+		cache.parse("a1", FIELDS, analyzer, QueryParser.AND_OPERATOR);
+		cache.parse("c3", FIELDS, analyzer, QueryParser.AND_OPERATOR);
+		assertEquals(2, cache.getSize());
+
+		cache.parse("a1", FIELDS, analyzer, QueryParser.AND_OPERATOR);
+		assertEquals(2, cache.getHits());
+		cache.parse("b2", FIELDS, analyzer, QueryParser.AND_OPERATOR);
+		assertEquals(4, cache.getMisses());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testIdleParsersAreBounded() throws Exception {
+		final ParsedQueryCache cache = new ParsedQueryCache();
+		cache.setMaxParserConfigurations(2);
+		for (int i = 0; i < 5; i++) {
+			cache.parse("brown teapot", FIELDS, new StandardAnalyzer(),
+					QueryParser.AND_OPERATOR);
+		}
+		assertEquals(2, cache.getParserConfigurations());
+
+		cache.clear();
+		assertEquals(0, cache.getParserConfigurations());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testKey() throws Exception {
+		final ParsedQueryCache cache = new ParsedQueryCache();
+		final Query and = cache.parse("brown teapot", FIELDS, analyzer,
+				QueryParser.AND_OPERATOR);
+		final Query or = cache.parse("brown teapot", FIELDS, analyzer,
+				QueryParser.OR_OPERATOR);
+		cache.parse("brown teapot", new String[] { "name" }, analyzer,
+				QueryParser.AND_OPERATOR);
+		cache.parse("brown teapot", FIELDS, new StandardAnalyzer(),
+				QueryParser.AND_OPERATOR);
+		assertEquals(0, cache.getHits());
+		assertEquals(4, cache.getMisses());
+		assertFalse(and.equals(or));
+
+		// the field array is copied into the key
+		final String[] fields = FIELDS.clone();
+		cache.parse("brown teapot", fields, analyzer, QueryParser.AND_OPERATOR);
+		fields[0] = "size";
+		cache.parse("brown teapot", FIELDS, analyzer, QueryParser.AND_OPERATOR);
+		assertEquals(2, cache.getHits());
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.analysis.SimpleAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Searcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+
+/**
+ * Tests for SearcherManager.
+ *
+ * @author Seth Fitzsimmons
+ */
+public class SearcherManagerTest extends TestCase {
+	private Directory directory;
+
+	private SearcherManager manager;
+
+	/**
+	 * @param name Value of the name field.
+	 * @param create Whether to create the index.
+	 * @throws Exception
+	 */
+	private void addDocument(final String name, final boolean create)
+			throws Exception {
+		final IndexWriter writer = new IndexWriter(directory,
+				new SimpleAnalyzer(), create);
+		final Document doc = new Document();
+		doc.add(new Field("name", name, Field.Store.YES,
+				Field.Index.UN_TOKENIZED));
+		writer.addDocument(doc);
+		writer.close();
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		directory = new RAMDirectory();
+		addDocument("brown", true);
+		manager = new SearcherManager(directory, -1);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		manager.close();
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testAcquireSharesSearcher() throws Exception {
+		final IndexSearcher first = manager.acquire();
+		final IndexSearcher second = manager.acquire();
+		assertSame(first, second);
+		manager.release(first);
+		manager.release(second);
+
+		assertEquals(1, manager.getGeneration());
+		assertEquals(1, manager.getReopenCount());
+		assertEquals(1, manager.getOpenGenerations());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testFieldNamesCachedPerGeneration() throws Exception {
+		final IndexSearcher old = manager.acquire();
+		try {
+			assertSame(SearcherManager.getFieldNames(old), SearcherManager
+					.getFieldNames(old));
+			assertEquals(1, SearcherManager.getFieldsPresent(old).length);
+
+			final IndexWriter writer = new IndexWriter(directory,
+					new SimpleAnalyzer(), false);
+			final Document doc = new Document();
+			doc.add(new Field("color", "white", Field.Store.YES,
+					Field.Index.UN_TOKENIZED));
+			doc.add(new Field(IndexSupport.TYPE_FIELD_NAME, "Teapot",
+					Field.Store.YES, Field.Index.UN_TOKENIZED));
+			writer.addDocument(doc);
+			writer.close();
+			assertTrue(manager.maybeRefresh());
+
+			// the old generation keeps its field names
+			assertFalse(SearcherManager.getFieldNames(old).contains("color"));
+		} finally {
+			manager.release(old);
+		}
+
+		final IndexSearcher current = manager.acquire();
+		try {
+			assertTrue(SearcherManager.getFieldNames(current).contains(
+					IndexSupport.TYPE_FIELD_NAME));
+			// private fields are excluded
+			assertEquals(2, SearcherManager.getFieldsPresent(current).length);
+		} finally {
+			manager.release(current);
+		}
+
+		assertNull(SearcherManager.getFieldNames(new IndexSearcher(directory)));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testRefreshRetiresOldSearcher() throws Exception {
+		final IndexSearcher old = manager.acquire();
+		assertFalse(manager.maybeRefresh());
+
+		addDocument("white", false);
+		assertTrue(manager.maybeRefresh());
+		assertEquals(2, manager.getGeneration());
+
+		// the old searcher stays open until released
+		assertEquals(2, manager.getOpenGenerations());
+		assertEquals(1, old.getIndexReader().numDocs());
+		manager.release(old);
+		assertEquals(1, manager.getOpenGenerations());
+
+		final IndexSearcher current = manager.acquire();
+		try {
+			assertEquals(2, current.getIndexReader().numDocs());
+		} finally {
+			manager.release(current);
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testReleaseAfterClose() throws Exception {
+		final IndexSearcher searcher = manager.acquire();
+		manager.close();
+		assertEquals(1, manager.getOpenGenerations());
+		manager.release(searcher);
+		assertEquals(0, manager.getOpenGenerations());
+
+		try {
+			manager.acquire();
+			fail("Closed managers should not hand out searchers.");
+		} catch (final IndexException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testWarmFailures() throws Exception {
+		assertTrue(manager.maybeRefresh());
+
+		// failing warm queries are logged, and the searcher is published
+		final Query failing = new TermQuery(new Term("name", "brown")) {
+			@Override
+			protected Weight createWeight(final Searcher searcher) {
+				throw new IllegalStateException("Cannot warm.");
+			}
+		};
+		manager.setWarmer(new SearcherWarmer(new Query[] { failing }));
+		addDocument("white", false);
+		assertTrue(manager.maybeRefresh());
+		assertEquals(2, manager.getGeneration());
+
+		// warmers that throw leave the current generation in place
+		manager.setWarmer(new SearcherWarmer() {
+			@Override
+			public void warm(final IndexSearcher searcher) {
+				throw new IllegalStateException("Cannot warm.");
+			}
+		});
+		addDocument("green", false);
+		try {
+			manager.maybeRefresh();
+			fail("Warming failures should propagate.");
+		} catch (final IllegalStateException e) {
+			// expected
+		}
+		assertEquals(2, manager.getGeneration());
+		assertEquals(1, manager.getOpenGenerations());
+
+		manager.setWarmer(null);
+		assertTrue(manager.maybeRefresh());
+		assertEquals(3, manager.getGeneration());
+		assertEquals(1, manager.getOpenGenerations());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testWarmBeforePublishing() throws Exception {
+		final List<Long> warmedDuring = new ArrayList<Long>();
+		final SearcherWarmer warmer = new SearcherWarmer(
+				new Query[] { new TermQuery(new Term("name", "brown")) }) {
+			@Override
+			public void warm(final IndexSearcher searcher) {
+				// the generation being warmed has not been published yet
+				warmedDuring.add(manager.getGeneration());
+				assertEquals(2, searcher.getIndexReader().numDocs());
+				super.warm(searcher);
+			}
+		};
+		warmer.setFacetFields(new String[] { "name" });
+
+		assertTrue(manager.maybeRefresh());
+		manager.setWarmer(warmer);
+		addDocument("white", false);
+		assertTrue(manager.maybeRefresh());
+
+		assertEquals(1, warmedDuring.size());
+		assertEquals(1L, warmedDuring.get(0).longValue());
+		assertEquals(2, manager.getGeneration());
+		assertTrue(manager.getLastWarmTime() >= 0);
+		assertEquals(manager.getLastWarmTime(), manager.getTotalWarmTime());
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+
+/**
+ * Measures the time and allocation cost of sorting by one or more keys.  The
+ * first search against a key populates the per-reader FieldCache; subsequent
+ * searches should only allocate the (bounded) hit queue.
+ * 
+ * Usage: SortBenchmark [documents] [iterations] [index path]
+ * 
+ * An existing index at the specified path is reused, so large indexes (10M+
+ * documents) only need to be built once.  Allocation is only reported on VMs
+ * that support thread allocation accounting.
+ *
+ * @author Seth Fitzsimmons
+ */
+public class SortBenchmark {
+	/** Number of distinct names, so that the name key produces ties */
+	private static final int NUM_NAMES = 1000;
+
+	/**
+	 * Searcher exposing the managed IndexSearcher.
+	 */
+	private static class BenchmarkSearcher extends BeanSearcher {
+		/**
+		 * Run a sorted search against the shared searcher.
+		 * 
+		 * @param query Query to use.
+		 * @param sort Sort to use.
+		 * @return Total hits.
+		 * @throws Exception
+		 */
+		public int search(final Query query, final Sort sort) throws Exception {
+			final IndexSearcher searcher = acquireIndexSearcher();
+			try {
+				final TopDocs docs = searcher.search(query, null, 10, sort);
+				return docs.totalHits;
+			} finally {
+				releaseIndexSearcher(searcher);
+			}
+		}
+	}
+
+	/**
+	 * Builds an index of the specified size.
+	 * 
+	 * @param indexPath Path to the index.
+	 * @param documents Number of documents to index.
+	 * @throws Exception
+	 */
+	private static void buildIndex(final String indexPath, final int documents)
+			throws Exception {
+		final IndexWriter writer = new IndexWriter(indexPath,
+				new StandardAnalyzer(), true);
+		writer.setMaxBufferedDocs(10000);
+		writer.setMergeFactor(50);
+		for (int i = 0; i < documents; i++) {
+			final Document doc = new Document();
+			doc.add(new Field("body", 0 == i % 2 ? "brown" : "white",
+					Field.Store.NO, Field.Index.UN_TOKENIZED));
+			doc.add(new Field(IndexSupport.SORTABLE_PREFIX + "date", String
+					.valueOf(20000101 + (i * 7919) % 3650), Field.Store.NO,
+					Field.Index.UN_TOKENIZED));
+			doc.add(new Field(IndexSupport.SORTABLE_PREFIX + "name", "name"
+					+ ((i * 104729) % NUM_NAMES), Field.Store.NO,
+					Field.Index.UN_TOKENIZED));
+			writer.addDocument(doc);
+		}
+		writer.optimize();
+		writer.close();
+	}
+
+	/**
+	 * Run the benchmark.
+	 * 
+	 * @param args Number of documents, number of iterations, and index path
+	 *        (all optional).
+	 * @throws Exception
+	 */
+	public static void main(final String[] args) throws Exception {
+		final int documents = args.length > 0 ? Integer.parseInt(args[0])
+				: 1000000;
+		final int iterations = args.length > 1 ? Integer.parseInt(args[1])
+				: 20;
+		final String indexPath = args.length > 2 ? args[2] : System
+				.getProperty("java.io.tmpdir")
+				+ File.separatorChar + "searchable-sort-benchmark-" + documents;
+
+		if (!new File(indexPath, "segments").exists()) {
+			final long begin = System.currentTimeMillis();
+			buildIndex(indexPath, documents);
+			System.out.println("Indexed " + documents + " documents in "
+					+ (System.currentTimeMillis() - begin) + "ms");
+		}
+
+		final BenchmarkSearcher searcher = new BenchmarkSearcher();
+		searcher.setIndexPath(indexPath);
+		try {
+			final Query query = new TermQuery(new Term("body", "brown"));
+			final String[][] keys = { {}, { "date desc" },
+					{ "date desc", "name" }, { "date desc", "name", "score" } };
+
+			for (int round = 0; round < 3; round++) {
+				for (final String[] key : keys) {
+					run(searcher, query, key, iterations, round);
+				}
+			}
+		} finally {
+			searcher.close();
+		}
+	}
+
+	/**
+	 * Time sorted searches using the specified keys.
+	 * 
+	 * @param searcher Searcher to use.
+	 * @param query Query to use.
+	 * @param keys Sort keys.
+	 * @param iterations Number of searches to run.
+	 * @param round Benchmark round.
+	 * @throws Exception
+	 */
+	private static void run(final BenchmarkSearcher searcher,
+			final Query query, final String[] keys, final int iterations,
+			final int round) throws Exception {
+		final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		final com.sun.management.ThreadMXBean allocations = threads instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) threads
+				: null;
+		final long thread = Thread.currentThread().getId();
+
+		final Sort sort = searcher.createSort(keys);
+		long hits = 0;
+		final long allocatedBefore = null == allocations ? 0 : allocations
+				.getThreadAllocatedBytes(thread);
+		final long begin = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			hits += searcher.search(query, sort);
+		}
+		final long elapsed = System.nanoTime() - begin;
+		final long allocated = null == allocations ? -1 : allocations
+				.getThreadAllocatedBytes(thread)
+				- allocatedBefore;
+
+		final StringBuffer label = new StringBuffer();
+		for (final String key : keys) {
+			label.append(label.length() > 0 ? ", " : "").append(key);
+		}
+
+		System.out.println("round " + round + " ["
+				+ (label.length() > 0 ? label : "relevance") + "]: "
+				+ (elapsed / 1000000 / iterations) + "ms/search, "
+				+ (allocated < 0 ? "n/a" : (allocated / iterations) + " bytes")
+				+ "/search (hits " + hits + ")");
+	}
+}
@@ -0,0 +1,320 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.document.DateTools;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+
+/**
+ * Tests for SortableType and SortableComparatorSource.
+ *
+ * @author Seth Fitzsimmons
+ */
+public class SortableTypeTest extends TestCase {
+	/**
+	 */
+	public static class Widget extends AbstractResult implements Searchable {
+		private Date created;
+
+		private Integer id;
+
+		private String name;
+
+		private int rank;
+
+		private double weight;
+
+		/**
+		 */
+		public Widget() {
+			super();
+		}
+
+		/**
+		 * @param id Id.
+		 * @param rank Rank.
+		 * @param weight Weight.
+		 * @param created Creation date.
+		 */
+		public Widget(final Integer id, final int rank, final double weight,
+				final Date created) {
+			this.id = id;
+			this.name = "widget";
+			this.rank = rank;
+			this.weight = weight;
+			this.created = created;
+		}
+
+		/**
+		 * @return Creation date.
+		 */
+		@Sortable
+		public Date getCreated() {
+			return created;
+		}
+
+		/**
+		 * @return Id.
+		 */
+		public Integer getId() {
+			return id;
+		}
+
+		/**
+		 * @return Name.
+		 */
+		@Indexed(tokenized = false)
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return Rank.
+		 */
+		@Sortable
+		public int getRank() {
+			return rank;
+		}
+
+		/**
+		 * @return Weight.
+		 */
+		@Sortable
+		public double getWeight() {
+			return weight;
+		}
+
+		/**
+		 * @param id Id.
+		 */
+		public void setId(final Integer id) {
+			this.id = id;
+		}
+	}
+
+	/** Ranks, indexed by id; 9 and 10 sort the wrong way round as strings */
+	private static final int[] RANKS = { 10, 9, -3, 100, 0, 42, -1000, 7 };
+
+	/** Weights, indexed by id */
+	private static final double[] WEIGHTS = { 1.5, -2.25, 0, 1e10, -1e-10,
+			3.75, 2, -7 };
+
+	private String indexPath;
+
+	private BeanSearcher searcher;
+
+	/**
+	 * @param results Results.
+	 * @return Ids of the results, in order.
+	 */
+	private List<Integer> getIds(final Iterable<? extends Searchable> results) {
+		final List<Integer> ids = new ArrayList<Integer>();
+		for (final Searchable result : results) {
+			ids.add(((Widget) result).getId());
+		}
+		return ids;
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		indexPath = System.getProperty("java.io.tmpdir") + File.separatorChar
+				+ "searchable-" + getName() + "-" + System.currentTimeMillis();
+
+		final BeanIndexer indexer = new BeanIndexer();
+		indexer.setIndexPath(indexPath);
+		indexer.createIndex();
+		for (int i = 0; i < RANKS.length; i++) {
+			// creation dates run in the opposite order to ids
+			indexer.add(new Widget(i, RANKS[i], WEIGHTS[i], new Date(
+					1000000000000L - i * 1000L)));
+		}
+		indexer.close();
+
+		searcher = new BeanSearcher();
+		searcher.setIndexPath(indexPath);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		searcher.close();
+		IndexSupport.closeSearcherManager(indexPath);
+		final File[] files = new File(indexPath).listFiles();
+		if (null != files) {
+			for (final File f : files) {
+				f.delete();
+			}
+		}
+		new File(indexPath).delete();
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testEncodingOrder() throws Exception {
+		final long[] longs = { Long.MIN_VALUE, -1L << 40, -10, -9, -1, 0, 1,
+				9, 10, 1L << 40, Long.MAX_VALUE };
+		for (int i = 0; i < longs.length; i++) {
+			final String term = SortableType.LONG.encode(longs[i]);
+			assertEquals(longs[i], SortableType.LONG.decode(term));
+			if (i > 0)
+				assertTrue(SortableType.LONG.encode(longs[i - 1]).compareTo(
+						term) < 0);
+
+			if (longs[i] >= Integer.MIN_VALUE && longs[i] <= Integer.MAX_VALUE) {
+				final int value = (int) longs[i];
+				assertEquals(value, SortableType.INT.decode(SortableType.INT
+						.encode(value)));
+				assertTrue(SortableType.INT.encode(value - 1).compareTo(
+						SortableType.INT.encode(value)) < 0);
+			}
+		}
+
+		final double[] doubles = { Double.NEGATIVE_INFINITY, -1e10, -2.5,
+				-1e-10, 0, 1e-10, 2.5, 1e10, Double.POSITIVE_INFINITY };
+		for (int i = 0; i < doubles.length; i++) {
+			final String term = SortableType.DOUBLE.encode(doubles[i]);
+			assertEquals(doubles[i], SortableType.DOUBLE.decode(term));
+			final float f = (float) doubles[i];
+			assertEquals(f, SortableType.FLOAT.decode(SortableType.FLOAT
+					.encode(f)));
+			if (i > 0) {
+				assertTrue(SortableType.DOUBLE.encode(doubles[i - 1])
+						.compareTo(term) < 0);
+				assertTrue(SortableType.FLOAT.encode((float) doubles[i - 1])
+						.compareTo(SortableType.FLOAT.encode(f)) < 0);
+			}
+		}
+
+		assertSame(SortableType.INT, SortableType.forClass(Integer.TYPE));
+		assertSame(SortableType.DATE, SortableType.forClass(java.sql.Timestamp.class));
+		assertNull(SortableType.forClass(String.class));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testMixedEncodings() throws Exception {
+		// documents written before sortable fields were encoded
+		final Map<Integer, Integer> ranks = new HashMap<Integer, Integer>();
+		for (int i = 0; i < RANKS.length; i++) {
+			ranks.put(i, RANKS[i]);
+		}
+		ranks.put(100, 8);
+		ranks.put(101, 11);
+		// would decode as 0x12345678 if mistaken for an encoded int
+		ranks.put(102, 12345678);
+
+		final BeanIndexer indexer = new BeanIndexer();
+		indexer.setIndexPath(indexPath);
+		for (int id = 100; id <= 102; id++) {
+			final Document doc = indexer.createDocument(Widget.class
+					.getName(), id);
+			doc.add(new Field("name", "widget", Field.Store.NO,
+					Field.Index.UN_TOKENIZED));
+			doc.add(new Field(IndexSupport.SORTABLE_PREFIX + "rank", ranks
+					.get(id).toString(), Field.Store.YES,
+					Field.Index.UN_TOKENIZED));
+			doc.add(new Field(IndexSupport.SORTABLE_PREFIX + "created",
+					DateTools.dateToString(new Date(2000000000000L + id * 1000L),
+							DateTools.Resolution.SECOND), Field.Store.YES,
+					Field.Index.UN_TOKENIZED));
+			indexer.save(doc);
+		}
+		indexer.close();
+		searcher.getSearcherManager().maybeRefresh();
+
+		final Query query = new TermQuery(new Term("name", "widget"));
+		List<Integer> ids = getIds(searcher.search(query, 0, null, "rank"));
+		assertEquals(ranks.size(), ids.size());
+		for (int i = 1; i < ids.size(); i++) {
+			assertTrue(ranks.get(ids.get(i - 1)) < ranks.get(ids.get(i)));
+		}
+
+		// older documents were created later, in id order
+		ids = getIds(searcher.search(query, 0, null, "created"));
+		assertEquals(Arrays.asList(100, 101, 102), ids.subList(RANKS.length,
+				ids.size()));
+		for (int i = 1; i < RANKS.length; i++) {
+			assertTrue(ids.get(i - 1) > ids.get(i));
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testNumericSort() throws Exception {
+		final Query query = new TermQuery(new Term("name", "widget"));
+
+		final IndexSearcher is = searcher.acquireIndexSearcher();
+		try {
+			final IndexReader reader = is.getIndexReader();
+			assertSame(SortableType.INT, SortableType.getType(reader,
+					IndexSupport.SORTABLE_PREFIX + "rank"));
+			assertSame(SortableType.DATE, SortableType.getType(reader,
+					IndexSupport.SORTABLE_PREFIX + "created"));
+			assertTrue(SortableComparatorSource.INSTANCE.newComparator(reader,
+					IndexSupport.SORTABLE_PREFIX + "rank").sortValue(
+					new ScoreDoc(1, 1F)) instanceof Integer);
+		} finally {
+			searcher.releaseIndexSearcher(is);
+		}
+
+		List<Integer> ids = getIds(searcher.search(query, 0, null, "rank"));
+		assertEquals(RANKS.length, ids.size());
+		for (int i = 1; i < ids.size(); i++) {
+			assertTrue(RANKS[ids.get(i - 1)] < RANKS[ids.get(i)]);
+		}
+
+		ids = getIds(searcher.search(query, 0, null, "weight", true));
+		for (int i = 1; i < ids.size(); i++) {
+			assertTrue(WEIGHTS[ids.get(i - 1)] > WEIGHTS[ids.get(i)]);
+		}
+
+		ids = getIds(searcher.search(query, 0, null, "created"));
+		for (int i = 1; i < ids.size(); i++) {
+			assertTrue(ids.get(i - 1) > ids.get(i));
+		}
+
+		// cursors carry typed sort values
+		final List<Integer> paged = new ArrayList<Integer>();
+		String cursor = null;
+		do {
+			final ResultSet<? extends Searchable> page = searcher.searchAfter(
+					query, null, cursor, 3, "weight", false);
+			paged.addAll(getIds(page));
+			cursor = page.getCursor();
+		} while (null != cursor);
+		ids = getIds(searcher.search(query, 0, null, "weight", false));
+		assertEquals(ids, paged);
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable.accessor;
+
+import net.mojodna.searchable.AbstractResult;
+import net.mojodna.searchable.Searchable;
+
+/**
+ * Compares MethodPropertyAccessorFactory with the PropertyUtils-backed
+ * BeanUtilsPropertyAccessorFactory.
+ * 
+ * Usage: PropertyAccessorBenchmark [iterations]
+ *
+ * @author Seth Fitzsimmons
+ */
+public class PropertyAccessorBenchmark {
+	/**
+	 */
+	public static class BenchmarkBean extends AbstractResult implements
+			Searchable {
+		private Integer id = 1;
+
+		private String name = "teapot";
+
+		/**
+		 * @return Id.
+		 */
+		public Integer getId() {
+			return id;
+		}
+
+		/**
+		 * @return Name.
+		 */
+		@Indexed
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @param id Id.
+		 */
+		public void setId(final Integer id) {
+			this.id = id;
+		}
+
+		/**
+		 * @param name Name.
+		 */
+		public void setName(final String name) {
+			this.name = name;
+		}
+	}
+
+	/**
+	 * Run the benchmark.
+	 * 
+	 * @param args Number of iterations (optional).
+	 * @throws Exception
+	 */
+	public static void main(final String[] args) throws Exception {
+		final int iterations = args.length > 0 ? Integer.parseInt(args[0])
+				: 5000000;
+
+		final PropertyAccessorFactory[] factories = {
+				new BeanUtilsPropertyAccessorFactory(),
+				new MethodPropertyAccessorFactory() };
+
+		for (int round = 0; round < 3; round++) {
+			for (final PropertyAccessorFactory factory : factories) {
+				run(factory, iterations);
+			}
+		}
+	}
+
+	/**
+	 * Time reads and writes using accessors from the specified factory.
+	 * 
+	 * @param factory Factory to create accessors with.
+	 * @param iterations Number of reads and writes to perform.
+	 * @throws PropertyAccessException
+	 */
+	private static void run(final PropertyAccessorFactory factory,
+			final int iterations) throws PropertyAccessException {
+		final BenchmarkBean bean = new BenchmarkBean();
+		final PropertyAccessor id = factory.getAccessor(BenchmarkBean.class,
+				"id");
+		final PropertyAccessor name = factory.getAccessor(
+				BenchmarkBean.class, "name");
+
+		long checksum = 0;
+		final long begin = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			id.set(bean, i);
+			checksum += ((Integer) id.get(bean)).intValue();
+			checksum += ((String) name.get(bean)).length();
+		}
+		final long elapsed = System.nanoTime() - begin;
+
+		System.out.println(factory.getClass().getSimpleName() + ": "
+				+ (elapsed / 1000000) + "ms, " + (elapsed / iterations)
+				+ "ns/iteration (checksum " + checksum + ")");
+	}
+}
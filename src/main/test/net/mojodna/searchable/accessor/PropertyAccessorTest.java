@@ -0,0 +1,186 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable.accessor;
+
+import junit.framework.TestCase;
+import net.mojodna.searchable.AbstractResult;
+import net.mojodna.searchable.Searchable;
+
+/**
+ * Tests that MethodPropertyAccessorFactory behaves like the PropertyUtils-
+ * backed BeanUtilsPropertyAccessorFactory.
+ *
+ * @author Seth Fitzsimmons
+ */
+public class PropertyAccessorTest extends TestCase {
+	/**
+	 */
+	public static interface Named {
+		/**
+		 * @return Name.
+		 */
+		@Searchable.Indexed
+		String getName();
+	}
+
+	/**
+	 */
+	public static class Teapot extends AbstractResult implements Searchable,
+			Named {
+		private int capacity;
+
+		private Integer id;
+
+		private String name;
+
+		/**
+		 * @return Capacity.
+		 */
+		public int getCapacity() {
+			return capacity;
+		}
+
+		/**
+		 * @return Id.
+		 */
+		public Integer getId() {
+			return id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @param capacity Capacity.
+		 */
+		public void setCapacity(final int capacity) {
+			this.capacity = capacity;
+		}
+
+		/**
+		 * @param id Id.
+		 */
+		public void setId(final Integer id) {
+			this.id = id;
+		}
+	}
+
+	/**
+	 */
+	public static class Kettle extends Teapot {
+		/**
+		 * @return Whether this whistles.
+		 */
+		public boolean isWhistling() {
+			return true;
+		}
+	}
+
+	private final PropertyAccessorFactory[] factories = {
+			new BeanUtilsPropertyAccessorFactory(),
+			new MethodPropertyAccessorFactory() };
+
+	/**
+	 * @throws Exception
+	 */
+	public void testGetAndSet() throws Exception {
+		for (final PropertyAccessorFactory factory : factories) {
+			final Teapot teapot = new Teapot();
+			final PropertyAccessor id = factory.getAccessor(Teapot.class, "id");
+			assertEquals("id", id.getName());
+			assertEquals(Integer.class, id.getType());
+			assertTrue(id.isReadable());
+			assertTrue(id.isWritable());
+
+			id.set(teapot, 7);
+			assertEquals(7, id.get(teapot));
+			id.set(teapot, null);
+			assertNull(id.get(teapot));
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testInheritedProperties() throws Exception {
+		for (final PropertyAccessorFactory factory : factories) {
+			final Kettle kettle = new Kettle();
+			kettle.setId(3);
+			assertEquals(3, factory.getAccessor(Kettle.class, "id").get(kettle));
+			assertEquals(Boolean.TRUE, factory.getAccessor(Kettle.class,
+					"whistling").get(kettle));
+
+			// getter annotated on an interface
+			final PropertyAccessor name = factory.getAccessor(Kettle.class,
+					"name");
+			assertTrue(name.isReadable());
+			assertFalse(name.isWritable());
+			assertNull(name.get(kettle));
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testMissingProperties() throws Exception {
+		for (final PropertyAccessorFactory factory : factories) {
+			assertNull(factory.getAccessor(Teapot.class, "spout"));
+			assertNull(factory.getAccessor(Teapot.class, "whistling"));
+
+			// read-only property
+			try {
+				factory.getAccessor(Teapot.class, "name").set(new Teapot(),
+						"brown");
+				fail(factory + " should not write read-only properties.");
+			} catch (final PropertyAccessException e) {
+				// expected
+			}
+
+			// bean that does not declare the property
+			try {
+				factory.getAccessor(Kettle.class, "whistling").get(
+						new Teapot());
+				fail(factory + " should not read undeclared properties.");
+			} catch (final PropertyAccessException e) {
+				// expected
+			}
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testPrimitiveProperties() throws Exception {
+		for (final PropertyAccessorFactory factory : factories) {
+			final Teapot teapot = new Teapot();
+			final PropertyAccessor capacity = factory.getAccessor(
+					Teapot.class, "capacity");
+			assertEquals(Integer.TYPE, capacity.getType());
+
+			capacity.set(teapot, 12);
+			assertEquals(12, capacity.get(teapot));
+			assertEquals(12, teapot.getCapacity());
+
+			try {
+				capacity.set(teapot, null);
+				fail(factory + " should not write null to primitives.");
+			} catch (final PropertyAccessException e) {
+				// expected
+			}
+		}
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ Copyright 2005-2006 Seth Fitzsimmons <seth@mojodna.net>
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package net.mojodna.searchable.solr;
+
+import junit.framework.TestCase;
+import net.mojodna.searchable.SearchException;
+
+/**
+ * Tests for SolrSearcher.
+ *
+ * @author Seth Fitzsimmons
+ */
+public class SolrSearcherTest extends TestCase {
+	private final SolrSearcher searcher = new SolrSearcher();
+
+	/**
+	 * @throws Exception
+	 */
+	public void testCreateSort() throws Exception {
+		assertNull(searcher.createSort(null));
+		assertNull(searcher.createSort(new String[] { " " }));
+
+		// fields are passed to Solr as named
+		assertEquals("date desc,name asc,score desc", searcher
+				.createSort(new String[] { "date DESC", " name ", "score" }));
+		assertEquals("score asc", searcher.createSort(new String[] { "score asc" }));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	public void testInvalidSort() throws Exception {
+		try {
+			searcher.createSort(new String[] { "name sideways" });
+			fail("Invalid sort direction was accepted.");
+		} catch (final SearchException e) {
+			// expected
+		}
+	}
+}